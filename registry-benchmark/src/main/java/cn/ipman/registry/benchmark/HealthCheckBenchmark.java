@@ -0,0 +1,88 @@
+package cn.ipman.registry.benchmark;
+
+import cn.ipman.registry.core.cluster.Cluster;
+import cn.ipman.registry.core.config.RegistryConfigProperties;
+import cn.ipman.registry.core.health.HealthManChecker;
+import cn.ipman.registry.core.service.RegistryManService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HealthManChecker} 一次到期检查的耗时。每次调用前所有租约在时间轮中同一个时刻到期且都已续约;
+ * 测量的这一次检查里所有租约同时到期并被重新放回时间轮，是最重的一次检查。
+ * <p>
+ * 不启动定时任务，直接按给定的时间戳调用 {@link HealthManChecker#check(long)} 推进时间轮。
+ * 租约表是全局的，时间轮也不是线程安全的，只能单线程运行(见 {@link RegistryBenchmarks})。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 20:45
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class HealthCheckBenchmark {
+
+    static final long TIMEOUT = 20_000;
+    static final long TICK = 1_000;
+
+    @Param({"10", "1000"})
+    int services;
+
+    @Param({"10", "100"})
+    int instances;
+
+    final RegistryManService registryService = new RegistryManService();
+    HealthManChecker checker;
+    long deadline;
+    long due;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        RegistryFixture.populate(registryService, services, instances);
+        Cluster cluster = new Cluster(new RegistryConfigProperties());
+        cluster.myself().setLeader(true);
+        checker = new HealthManChecker(registryService, cluster, TIMEOUT, TICK);
+        // 首次检查时成为Leader，所有租约按 now + TIMEOUT 放入时间轮
+        long now = System.currentTimeMillis();
+        checker.check(now);
+        deadline = now + TIMEOUT;
+    }
+
+    @Setup(Level.Invocation)
+    public void renew() {
+        // 到期时刻的续约: 检查时所有租约都已续约，按 deadline + TIMEOUT 放回时间轮
+        long renewed = deadline;
+        RegistryManService.LEASES.forEach(lease -> RegistryManService.LEASES.touch(lease, renewed));
+        due = deadline + TICK;
+        deadline += TIMEOUT;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        checker.stop();
+        RegistryFixture.clear();
+    }
+
+    @Benchmark
+    public void expireTick() {
+        checker.check(due);
+    }
+}
@@ -0,0 +1,66 @@
+package cn.ipman.registry.benchmark;
+
+import org.openjdk.jmh.runner.NoBenchmarksException;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 基准测试入口。除JMH自带的参数外，支持 -threads 1,4,16 指定多个线程数，
+ * 依次以每个线程数运行一遍选中的基准测试(JMH 的 -t 只能指定一个值)。
+ * 只能单线程运行的基准测试(标注了 {@code @Threads(1)})只在线程数为1时运行。
+ * <pre>
+ * mvn -pl registry-benchmark -am package -DskipTests
+ * java -jar registry-benchmark/target/benchmarks.jar RegistryServiceBenchmark -threads 1,8 -p services=1000
+ * </pre>
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 20:55
+ */
+public class RegistryBenchmarks {
+
+    // 未指定时使用的线程数
+    static final int[] DEFAULT_THREADS = {1, 4};
+
+    // 共享全局状态、只能单线程运行的基准测试，多线程运行时排除
+    static final List<Class<?>> SINGLE_THREADED = List.of(HealthCheckBenchmark.class);
+
+    public static void main(String[] args) throws Exception {
+        int[] threads = DEFAULT_THREADS;
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Arrays.stream(args[++i].split(",")).mapToInt(t -> Integer.parseInt(t.trim())).toArray();
+            } else {
+                rest.add(args[i]);
+            }
+        }
+        CommandLineOptions options = new CommandLineOptions(rest.toArray(new String[0]));
+        if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams()
+                || options.shouldListProfilers() || options.shouldListResultFormats()) {
+            // 帮助与列表类参数交给JMH自己处理
+            org.openjdk.jmh.Main.main(rest.toArray(new String[0]));
+            return;
+        }
+        for (int t : threads) {
+            ChainedOptionsBuilder builder = new OptionsBuilder().parent(options).threads(t);
+            if (t > 1) {
+                SINGLE_THREADED.forEach(benchmark -> builder.exclude(Pattern.quote(benchmark.getName())));
+            }
+            try {
+                new Runner(builder.build()).run();
+            } catch (NoBenchmarksException ex) {
+                if (t == 1) {
+                    throw ex;
+                }
+                // 选中的都是单线程基准测试
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package cn.ipman.registry.benchmark;
+
+import cn.ipman.registry.core.cluster.Snapshot;
+import cn.ipman.registry.core.model.BatchItem;
+import cn.ipman.registry.core.model.InstanceMeta;
+import cn.ipman.registry.core.service.RegistryManService;
+import org.springframework.util.LinkedMultiValueMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 基准测试的数据准备。注册中心的数据保存在 {@link RegistryManService} 的静态字段中，
+ * 每组参数开始前先清空，再按 服务数 x 每个服务的实例数 批量注册。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 20:10
+ */
+public final class RegistryFixture {
+
+    // 每次批量注册的条数
+    static final int BATCH = 10_000;
+
+    private RegistryFixture() {
+    }
+
+    /**
+     * 清空注册中心的数据。
+     */
+    public static void clear() {
+        RegistryManService.restore(new Snapshot(new LinkedMultiValueMap<>(), new HashMap<>(), new HashMap<>(), new HashMap<>(), 0));
+    }
+
+    /**
+     * 清空后重新注册指定规模的数据。
+     *
+     * @param registryService 注册服务
+     * @param services 服务数
+     * @param instances 每个服务的实例数
+     * @return 注册的实例，按 [服务序号][实例序号] 排列，基准测试直接复用，避免在测量中创建对象
+     */
+    public static InstanceMeta[][] populate(RegistryManService registryService, int services, int instances) {
+        clear();
+        InstanceMeta[][] metas = new InstanceMeta[services][instances];
+        List<BatchItem> items = new ArrayList<>(BATCH);
+        for (int s = 0; s < services; s++) {
+            for (int i = 0; i < instances; i++) {
+                metas[s][i] = instance(s, i);
+                items.add(new BatchItem(BatchItem.Op.REGISTER, service(s), metas[s][i]));
+                if (items.size() == BATCH) {
+                    registryService.batch(items);
+                    items = new ArrayList<>(BATCH);
+                }
+            }
+        }
+        if (!items.isEmpty()) {
+            registryService.batch(items);
+        }
+        return metas;
+    }
+
+    /**
+     * @param services 服务数
+     * @return 各序号对应的服务名称
+     */
+    public static String[] services(int services) {
+        String[] names = new String[services];
+        for (int s = 0; s < services; s++) {
+            names[s] = service(s);
+        }
+        return names;
+    }
+
+    /**
+     * @param s 服务序号
+     * @return 服务名称
+     */
+    public static String service(int s) {
+        return "cn.ipman.benchmark.Service" + s;
+    }
+
+    /**
+     * @param s 服务序号
+     * @param i 实例序号
+     * @return 服务实例，带有两个常见的参数
+     */
+    public static InstanceMeta instance(int s, int i) {
+        InstanceMeta instance = InstanceMeta.http("10." + (s >> 8 & 0xFF) + "." + (s & 0xFF) + "." + (i & 0xFF),
+                8000 + (i >> 8));
+        instance.getParameters().put("dc", "bj");
+        instance.getParameters().put("unit", "u" + (i % 4));
+        return instance;
+    }
+}
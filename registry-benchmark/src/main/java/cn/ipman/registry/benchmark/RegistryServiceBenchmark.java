@@ -0,0 +1,143 @@
+package cn.ipman.registry.benchmark;
+
+import cn.ipman.registry.core.model.InstanceMeta;
+import cn.ipman.registry.core.service.RegistryManService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link RegistryManService} 读写热路径的吞吐量，按 服务数 x 每个服务的实例数 参数化，
+ * 线程数由 {@link RegistryBenchmarks} 的 -threads 参数控制。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 20:15
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistryServiceBenchmark {
+
+    // 一次查询版本号涉及的服务数
+    static final int VERSIONS_BATCH = 16;
+    // 按参数过滤的条件，命中四分之一的实例
+    static final Map<String, String> UNIT = Map.of("unit", "u1");
+
+    @Param({"10", "1000"})
+    int services;
+
+    @Param({"10", "100"})
+    int instances;
+
+    final RegistryManService registryService = new RegistryManService();
+    String[] names;
+    InstanceMeta[][] metas;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        metas = RegistryFixture.populate(registryService, services, instances);
+        names = RegistryFixture.services(services);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RegistryFixture.clear();
+    }
+
+    /**
+     * 每个线程独立的随机数与临时实例，线程之间不会注册相同的实例。
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        static final AtomicInteger THREADS = new AtomicInteger();
+
+        final SplittableRandom random = new SplittableRandom();
+        final int thread = THREADS.getAndIncrement();
+        String[] versionServices;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setup(RegistryServiceBenchmark benchmark) {
+            versionServices = new String[Math.min(VERSIONS_BATCH, benchmark.services)];
+            for (int i = 0; i < versionServices.length; i++) {
+                versionServices[i] = benchmark.names[random.nextInt(benchmark.services)];
+            }
+        }
+
+        int service(RegistryServiceBenchmark benchmark) {
+            return random.nextInt(benchmark.services);
+        }
+
+        InstanceMeta existing(RegistryServiceBenchmark benchmark, int service) {
+            return benchmark.metas[service][random.nextInt(benchmark.instances)];
+        }
+
+        InstanceMeta fresh() {
+            // 与预置实例的网段不同，每个线程使用自己的主机地址
+            return InstanceMeta.http("192.168." + (thread & 0xFF) + "." + (next & 0xFF), 9000 + (next++ >> 8 & 0xFF));
+        }
+    }
+
+    /**
+     * 重复注册已存在的实例，即客户端重启或重试时的路径。
+     */
+    @Benchmark
+    public InstanceMeta registerExisting(ThreadState state) {
+        int service = state.service(this);
+        return registryService.register(names[service], state.existing(this, service));
+    }
+
+    /**
+     * 注册一个新实例再注销，每次都会产生两个新版本和两条变更日志。
+     */
+    @Benchmark
+    public InstanceMeta registerAndUnregister(ThreadState state) {
+        String service = names[state.service(this)];
+        InstanceMeta instance = state.fresh();
+        registryService.register(service, instance);
+        return registryService.unregister(service, instance);
+    }
+
+    @Benchmark
+    public long reNew(ThreadState state) {
+        int service = state.service(this);
+        return registryService.reNew(state.existing(this, service), names[service]);
+    }
+
+    @Benchmark
+    public List<InstanceMeta> getAllInstances(ThreadState state) {
+        return registryService.getAllInstances(names[state.service(this)]);
+    }
+
+    /**
+     * 按实例参数过滤查询，由参数倒排索引得出。
+     */
+    @Benchmark
+    public List<InstanceMeta> findInstances(ThreadState state) {
+        return registryService.findInstances(names[state.service(this)], UNIT);
+    }
+
+    @Benchmark
+    public Map<String, Long> versions(ThreadState state) {
+        return registryService.versions(state.versionServices);
+    }
+}
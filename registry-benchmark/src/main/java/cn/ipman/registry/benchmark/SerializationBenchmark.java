@@ -0,0 +1,141 @@
+package cn.ipman.registry.benchmark;
+
+import cn.ipman.registry.core.cluster.Snapshot;
+import cn.ipman.registry.core.cluster.SnapshotCodec;
+import cn.ipman.registry.core.model.InstanceMeta;
+import cn.ipman.registry.core.service.RegistryManService;
+import com.alibaba.fastjson.JSON;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Snapshot} 与 {@link InstanceMeta} 的序列化开销。服务端响应使用 Jackson，
+ * 集群内部与客户端解析使用 fastjson，快照同步使用 {@link SnapshotCodec} 的二进制格式，三者分别测量。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 20:35
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * 按 服务数 x 每个服务的实例数 生成的快照及其各种编码结果。
+     */
+    @State(Scope.Benchmark)
+    public static class SnapshotState {
+        @Param({"10", "1000"})
+        int services;
+
+        @Param({"10", "100"})
+        int instances;
+
+        Snapshot snapshot;
+        String json;
+        byte[] binary;
+        byte[] compressed;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            RegistryFixture.populate(new RegistryManService(), services, instances);
+            snapshot = RegistryManService.snapshot();
+            RegistryFixture.clear();
+            json = JSON.toJSONString(snapshot);
+            binary = SnapshotCodec.encode(snapshot, false);
+            compressed = SnapshotCodec.encode(snapshot, true);
+        }
+    }
+
+    /**
+     * 单个服务实例及其编码结果。
+     */
+    @State(Scope.Benchmark)
+    public static class InstanceState {
+        InstanceMeta instance;
+        String json;
+        byte[] bytes;
+
+        @Setup(Level.Trial)
+        public void setup() throws JsonProcessingException {
+            instance = RegistryFixture.instance(1, 1);
+            instance.setStatus(true);
+            json = JSON.toJSONString(instance);
+            bytes = OBJECT_MAPPER.writeValueAsBytes(instance);
+        }
+    }
+
+    @Benchmark
+    public String snapshotToJson(SnapshotState state) {
+        return JSON.toJSONString(state.snapshot);
+    }
+
+    @Benchmark
+    public Snapshot snapshotFromJson(SnapshotState state) {
+        return JSON.parseObject(state.json, Snapshot.class);
+    }
+
+    @Benchmark
+    public byte[] snapshotToJsonJackson(SnapshotState state) throws JsonProcessingException {
+        return OBJECT_MAPPER.writeValueAsBytes(state.snapshot);
+    }
+
+    @Benchmark
+    public byte[] snapshotEncode(SnapshotState state) {
+        return SnapshotCodec.encode(state.snapshot, false);
+    }
+
+    @Benchmark
+    public byte[] snapshotEncodeGzip(SnapshotState state) {
+        return SnapshotCodec.encode(state.snapshot, true);
+    }
+
+    @Benchmark
+    public Snapshot snapshotDecode(SnapshotState state) {
+        return SnapshotCodec.decode(state.binary);
+    }
+
+    @Benchmark
+    public Snapshot snapshotDecodeGzip(SnapshotState state) {
+        return SnapshotCodec.decode(state.compressed);
+    }
+
+    @Benchmark
+    public String instanceToJson(InstanceState state) {
+        return JSON.toJSONString(state.instance);
+    }
+
+    @Benchmark
+    public InstanceMeta instanceFromJson(InstanceState state) {
+        return JSON.parseObject(state.json, InstanceMeta.class);
+    }
+
+    @Benchmark
+    public byte[] instanceToJsonJackson(InstanceState state) throws JsonProcessingException {
+        return OBJECT_MAPPER.writeValueAsBytes(state.instance);
+    }
+
+    @Benchmark
+    public InstanceMeta instanceFromJsonJackson(InstanceState state) throws IOException {
+        return OBJECT_MAPPER.readValue(state.bytes, InstanceMeta.class);
+    }
+}
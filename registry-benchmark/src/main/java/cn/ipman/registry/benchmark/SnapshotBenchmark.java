@@ -0,0 +1,91 @@
+package cn.ipman.registry.benchmark;
+
+import cn.ipman.registry.core.cluster.Snapshot;
+import cn.ipman.registry.core.service.RegistryManService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全量快照的生成与恢复耗时，即 Follower 落后过多时 Leader 与 Follower 各自的开销。
+ * 快照与恢复都持有写锁，多线程运行时衡量的是互相排队后的耗时。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 20:25
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @Param({"10", "1000"})
+    int services;
+
+    @Param({"10", "100"})
+    int instances;
+
+    Snapshot snapshot;
+    byte[] binary;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        RegistryFixture.populate(new RegistryManService(), services, instances);
+        snapshot = RegistryManService.snapshot();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RegistryManService.writeSnapshot(out, false);
+        binary = out.toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RegistryFixture.clear();
+    }
+
+    @Benchmark
+    public Snapshot snapshot() {
+        return RegistryManService.snapshot();
+    }
+
+    /**
+     * 以二进制格式写出快照，即 Leader 响应 /snapshot 与写检查点的路径。
+     */
+    @Benchmark
+    public void writeSnapshot() throws IOException {
+        RegistryManService.writeSnapshot(OutputStream.nullOutputStream(), false);
+    }
+
+    /**
+     * 恢复内容相同的快照，每次都会重建所有服务的实例列表与租约。
+     */
+    @Benchmark
+    public long restore() {
+        return RegistryManService.restore(snapshot);
+    }
+
+    /**
+     * 边解码边恢复二进制快照，即 Follower 同步快照与加载检查点的路径。
+     */
+    @Benchmark
+    public long restoreBinary() throws IOException {
+        return RegistryManService.restore(new ByteArrayInputStream(binary));
+    }
+}
@@ -0,0 +1,23 @@
+package cn.ipman.registry.client;
+
+import cn.ipman.registry.client.model.InstanceMeta;
+
+import java.util.List;
+
+/**
+ * 服务实例列表变化的监听器。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 23:28
+ */
+@FunctionalInterface
+public interface InstanceListener {
+
+    /**
+     * 服务的实例列表发生变化，在客户端的后台线程中回调，实现不应长时间阻塞。
+     *
+     * @param service 服务名称。
+     * @param instances 变化后的实例列表(只读)。
+     */
+    void onChanged(String service, List<InstanceMeta> instances);
+}
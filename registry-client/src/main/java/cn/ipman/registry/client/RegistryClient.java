@@ -0,0 +1,293 @@
+package cn.ipman.registry.client;
+
+import cn.ipman.registry.client.cache.DiskCache;
+import cn.ipman.registry.client.cache.InstanceCache;
+import cn.ipman.registry.client.cluster.RegistryServers;
+import cn.ipman.registry.client.model.InstanceMeta;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 注册中心客户端。
+ * <ul>
+ *     <li>服务提供方：{@link #register} 注册实例后，由一个后台任务定期用一个批量请求为本进程所有实例续约，
+ *     续约使用 UPSERT，实例因注册中心重启或租约过期丢失时会被重新注册；</li>
+ *     <li>服务消费方：{@link #findAll} 第一次查询某个服务时拉取实例列表并订阅，之后直接读进程内缓存；
+ *     后台任务定期用一个 /versions 请求查询所有订阅服务的版本，只有版本变化的服务才带着 ETag 重新拉取；</li>
+ *     <li>故障切换：读请求可以发往任一节点，写请求优先发往Leader，节点不可用时切换到其它节点，见 {@link RegistryServers}；</li>
+ *     <li>冷启动：拉取到的实例列表同时写入磁盘，注册中心不可用时使用上次保存的实例列表。</li>
+ * </ul>
+ * <pre>
+ * RegistryClient client = new RegistryClient(config);
+ * client.start();
+ * client.register("cn.ipman.UserService", InstanceMeta.http("10.0.0.1", 8080, "user"));
+ * List&lt;InstanceMeta&gt; instances = client.findAll("cn.ipman.OrderService");
+ * </pre>
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 23:30
+ */
+@Slf4j
+public class RegistryClient implements AutoCloseable {
+
+    final RegistryClientConfig config;
+    final RegistryServers servers;
+    final InstanceCache cache;
+
+    // 本进程注册的实例，服务 -> 实例
+    final Map<String, Set<InstanceMeta>> registered = new ConcurrentHashMap<>();
+    // 订阅的服务
+    final Set<String> subscribed = ConcurrentHashMap.newKeySet();
+    // 服务 -> 实例列表变化监听器
+    final Map<String, List<InstanceListener>> listeners = new ConcurrentHashMap<>();
+
+    ScheduledExecutorService executor;
+    volatile String versionsEtag; // 上次 /versions 响应的 ETag，订阅服务的版本都没变时返回 304
+
+    /**
+     * @param config 客户端配置。
+     */
+    public RegistryClient(RegistryClientConfig config) {
+        this.config = config;
+        this.servers = new RegistryServers(config.getServers(), config.getTimeout());
+        this.cache = new InstanceCache(config.getCacheDir() == null ? null : new DiskCache(config.getCacheDir()));
+    }
+
+    /**
+     * 启动后台的心跳、版本查询与节点列表刷新任务。
+     */
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "registry-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::refreshCluster);
+        executor.scheduleAtFixedRate(this::heartbeat,
+                config.getHeartbeatInterval(), config.getHeartbeatInterval(), TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::poll,
+                config.getPollInterval(), config.getPollInterval(), TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::refreshCluster,
+                config.getClusterRefreshInterval(), config.getClusterRefreshInterval(), TimeUnit.MILLISECONDS);
+        log.info(" ====> registry client started, servers {}", config.getServers());
+    }
+
+    /**
+     * 停止后台任务，按配置注销本进程注册的实例。
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (config.isUnregisterOnClose()) {
+            registered.forEach((service, instances) -> instances.forEach(instance -> unregister(service, instance)));
+        }
+        servers.close();
+    }
+
+    /**
+     * 注册服务实例，之后由心跳任务续约。注册中心暂时不可用时不抛出异常，由之后的心跳完成注册。
+     *
+     * @param service 服务名称。
+     * @param instance 服务实例。
+     */
+    public void register(String service, InstanceMeta instance) {
+        registered.computeIfAbsent(service, k -> ConcurrentHashMap.newKeySet()).add(instance);
+        try {
+            servers.write("/reg?service=" + encode(service) + "&ttl=" + config.getLeaseTtl(), JSON.toJSONString(instance));
+            log.info(" ====> registered {} @ {}", service, instance.toUrl());
+        } catch (IOException ex) {
+            log.warn(" ====> register {} @ {} failed, retry with next heartbeat: {}",
+                    service, instance.toUrl(), ex.toString());
+        }
+    }
+
+    /**
+     * 注销服务实例，并停止为其续约。
+     *
+     * @param service 服务名称。
+     * @param instance 服务实例。
+     */
+    public void unregister(String service, InstanceMeta instance) {
+        Set<InstanceMeta> instances = registered.get(service);
+        if (instances != null) {
+            instances.remove(instance);
+        }
+        try {
+            servers.write("/unreg?service=" + encode(service), JSON.toJSONString(instance));
+            log.info(" ====> unregistered {} @ {}", service, instance.toUrl());
+        } catch (IOException ex) {
+            // 不再续约，实例会在租约过期后被注册中心剔除
+            log.warn(" ====> unregister {} @ {} failed: {}", service, instance.toUrl(), ex.toString());
+        }
+    }
+
+    /**
+     * 查询服务的实例列表。第一次查询时从注册中心拉取并订阅该服务，之后直接返回进程内缓存，
+     * 缓存由后台任务在服务版本变化时更新；注册中心不可用时使用磁盘缓存。
+     *
+     * @param service 服务名称。
+     * @return 只读的实例列表，没有可用实例时返回空列表。
+     */
+    public List<InstanceMeta> findAll(String service) {
+        InstanceCache.Entry entry = cache.get(service);
+        if (entry != null) {
+            return entry.instances();
+        }
+        subscribed.add(service);
+        try {
+            fetch(service);
+        } catch (IOException | RuntimeException ex) {
+            log.warn(" ====> fetch instances of {} failed, try disk cache: {}", service, ex.toString());
+            cache.restore(service);
+        }
+        entry = cache.get(service);
+        return entry == null ? List.of() : entry.instances();
+    }
+
+    /**
+     * 订阅服务实例列表的变化，订阅时先用当前的实例列表回调一次。
+     *
+     * @param service 服务名称。
+     * @param listener 实例列表变化监听器。
+     */
+    public void subscribe(String service, InstanceListener listener) {
+        // 先完成第一次拉取，避免拉取时的变化通知与下面的回调重复
+        findAll(service);
+        listeners.computeIfAbsent(service, k -> new CopyOnWriteArrayList<>()).add(listener);
+        listener.onChanged(service, findAll(service));
+    }
+
+    /**
+     * 取消订阅服务实例列表的变化。
+     *
+     * @param service 服务名称。
+     * @param listener 实例列表变化监听器。
+     */
+    public void unsubscribe(String service, InstanceListener listener) {
+        List<InstanceListener> list = listeners.get(service);
+        if (list != null) {
+            list.remove(listener);
+        }
+    }
+
+    /**
+     * 用一个批量请求为本进程注册的所有实例续约。
+     */
+    void heartbeat() {
+        List<Map<String, Object>> items = new ArrayList<>();
+        registered.forEach((service, instances) -> instances.forEach(instance -> {
+            Map<String, Object> item = new HashMap<>();
+            item.put("op", "UPSERT");
+            item.put("service", service);
+            item.put("instance", instance);
+            // 实例因注册中心重启或租约过期丢失时，重新注册同样声明租约超时时间
+            item.put("ttl", config.getLeaseTtl());
+            items.add(item);
+        }));
+        if (items.isEmpty()) {
+            return;
+        }
+        try {
+            servers.write("/batch", JSON.toJSONString(items));
+            log.debug(" ====> heartbeat {} instances", items.size());
+        } catch (IOException | RuntimeException ex) {
+            log.warn(" ====> heartbeat {} instances failed: {}", items.size(), ex.toString());
+        }
+    }
+
+    /**
+     * 查询所有订阅服务的版本，重新拉取版本变化的服务。
+     */
+    void poll() {
+        if (subscribed.isEmpty()) {
+            return;
+        }
+        if (servers.isStale()) {
+            refreshCluster();
+        }
+        try {
+            String etag = versionsEtag;
+            RegistryServers.Response response = servers.read(
+                    "/versions?services=" + encode(String.join(",", subscribed)), etag);
+            if (response.notModified()) {
+                return;
+            }
+            JSONObject versions = JSON.parseObject(response.body());
+            for (String service : subscribed) {
+                Long version = versions == null ? null : versions.getLong(service);
+                InstanceCache.Entry entry = cache.get(service);
+                if (version != null && (entry == null || entry.version() != version)) {
+                    fetch(service);
+                }
+            }
+            // 所有变化都已拉取成功，之后版本不变时返回 304
+            versionsEtag = response.etag();
+        } catch (IOException | RuntimeException ex) {
+            versionsEtag = null;
+            log.warn(" ====> poll versions failed: {}", ex.toString());
+        }
+    }
+
+    /**
+     * 带着缓存版本的 ETag 拉取服务的实例列表，有变化时更新缓存并通知监听器。
+     * 后台任务与第一次查询可能同时拉取同一服务，串行执行避免旧版本覆盖新版本。
+     */
+    synchronized void fetch(String service) throws IOException {
+        InstanceCache.Entry entry = cache.get(service);
+        RegistryServers.Response response = servers.read("/findall?service=" + encode(service),
+                entry == null ? null : "\"" + entry.version() + "\"");
+        if (response.notModified()) {
+            return;
+        }
+        List<InstanceMeta> instances = response.body().isEmpty()
+                ? List.of() : JSON.parseArray(response.body(), InstanceMeta.class);
+        long version = response.etag() == null ? 0 : Long.parseLong(response.etag().replace("\"", ""));
+        if (cache.update(service, version, instances)) {
+            log.debug(" ====> instances of {} changed to version {}, {} instances", service, version, instances.size());
+            fireChanged(service, cache.get(service).instances());
+        }
+    }
+
+    private void refreshCluster() {
+        try {
+            servers.refresh();
+        } catch (IOException | RuntimeException ex) {
+            log.warn(" ====> refresh registry servers failed: {}", ex.toString());
+        }
+    }
+
+    private void fireChanged(String service, List<InstanceMeta> instances) {
+        List<InstanceListener> list = listeners.get(service);
+        if (list == null) {
+            return;
+        }
+        for (InstanceListener listener : list) {
+            try {
+                listener.onChanged(service, instances);
+            } catch (RuntimeException ex) {
+                log.warn(" ====> instance listener {} failed", listener, ex);
+            }
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
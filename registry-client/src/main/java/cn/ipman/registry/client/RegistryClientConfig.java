@@ -0,0 +1,58 @@
+package cn.ipman.registry.client;
+
+import lombok.Data;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 注册中心客户端配置。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 23:05
+ */
+@Data
+public class RegistryClientConfig {
+
+    /**
+     * 注册中心节点地址，作为发现集群的种子，不需要列全所有节点。
+     */
+    List<String> servers = List.of("http://localhost:8484");
+
+    /**
+     * 单次HTTP请求的超时时间(毫秒)。
+     */
+    int timeout = 1_000;
+
+    /**
+     * 心跳间隔(毫秒)，需明显小于租约超时时间(见 {@link #leaseTtl}，服务端默认20秒)。
+     * 每次心跳用一个批量请求为本进程注册的所有实例续约。
+     */
+    long heartbeatInterval = 5_000;
+
+    /**
+     * 注册时声明的租约超时时间(毫秒)，不大于0时使用服务端默认值，超出服务端允许的范围时取边界值。
+     * 变化频繁的实例可以声明较短的超时以便下线后尽快剔除，稳定的实例可以声明较长的超时并相应调大心跳间隔。
+     */
+    long leaseTtl = 0;
+
+    /**
+     * 查询订阅服务版本的间隔(毫秒)，版本变化的服务才会重新拉取实例列表。
+     */
+    long pollInterval = 1_000;
+
+    /**
+     * 刷新集群节点列表(/cluster)的间隔(毫秒)，请求失败时会提前刷新。
+     */
+    long clusterRefreshInterval = 30_000;
+
+    /**
+     * 实例列表的本地磁盘缓存目录，注册中心不可用时用于冷启动，为null时不使用磁盘缓存。
+     */
+    Path cacheDir = Path.of(System.getProperty("user.home"), ".registry-man", "cache");
+
+    /**
+     * 关闭客户端时是否注销本进程注册的实例。
+     */
+    boolean unregisterOnClose = true;
+}
@@ -0,0 +1,85 @@
+package cn.ipman.registry.client.cache;
+
+import cn.ipman.registry.client.model.InstanceMeta;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * 实例列表的本地磁盘缓存。每个服务一个文件，保存最近一次从注册中心拿到的版本与实例列表，
+ * 进程启动时注册中心不可用，可以先用上次的实例列表工作，等注册中心恢复后再更新。
+ * 写入先写临时文件再原子替换，进程中途退出不会留下半个文件。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 23:20
+ */
+@Slf4j
+public class DiskCache {
+
+    final Path dir;
+
+    /**
+     * @param dir 缓存目录，不存在时在第一次写入时创建。
+     */
+    public DiskCache(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * 保存服务的实例列表，失败只记录日志，不影响调用方。
+     *
+     * @param service 服务名称。
+     * @param version 服务版本号。
+     * @param instances 实例列表。
+     */
+    public void save(String service, long version, List<InstanceMeta> instances) {
+        JSONObject json = new JSONObject();
+        json.put("service", service);
+        json.put("version", version);
+        json.put("instances", instances);
+        Path file = file(service);
+        try {
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            Files.writeString(temp, json.toJSONString(), StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            log.warn(" ====> save instances of {} to {} failed: {}", service, file, ex.toString());
+        }
+    }
+
+    /**
+     * 读取服务上次保存的实例列表。
+     *
+     * @param service 服务名称。
+     * @return 上次保存的实例列表，没有或无法读取时返回null。
+     */
+    public InstanceCache.Entry load(String service) {
+        Path file = file(service);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            JSONObject json = JSON.parseObject(Files.readString(file, StandardCharsets.UTF_8));
+            JSONArray instances = json.getJSONArray("instances");
+            return new InstanceCache.Entry(json.getLongValue("version"),
+                    List.copyOf(instances.toJavaList(InstanceMeta.class)));
+        } catch (IOException | RuntimeException ex) {
+            log.warn(" ====> load instances of {} from {} failed: {}", service, file, ex.toString());
+            return null;
+        }
+    }
+
+    private Path file(String service) {
+        return dir.resolve(URLEncoder.encode(service, StandardCharsets.UTF_8) + ".json");
+    }
+}
@@ -0,0 +1,92 @@
+package cn.ipman.registry.client.cache;
+
+import cn.ipman.registry.client.model.InstanceMeta;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内的实例列表缓存，按服务保存版本号与实例列表。查询直接读缓存，
+ * 只有服务版本变化时才由客户端重新拉取并更新，更新后同步写入磁盘缓存。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 23:25
+ */
+public class InstanceCache {
+
+    // 服务 -> 缓存的实例列表
+    final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // 磁盘缓存，未开启时为null
+    final DiskCache disk;
+
+    /**
+     * @param disk 磁盘缓存，为null时只在内存中缓存。
+     */
+    public InstanceCache(DiskCache disk) {
+        this.disk = disk;
+    }
+
+    /**
+     * @param service 服务名称。
+     * @return 缓存的实例列表，没有时返回null。
+     */
+    public Entry get(String service) {
+        return entries.get(service);
+    }
+
+    /**
+     * @return 已缓存的服务，即客户端订阅的服务。
+     */
+    public Set<String> services() {
+        return entries.keySet();
+    }
+
+    /**
+     * 更新服务的实例列表。只要版本号与缓存的不同就替换，注册中心重建后版本号可能变小。
+     *
+     * @param service 服务名称。
+     * @param version 服务版本号。
+     * @param instances 实例列表。
+     * @return 缓存是否发生了变化。
+     */
+    public boolean update(String service, long version, List<InstanceMeta> instances) {
+        Entry next = new Entry(version, List.copyOf(instances));
+        Entry previous = entries.put(service, next);
+        if (previous != null && previous.version == version) {
+            return false;
+        }
+        if (disk != null) {
+            disk.save(service, version, next.instances);
+        }
+        return true;
+    }
+
+    /**
+     * 注册中心不可用时，从磁盘缓存恢复服务的实例列表。
+     *
+     * @param service 服务名称。
+     * @return 恢复的实例列表，磁盘中没有时返回null。
+     */
+    public Entry restore(String service) {
+        if (disk == null) {
+            return null;
+        }
+        Entry entry = disk.load(service);
+        if (entry != null) {
+            entries.putIfAbsent(service, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * 缓存的实例列表。
+     *
+     * @param version 服务版本号。
+     * @param instances 只读的实例列表。
+     */
+    public record Entry(long version, List<InstanceMeta> instances) {
+    }
+}
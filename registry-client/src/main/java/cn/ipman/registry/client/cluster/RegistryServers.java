@@ -0,0 +1,202 @@
+package cn.ipman.registry.client.cluster;
+
+import cn.ipman.registry.client.model.Server;
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 注册中心节点列表与请求的故障切换。
+ * <ul>
+ *     <li>读请求固定发往一个节点(Follower同样可以读)，失败后依次尝试其它节点，成功的节点成为新的固定节点；</li>
+ *     <li>写请求优先发往Leader，省去Follower转发的一跳，Leader不可用时发往其它节点，由其转发给新Leader；</li>
+ *     <li>节点列表通过 /cluster 从任一可用节点获取，配置的地址只作为发现集群的种子，请求失败后下次刷新。</li>
+ * </ul>
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 23:10
+ */
+@Slf4j
+public class RegistryServers {
+
+    final static MediaType JSON_TYPE = MediaType.get("application/json; charset=utf-8");
+
+    final List<String> seeds;        // 配置的节点地址
+    final OkHttpClient client;
+
+    volatile List<String> known = List.of(); // 从 /cluster 获取的在线节点
+    volatile String leader;          // 当前Leader，未知时为null
+    volatile String preferred;       // 读请求固定发往的节点
+    volatile boolean stale = true;   // 节点列表需要刷新
+
+    /**
+     * @param seeds 配置的注册中心节点地址。
+     * @param timeout 单次请求的超时时间(毫秒)。
+     */
+    public RegistryServers(List<String> seeds, int timeout) {
+        this.seeds = List.copyOf(seeds);
+        this.client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(4, 60, TimeUnit.SECONDS))
+                .callTimeout(timeout, TimeUnit.MILLISECONDS)
+                .connectTimeout(timeout, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * @return 节点列表是否需要刷新，上次刷新失败或有请求失败时为true。
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * 从任一可用节点获取集群节点列表，并更新Leader。
+     *
+     * @throws IOException 所有节点都不可用时抛出。
+     */
+    public void refresh() throws IOException {
+        Response response = read("/cluster", null);
+        List<Server> servers = JSON.parseArray(response.body(), Server.class);
+        List<String> online = new ArrayList<>();
+        String next = null;
+        for (Server server : servers) {
+            if (server.isStatus()) {
+                online.add(server.getUrl());
+                if (server.isLeader()) {
+                    next = server.getUrl();
+                }
+            }
+        }
+        known = online;
+        leader = next;
+        stale = false;
+        log.debug(" ====> registry servers {}, leader {}", online, next);
+    }
+
+    /**
+     * 发送读请求，失败时切换到其它节点。
+     *
+     * @param path 请求路径与查询参数。
+     * @param etag 缓存的 ETag，为null时不带 If-None-Match。
+     * @return 第一个成功处理请求的节点的响应，可能为 304。
+     * @throws IOException 所有节点都不可用时抛出。
+     */
+    public Response read(String path, String etag) throws IOException {
+        return execute(readOrder(), server -> {
+            Request.Builder builder = new Request.Builder().url(server + path);
+            if (etag != null) {
+                builder.header("If-None-Match", etag);
+            }
+            return builder.build();
+        }, true);
+    }
+
+    /**
+     * 发送写请求，优先发往Leader，失败时切换到其它节点。
+     *
+     * @param path 请求路径与查询参数。
+     * @param json 请求体。
+     * @return 第一个成功处理请求的节点的响应。
+     * @throws IOException 所有节点都不可用时抛出。
+     */
+    public Response write(String path, String json) throws IOException {
+        Set<String> order = new LinkedHashSet<>();
+        String current = leader;
+        if (current != null) {
+            order.add(current);
+        }
+        order.addAll(readOrder());
+        return execute(order, server -> new Request.Builder()
+                .url(server + path)
+                .post(RequestBody.create(json, JSON_TYPE))
+                .build(), false);
+    }
+
+    /**
+     * 释放连接池与线程。
+     */
+    public void close() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    /**
+     * 读请求尝试节点的顺序：固定节点、集群中的在线节点、种子节点。
+     */
+    private Set<String> readOrder() {
+        Set<String> order = new LinkedHashSet<>();
+        String current = preferred;
+        if (current != null) {
+            order.add(current);
+        }
+        order.addAll(known);
+        order.addAll(seeds);
+        return order;
+    }
+
+    private Response execute(Set<String> servers, RequestFactory factory, boolean read) throws IOException {
+        IOException failure = null;
+        for (String server : servers) {
+            try (okhttp3.Response response = client.newCall(factory.create(server)).execute()) {
+                // 除 2xx 与 304 外的响应(如 4xx 错误页)都不是注册中心的正常应答，同样视为该节点失败
+                if (!response.isSuccessful() && response.code() != 304) {
+                    throw new IOException("server " + server + " responded " + response.code());
+                }
+                ResponseBody body = response.body();
+                Response result = new Response(response.code(), body == null ? "" : body.string(),
+                        response.header("ETag"), server);
+                if (read) {
+                    preferred = server;
+                }
+                return result;
+            } catch (IOException ex) {
+                log.debug(" ====> registry server {} failed: {}", server, ex.toString());
+                // 节点不可用，下次请求换一个节点，并尽快刷新节点列表
+                if (server.equals(preferred)) {
+                    preferred = null;
+                }
+                if (server.equals(leader)) {
+                    leader = null;
+                }
+                stale = true;
+                failure = ex;
+            }
+        }
+        throw failure != null ? failure : new IOException("no registry server configured");
+    }
+
+    @FunctionalInterface
+    private interface RequestFactory {
+        Request create(String server);
+    }
+
+    /**
+     * 注册中心的响应。
+     *
+     * @param code HTTP状态码。
+     * @param body 响应体，没有时为空字符串。
+     * @param etag 响应的 ETag，没有时为null。
+     * @param server 处理请求的节点。
+     */
+    public record Response(int code, String body, String etag, String server) {
+
+        /**
+         * @return 是否为 304，即缓存的内容仍然有效。
+         */
+        public boolean notModified() {
+            return code == 304;
+        }
+    }
+}
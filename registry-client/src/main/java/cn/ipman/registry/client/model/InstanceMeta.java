@@ -0,0 +1,77 @@
+package cn.ipman.registry.client.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 服务提供者实例，JSON格式与注册中心服务端的实例模型一致。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 23:00
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(of = {"scheme", "host", "port", "context"})
+public class InstanceMeta {
+
+    private String scheme;  // 协议类型，如http、https
+    private String host;    // 服务实例的主机地址
+    private Integer port;   // 服务实例的端口号
+    private String context; // 服务实例的上下文路径
+
+    private boolean status;  // 服务状态，true代表在线，false代表离线
+    private Map<String, String> parameters = new HashMap<>();   // 服务实例的额外参数信息，如机房、灰度标记等
+
+    /**
+     * 构造一个服务实例。
+     *
+     * @param scheme 协议类型。
+     * @param host 服务主机地址。
+     * @param port 服务端口号。
+     * @param context 服务上下文路径。
+     */
+    public InstanceMeta(String scheme, String host, Integer port, String context) {
+        this.scheme = scheme;
+        this.host = host;
+        this.port = port;
+        this.context = context;
+    }
+
+    /**
+     * 创建一个HTTP协议的服务实例。
+     *
+     * @param host 服务主机地址。
+     * @param port 服务端口号。
+     * @param context 服务上下文路径。
+     * @return 服务实例。
+     */
+    public static InstanceMeta http(String host, Integer port, String context) {
+        return new InstanceMeta("http", host, port, context);
+    }
+
+    /**
+     * 向当前服务实例添加参数信息。
+     *
+     * @param params 要添加的参数信息映射。
+     * @return 返回当前InstanceMeta实例，以支持链式调用。
+     */
+    public InstanceMeta addParams(Map<String, String> params) {
+        this.getParameters().putAll(params);
+        return this;
+    }
+
+    /**
+     * 构建服务的完整URL地址。
+     *
+     * @return 服务的URL字符串。
+     */
+    public String toUrl() {
+        return String.format("%s://%s:%d/%s", scheme, host, port, context);
+    }
+}
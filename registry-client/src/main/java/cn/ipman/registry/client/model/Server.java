@@ -0,0 +1,23 @@
+package cn.ipman.registry.client.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * 注册中心节点，对应服务端 /cluster 返回的节点信息。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 23:02
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(of = {"url"})
+public class Server {
+    private String url;     // 节点的URL地址
+    private boolean leader; // 是否为Leader
+    private boolean status; // 节点是否在线
+    private long version;   // 节点的数据版本
+}
@@ -0,0 +1,234 @@
+package cn.ipman.registry.client;
+
+import cn.ipman.registry.client.model.InstanceMeta;
+import cn.ipman.registry.client.model.Server;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 客户端与注册中心的交互：实例列表按 ETag 中的版本号缓存与条件请求，/versions 只触发版本变化服务的拉取，
+ * 心跳用一个 UPSERT 批量请求续约，注册中心不可用时从磁盘缓存冷启动。
+ * 不启动后台任务，直接调用 poll、heartbeat 等方法，请求与响应的顺序是确定的。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 08:55
+ */
+class RegistryClientTests {
+
+    static final String USER = "cn.ipman.UserService";
+    static final String ORDER = "cn.ipman.OrderService";
+
+    final MockWebServer server = new MockWebServer();
+    final List<RegistryClient> clients = new ArrayList<>();
+
+    @TempDir
+    Path cacheDir;
+
+    RegistryClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server.start();
+        client = client(server);
+        // 先获取一次节点列表，之后的 poll 不再刷新
+        server.enqueue(cluster());
+        client.servers.refresh();
+        assertEquals("/cluster", take().getPath());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        clients.forEach(RegistryClient::close);
+        server.shutdown();
+    }
+
+    @Test
+    void fetchCachesVersionFromEtagAndRevalidates() throws Exception {
+        InstanceMeta instance = InstanceMeta.http("10.0.0.1", 8080, "user");
+        server.enqueue(json(JSON.toJSONString(List.of(instance)), "\"7\""));
+
+        assertEquals(List.of(instance), client.findAll(USER));
+        RecordedRequest first = take();
+        assertEquals("/findall?service=" + USER, first.getPath());
+        assertNull(first.getHeader("If-None-Match"));
+        assertEquals(7, client.cache.get(USER).version());
+
+        // 再次拉取时带上缓存的版本号，304 时保留缓存
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"7\""));
+        client.fetch(USER);
+        assertEquals("\"7\"", take().getHeader("If-None-Match"));
+        assertEquals(List.of(instance), client.findAll(USER));
+        assertEquals(3, server.getRequestCount()); // /cluster 与两次 /findall
+    }
+
+    @Test
+    void emptyBodyMeansNoInstances() throws Exception {
+        // 服务端没有该服务时返回空的响应体且不带 ETag
+        server.enqueue(new MockResponse());
+
+        assertEquals(List.of(), client.findAll(USER));
+        assertEquals(0, client.cache.get(USER).version());
+        take();
+    }
+
+    @Test
+    void pollFetchesOnlyChangedServices() throws Exception {
+        client.subscribed.addAll(Set.of(USER, ORDER));
+        client.cache.update(USER, 1, List.of());
+        client.cache.update(ORDER, 1, List.of());
+        InstanceMeta instance = InstanceMeta.http("10.0.0.1", 8080, "user");
+        server.enqueue(json(JSON.toJSONString(Map.of(USER, 2, ORDER, 1)), "\"v1\""));
+        server.enqueue(json(JSON.toJSONString(List.of(instance)), "\"2\""));
+
+        client.poll();
+
+        RecordedRequest versions = take();
+        assertTrue(versions.getPath().startsWith("/versions?services="), versions.getPath());
+        assertTrue(versions.getPath().contains(USER) && versions.getPath().contains(ORDER), versions.getPath());
+        assertNull(versions.getHeader("If-None-Match"));
+        assertEquals("/findall?service=" + USER, take().getPath());
+        assertEquals(2, client.cache.get(USER).version());
+        assertEquals(List.of(instance), client.cache.get(USER).instances());
+        assertEquals(3, server.getRequestCount()); // /cluster、/versions 与一次 /findall
+
+        // 版本都没变时服务端返回 304，不再拉取
+        server.enqueue(new MockResponse().setResponseCode(304));
+        client.poll();
+        assertEquals("\"v1\"", take().getHeader("If-None-Match"));
+        assertEquals(4, server.getRequestCount());
+    }
+
+    @Test
+    void pollRevalidatesAllVersionsAfterFailedFetch() throws Exception {
+        client.subscribed.add(USER);
+        client.cache.update(USER, 1, List.of());
+        server.enqueue(json(JSON.toJSONString(Map.of(USER, 2)), "\"v1\""));
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        client.poll();
+        take();
+        assertEquals("/findall?service=" + USER, take().getPath());
+        assertEquals(1, client.cache.get(USER).version());
+
+        // 拉取失败时不保存 /versions 的 ETag，下次查询拿到完整的版本号再重试，并先刷新节点列表
+        assertNull(client.versionsEtag);
+        assertTrue(client.servers.isStale());
+        server.enqueue(cluster());
+        server.enqueue(json(JSON.toJSONString(Map.of(USER, 2)), "\"v1\""));
+        server.enqueue(json("[]", "\"2\""));
+        client.poll();
+        assertEquals("/cluster", take().getPath());
+        assertNull(take().getHeader("If-None-Match"));
+        assertEquals("/findall?service=" + USER, take().getPath());
+        assertEquals(2, client.cache.get(USER).version());
+        assertEquals("\"v1\"", client.versionsEtag);
+    }
+
+    @Test
+    void heartbeatRenewsAllInstancesInOneUpsertBatch() throws Exception {
+        InstanceMeta user = InstanceMeta.http("10.0.0.1", 8080, "user");
+        InstanceMeta order = InstanceMeta.http("10.0.0.2", 8081, "order");
+        server.enqueue(json(JSON.toJSONString(user), null));
+        server.enqueue(json(JSON.toJSONString(order), null));
+        client.register(USER, user);
+        client.register(ORDER, order);
+        assertEquals("/reg?service=" + USER + "&ttl=30000", take().getPath());
+        assertEquals("/reg?service=" + ORDER + "&ttl=30000", take().getPath());
+
+        server.enqueue(json("[]", null));
+        client.heartbeat();
+
+        RecordedRequest batch = take();
+        assertEquals("POST", batch.getMethod());
+        assertEquals("/batch", batch.getPath());
+        JSONArray items = JSON.parseArray(batch.getBody().readUtf8());
+        assertEquals(2, items.size());
+        for (int i = 0; i < items.size(); i++) {
+            JSONObject item = items.getJSONObject(i);
+            assertEquals("UPSERT", item.getString("op"));
+            assertEquals(30_000, item.getLongValue("ttl"));
+            InstanceMeta instance = item.getObject("instance", InstanceMeta.class);
+            assertEquals(USER.equals(item.getString("service")) ? user : order, instance);
+        }
+    }
+
+    @Test
+    void heartbeatWithoutInstancesSendsNothing() {
+        client.heartbeat();
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    void coldStartUsesDiskCacheWhenRegistryIsDown() throws Exception {
+        InstanceMeta instance = InstanceMeta.http("10.0.0.1", 8080, "user");
+        server.enqueue(json(JSON.toJSONString(List.of(instance)), "\"5\""));
+        assertEquals(List.of(instance), client.findAll(USER));
+
+        // 新进程启动时注册中心不可用
+        MockWebServer down = new MockWebServer();
+        down.start();
+        down.enqueue(new MockResponse().setResponseCode(503));
+        try {
+            RegistryClient restarted = client(down);
+            assertEquals(List.of(instance), restarted.findAll(USER));
+            assertEquals(5, restarted.cache.get(USER).version());
+        } finally {
+            down.shutdown();
+        }
+    }
+
+    private RegistryClient client(MockWebServer registry) {
+        RegistryClientConfig config = new RegistryClientConfig();
+        config.setServers(List.of(url(registry)));
+        config.setCacheDir(cacheDir);
+        config.setLeaseTtl(30_000);
+        config.setUnregisterOnClose(false);
+        RegistryClient registryClient = new RegistryClient(config);
+        clients.add(registryClient);
+        return registryClient;
+    }
+
+    /**
+     * @return 只有 server 一个节点且为Leader的 /cluster 响应。
+     */
+    private MockResponse cluster() {
+        return json(JSON.toJSONString(List.of(new Server(url(server), true, true, 0))), null);
+    }
+
+    private RecordedRequest take() throws InterruptedException {
+        RecordedRequest request = server.takeRequest(1, TimeUnit.SECONDS);
+        assertNotNull(request);
+        return request;
+    }
+
+    private static MockResponse json(String body, String etag) {
+        MockResponse response = new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+        return etag == null ? response : response.setHeader("ETag", etag);
+    }
+
+    private static String url(MockWebServer server) {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+}
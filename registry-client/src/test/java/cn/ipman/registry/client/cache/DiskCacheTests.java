@@ -0,0 +1,60 @@
+package cn.ipman.registry.client.cache;
+
+import cn.ipman.registry.client.model.InstanceMeta;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 实例列表的磁盘缓存：保存后可以原样读回，文件缺失或损坏时返回null。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 08:50
+ */
+class DiskCacheTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void savedInstancesAreLoadedBack() {
+        InstanceMeta instance = InstanceMeta.http("10.0.0.1", 8080, "user").addParams(Map.of("zone", "sh"));
+        new DiskCache(dir).save("cn.ipman/UserService", 7, List.of(instance));
+
+        // 新的缓存实例相当于进程重启后读取
+        InstanceCache.Entry entry = new DiskCache(dir).load("cn.ipman/UserService");
+        assertNotNull(entry);
+        assertEquals(7, entry.version());
+        assertEquals(List.of(instance), entry.instances());
+        assertEquals("sh", entry.instances().get(0).getParameters().get("zone"));
+    }
+
+    @Test
+    void missingOrCorruptFileLoadsNothing() throws Exception {
+        DiskCache cache = new DiskCache(dir.resolve("absent"));
+        assertNull(cache.load("cn.ipman.UserService"));
+
+        DiskCache corrupt = new DiskCache(dir);
+        Files.writeString(dir.resolve("cn.ipman.UserService.json"), "{\"version\":1,\"instances\":[");
+        assertNull(corrupt.load("cn.ipman.UserService"));
+    }
+
+    @Test
+    void instanceCacheRestoresFromDisk() {
+        InstanceMeta instance = InstanceMeta.http("10.0.0.2", 8080, "order");
+        new InstanceCache(new DiskCache(dir)).update("cn.ipman.OrderService", 3, List.of(instance));
+
+        InstanceCache restarted = new InstanceCache(new DiskCache(dir));
+        assertNull(restarted.get("cn.ipman.OrderService"));
+        restarted.restore("cn.ipman.OrderService");
+        assertEquals(new InstanceCache.Entry(3, List.of(instance)), restarted.get("cn.ipman.OrderService"));
+    }
+}
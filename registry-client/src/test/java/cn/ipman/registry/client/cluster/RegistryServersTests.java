@@ -0,0 +1,137 @@
+package cn.ipman.registry.client.cluster;
+
+import cn.ipman.registry.client.model.Server;
+import com.alibaba.fastjson.JSON;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 节点列表与故障切换：写请求优先发往Leader，读请求固定发往上次成功的节点，
+ * 节点返回 2xx 与 304 以外的响应或不可用时切换到下一个节点。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 08:45
+ */
+class RegistryServersTests {
+
+    final MockWebServer follower = new MockWebServer();
+    final MockWebServer leader = new MockWebServer();
+
+    RegistryServers servers;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        follower.start();
+        leader.start();
+        // 种子节点中Follower排在前面
+        servers = new RegistryServers(List.of(url(follower), url(leader)), 1_000);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        servers.close();
+        follower.shutdown();
+        leader.shutdown();
+    }
+
+    @Test
+    void writeGoesToLeaderFirst() throws Exception {
+        refresh();
+        leader.enqueue(new MockResponse().setBody("[]"));
+
+        RegistryServers.Response response = servers.write("/batch", "[]");
+
+        assertEquals(url(leader), response.server());
+        assertEquals("/batch", take(leader).getPath());
+        assertEquals(1, follower.getRequestCount()); // 只有 /cluster
+    }
+
+    @Test
+    void writeFailsOverWhenLeaderFails() throws Exception {
+        refresh();
+        leader.enqueue(new MockResponse().setResponseCode(503));
+        follower.enqueue(new MockResponse().setBody("[]"));
+
+        RegistryServers.Response response = servers.write("/batch", "[{}]");
+
+        assertEquals(url(follower), response.server());
+        assertEquals("/batch", take(leader).getPath());
+        RecordedRequest forwarded = take(follower);
+        assertEquals("/batch", forwarded.getPath());
+        assertEquals("[{}]", forwarded.getBody().readUtf8());
+        assertTrue(servers.isStale());
+    }
+
+    @Test
+    void clientErrorIsNodeFailure() throws Exception {
+        follower.enqueue(new MockResponse().setResponseCode(404).setBody("<html>not found</html>"));
+        leader.enqueue(new MockResponse().setBody("[]"));
+        leader.enqueue(new MockResponse().setBody("{}"));
+
+        RegistryServers.Response response = servers.read("/findall?service=a", null);
+        assertEquals(url(leader), response.server());
+        assertEquals("[]", response.body());
+
+        // 成功的节点成为读请求的固定节点
+        assertEquals(url(leader), servers.read("/versions?services=a", null).server());
+        assertEquals(1, follower.getRequestCount());
+    }
+
+    @Test
+    void notModifiedIsSuccess() throws Exception {
+        follower.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"3\""));
+
+        RegistryServers.Response response = servers.read("/findall?service=a", "\"3\"");
+
+        assertTrue(response.notModified());
+        assertEquals("\"3\"", response.etag());
+        assertEquals("\"3\"", take(follower).getHeader("If-None-Match"));
+        assertEquals(0, leader.getRequestCount());
+    }
+
+    @Test
+    void failsWhenEveryNodeFails() {
+        follower.enqueue(new MockResponse().setResponseCode(500));
+        leader.enqueue(new MockResponse().setResponseCode(400));
+
+        IOException ex = assertThrows(IOException.class, () -> servers.read("/findall?service=a", null));
+        assertTrue(ex.getMessage().contains("400"), ex.getMessage());
+    }
+
+    /**
+     * 从种子节点获取节点列表，其中 leader 为Leader。
+     */
+    private void refresh() throws Exception {
+        follower.enqueue(new MockResponse().setBody(JSON.toJSONString(List.of(
+                new Server(url(follower), false, true, 1),
+                new Server(url(leader), true, true, 1)))));
+        servers.refresh();
+        assertEquals("/cluster", take(follower).getPath());
+        assertFalse(servers.isStale());
+    }
+
+    static RecordedRequest take(MockWebServer server) throws InterruptedException {
+        RecordedRequest request = server.takeRequest(1, TimeUnit.SECONDS);
+        assertNotNull(request);
+        return request;
+    }
+
+    static String url(MockWebServer server) {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+}
@@ -0,0 +1,138 @@
+package cn.ipman.registry.core.api;
+
+import cn.ipman.registry.core.cache.ResponseCache;
+import cn.ipman.registry.core.cluster.Snapshot;
+import cn.ipman.registry.core.cluster.SnapshotCodec;
+import cn.ipman.registry.core.config.RegistryConfigProperties;
+import cn.ipman.registry.core.metrics.RegistryMetrics;
+import cn.ipman.registry.core.model.InstanceMeta;
+import cn.ipman.registry.core.service.RegistryManService;
+import cn.ipman.registry.core.service.ServiceInstances;
+import cn.ipman.registry.core.watch.ServiceWatcher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 非阻塞前端的流式响应与变更订阅 Controller，spring.main.web-application-type=reactive 时启用。
+ * 其余接口直接复用 {@link IMRegistryController}，处理方法在 Netty 事件循环线程上执行，不等待网络 IO，但并非完全不阻塞:
+ * 注册、续约与批量操作要获取注册表的全局读锁，会等待快照(/snapshot)与快照恢复收尾时短暂持有的写锁；
+ * Leader 上的写操作还会在 ReplicationLog.append 的同步块内追加变更，开启持久化时包括写入WAL。
+ * 这些等待都是有界的短暂停顿，不值得为每个写请求切换线程，因此没有移到 boundedElastic 上执行。
+ * 这里是 Servlet 前端中依赖 StreamingResponseBody 与 SseEmitter 的接口的响应式实现，
+ * 对应 {@link IMStreamController} 与 {@link IMWatchController}。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 23:55
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Slf4j
+public class IMReactiveController {
+
+    @Autowired
+    private RegistryConfigProperties registryConfigProperties; // 注册中心配置
+
+    @Autowired
+    private ServiceWatcher serviceWatcher; // 服务变更推送器
+
+    /**
+     * 以 NDJSON 流式返回服务实例，请求头 Accept 为 application/x-ndjson 时使用，每行一个实例。
+     * 参数条件、子集划分与 ETag 同 {@link IMRegistryController#findAll}，流式返回不分页。
+     *
+     * @param service 待查询服务名称。
+     * @param client 客户端标识，用于实例子集划分。
+     * @param subset 子集大小，不大于0时返回全部实例。
+     * @param parameters 全部查询参数，其中除 service、client、subset、limit、cursor 外的参数为实例参数条件。
+     * @param ifNoneMatch 客户端缓存的 ETag。
+     * @return 该服务的所有(或匹配条件的)实例，每行一个。
+     */
+    @RequestMapping(value = "/findall", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<InstanceMeta>> findAllStream(@RequestParam String service,
+                                                            @RequestParam(required = false) String client,
+                                                            @RequestParam(defaultValue = "0") int subset,
+                                                            @RequestParam Map<String, String> parameters,
+                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        log.info(" ====> findAllInstances stream {} {}", service, parameters);
+        // 只记录查找与过滤的耗时，不含逐行写出响应的时间
+        long start = System.nanoTime();
+        try {
+            ServiceInstances instances = RegistryManService.instances(service);
+            if (instances == null) {
+                return ResponseEntity.ok().build();
+            }
+            String etag = ResponseCache.etag(instances.getVersion());
+            if (etag.equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            List<InstanceMeta> matched = IMRegistryController.resolve(instances,
+                    IMRegistryController.predicates(parameters), client, client == null ? 0 : subset);
+            return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_NDJSON).body(Flux.fromIterable(matched));
+        } finally {
+            RegistryMetrics.FINDALL.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 获取二进制编码的集群快照，供 Follower 同步使用。编码写入的 OutputStream 会在写满缓冲、
+     * 等待客户端读取时阻塞，因此放在 boundedElastic 线程上执行，不占用事件循环线程。
+     *
+     * @return 集群快照的二进制编码。
+     */
+    @RequestMapping(value = "/snapshot", produces = SnapshotCodec.MEDIA_TYPE)
+    public ResponseEntity<Flux<DataBuffer>> binarySnapshot() {
+        log.info(" ===> snapshot");
+        boolean compress = registryConfigProperties.isSnapshotCompress();
+        Flux<DataBuffer> body = Flux.from(DataBufferUtils.outputStreamPublisher(out -> {
+            try {
+                RegistryManService.writeSnapshot(out, compress);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, DefaultDataBufferFactory.sharedInstance, task -> Schedulers.boundedElastic().schedule(task)));
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(SnapshotCodec.MEDIA_TYPE)).body(body);
+    }
+
+    /**
+     * 获取JSON格式的集群快照，便于人工查看。
+     *
+     * @return 集群快照信息。
+     */
+    @RequestMapping("/snapshot")
+    public ResponseEntity<Snapshot> snapshot() {
+        log.info(" ===> snapshot");
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(RegistryManService.snapshot());
+    }
+
+    /**
+     * 订阅服务变更，事件格式同 {@link IMWatchController#watch}。
+     *
+     * @param services 服务名称集合，逗号分隔。
+     * @return 服务版本变更事件流。
+     */
+    @RequestMapping(value = "/watch", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, Long>>> watch(@RequestParam String services) {
+        log.info(" ====> watch {}", services);
+        return serviceWatcher.stream(services.split(","));
+    }
+}
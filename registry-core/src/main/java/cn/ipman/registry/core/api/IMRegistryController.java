@@ -1,20 +1,45 @@
 package cn.ipman.registry.core.api;
 
+import cn.ipman.registry.core.cache.PageSnapshots;
+import cn.ipman.registry.core.cache.ResponseCache;
+import cn.ipman.registry.core.cluster.ChangeSet;
 import cn.ipman.registry.core.cluster.Cluster;
+import cn.ipman.registry.core.cluster.ElectionMetrics;
+import cn.ipman.registry.core.cluster.LeaderForwarder;
 import cn.ipman.registry.core.cluster.Server;
-import cn.ipman.registry.core.cluster.Snapshot;
+import cn.ipman.registry.core.health.HealthChecker;
+import cn.ipman.registry.core.health.SelfPreservation;
+import cn.ipman.registry.core.metrics.RegistryMetrics;
+import cn.ipman.registry.core.model.BatchItem;
+import cn.ipman.registry.core.model.BatchResult;
 import cn.ipman.registry.core.model.InstanceMeta;
+import cn.ipman.registry.core.model.InstancePage;
 import cn.ipman.registry.core.service.RegistryManService;
 import cn.ipman.registry.core.service.RegistryService;
+import cn.ipman.registry.core.service.ServiceInstances;
+import cn.ipman.registry.core.service.Subsetting;
+import cn.ipman.registry.core.service.VersionCoalescer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Registry Controller.
@@ -32,44 +57,243 @@ public class IMRegistryController {
     @Autowired
     private Cluster cluster;   // 注册中心集群管理
 
+    @Autowired
+    private ResponseCache responseCache; // 实例列表响应缓存
+
+    @Autowired
+    private ObjectMapper objectMapper; // JSON快照序列化
+
+    @Autowired
+    private LeaderForwarder leaderForwarder; // Follower 写请求转发
+
+    @Autowired
+    private PageSnapshots pageSnapshots; // 分页查询的快照保留
+
+    @Autowired
+    private HealthChecker healthChecker; // 实例健康检查
+
+    @Autowired
+    private VersionCoalescer versionCoalescer; // Leader 写操作合并
+
+    // 单次增量同步最多返回的变更条数
+    static final int CHANGES_LIMIT = 1000;
+    // 分页查询每页最多返回的实例数
+    static final int PAGE_LIMIT = 10_000;
+    // /findall 自身使用的查询参数，不作为实例参数条件
+    static final Set<String> FINDALL_RESERVED = Set.of("service", "client", "subset", "limit", "cursor");
+
     /**
-     * 服务注册。
+     * 服务注册。Follower 收到时转发给 Leader 执行。
+     * 实例可以声明租约超时时间，在服务端配置的上下限(registry.lease.min-timeout/max-timeout)内生效，
+     * 之后按该时间续约即可，变化频繁的实例可以声明较短的超时，稳定的实例可以声明较长的超时并降低心跳频率。
+     * 开启合并窗口(registry.coalesce-window)时，在窗口结束、变更发布后返回。
      *
      * @param service 待注册服务名称。
+     * @param ttl 租约超时时间(毫秒)，不大于0时使用服务端默认值。
      * @param instanceMeta 服务实例元数据。
      * @return 注册后的服务实例元数据。
      */
     @RequestMapping("/reg")
-    public InstanceMeta registry(@RequestParam String service, @RequestBody InstanceMeta instanceMeta) {
-        log.info("register {} @ {}", service, instanceMeta);
-        checkLeader();
-        return registryService.register(service, instanceMeta);
+    public CompletableFuture<InstanceMeta> registry(@RequestParam String service,
+                                                    @RequestParam(defaultValue = "0") long ttl,
+                                                    @RequestBody InstanceMeta instanceMeta) {
+        log.info("register {} @ {}, ttl {}", service, instanceMeta, ttl);
+        if (cluster.isLeader()) {
+            return versionCoalescer.register(service, instanceMeta, ttl);
+        }
+        return leaderForwarder.forward(new BatchItem(BatchItem.Op.REGISTER, service, instanceMeta, ttl))
+                .thenApply(result -> {
+                    // 与本地注册一致: 新注册或已注册时返回在线的实例，Leader 拒绝时请求失败
+                    if (result.getResult() != BatchResult.Result.REGISTERED
+                            && result.getResult() != BatchResult.Result.EXISTED) {
+                        throw new IllegalStateException("leader rejected register of " + service
+                                + " @ " + instanceMeta + ": " + result.getResult());
+                    }
+                    instanceMeta.setStatus(true);
+                    return instanceMeta;
+                });
     }
 
     /**
-     * 服务注销。
+     * 服务注销。Follower 收到时转发给 Leader 执行。
+     * 开启合并窗口时，在窗口结束、变更发布后返回。
      *
      * @param service 待注销服务名称。
      * @param instanceMeta 待注销服务实例元数据。
-     * @return 注销后的服务实例元数据。
+     * @return 注销后的服务实例元数据，实例不存在时返回null。
      */
     @RequestMapping("/unreg")
-    public InstanceMeta unRegistry(@RequestParam String service, @RequestBody InstanceMeta instanceMeta) {
+    public CompletableFuture<InstanceMeta> unRegistry(@RequestParam String service, @RequestBody InstanceMeta instanceMeta) {
         log.info("unregister {} @ {}", service, instanceMeta);
-        checkLeader();
-        return registryService.unregister(service, instanceMeta);
+        if (cluster.isLeader()) {
+            return versionCoalescer.unregister(service, instanceMeta);
+        }
+        return leaderForwarder.forward(new BatchItem(BatchItem.Op.UNREGISTER, service, instanceMeta))
+                .thenApply(result -> {
+                    if (result.getResult() != BatchResult.Result.UNREGISTERED) {
+                        return null;
+                    }
+                    instanceMeta.setStatus(false);
+                    return instanceMeta;
+                });
+    }
+
+    /**
+     * 批量注册、注销或续约服务实例。每个受影响的服务只产生一个新版本，
+     * 开启合并窗口时与窗口内该服务的其它写操作一起发布。
+     * Follower 收到时转发给 Leader 执行；已经是转发过来的请求不再转发。
+     *
+     * @param items 批量操作列表。
+     * @param forwarded 是否为其它节点转发过来的请求。
+     * @return 与操作一一对应的结果列表。
+     */
+    @RequestMapping("/batch")
+    public CompletableFuture<List<BatchResult>> batch(@RequestBody List<BatchItem> items,
+                                                      @RequestParam(defaultValue = "false") boolean forwarded) {
+        log.info(" ====> batch {} items", items.size());
+        if (forwarded || cluster.isLeader()) {
+            checkLeader();
+            return versionCoalescer.batch(items);
+        }
+        return leaderForwarder.forward(items);
     }
 
     /**
-     * 查询所有服务实例。
+     * 查询所有服务实例。响应体按服务版本缓存，并以版本号作为 ETag，
+     * 请求携带的 If-None-Match 与当前版本一致时返回 304，不返回响应体。
+     * 除 service、client、subset、limit、cursor 外的查询参数作为实例参数条件，如 zone=sh&amp;gray=true，
+     * 只返回参数全部匹配的实例；过滤结果由参数倒排索引得出，不进入响应缓存，ETag 同样取服务版本号。
+     * 同时指定 client 与 subset 时只返回分配给该客户端的实例子集，见 {@link Subsetting}。
+     * 实例很多的服务可以指定 limit 分页返回 {@link InstancePage}，用上一页返回的 next 作为 cursor 读取下一页，
+     * 同一次分页的所有页都取自第一页的服务版本；也可以使用 NDJSON 流式读取，见 {@link IMStreamController#findAllStream}。
      *
      * @param service 待查询服务名称。
-     * @return 该服务的所有实例列表。
+     * @param client 客户端标识，用于实例子集划分。
+     * @param subset 子集大小，不大于0时返回全部实例。
+     * @param limit 每页的实例数，不大于0时不分页。
+     * @param cursor 分页游标，为空时读取第一页。
+     * @param parameters 全部查询参数，其中除上述参数外的为实例参数条件。
+     * @param ifNoneMatch 客户端缓存的 ETag。
+     * @return 该服务的所有(或匹配条件的)实例列表。
      */
     @RequestMapping("/findall")
-    public List<InstanceMeta> findAll(@RequestParam String service) {
-        log.info(" ====> findAllInstances {}", service);
-        return registryService.getAllInstances(service);
+    public ResponseEntity<?> findAll(@RequestParam String service,
+                                     @RequestParam(required = false) String client,
+                                     @RequestParam(defaultValue = "0") int subset,
+                                     @RequestParam(defaultValue = "0") int limit,
+                                     @RequestParam(required = false) String cursor,
+                                     @RequestParam Map<String, String> parameters,
+                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+            throws JsonProcessingException {
+        log.info(" ====> findAllInstances {} {}", service, parameters);
+        long start = System.nanoTime();
+        try {
+            if (client == null) {
+                subset = 0;
+            }
+            Map<String, String> predicates = predicates(parameters);
+            if (limit > 0) {
+                return findPage(service, predicates, client, subset, limit, cursor);
+            }
+            if (!predicates.isEmpty()) {
+                return findMatched(service, predicates, client, subset, ifNoneMatch);
+            }
+            return findCached(service, client, subset, ifNoneMatch);
+        } finally {
+            RegistryMetrics.FINDALL.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 查询服务的全部实例或实例子集，响应体取自响应缓存。
+     */
+    private ResponseEntity<byte[]> findCached(String service, String client, int subset, String ifNoneMatch) {
+        // 先按服务当前版本比较 ETag，未变化时不必读取缓存，缓存未命中时也不必序列化
+        ServiceInstances instances = RegistryManService.instances(service);
+        if (instances != null && ResponseCache.etag(instances.getVersion()).equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(ifNoneMatch).build();
+        }
+        ResponseCache.Entry entry = subset > 0
+                ? responseCache.subset(service, client, subset)
+                : responseCache.instances(service);
+        if (entry == null) {
+            return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.ok().eTag(ResponseCache.etag(entry.version()))
+                .contentType(MediaType.APPLICATION_JSON).body(entry.body());
+    }
+
+    /**
+     * 按参数条件查询服务实例，版本与匹配结果取自同一个服务快照；指定了子集大小时在匹配结果上划分子集。
+     */
+    private ResponseEntity<byte[]> findMatched(String service, Map<String, String> predicates,
+                                               String client, int subset, String ifNoneMatch)
+            throws JsonProcessingException {
+        ServiceInstances instances = RegistryManService.instances(service);
+        if (instances == null) {
+            return ResponseEntity.ok().build();
+        }
+        String etag = ResponseCache.etag(instances.getVersion());
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        byte[] body = objectMapper.writeValueAsBytes(resolve(instances, predicates, client, subset));
+        return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * 分页查询服务实例。第一页基于服务的当前快照，游标记录快照版本与下一页的起始位置，
+     * 后续页从同一版本的快照读取；该版本已不再保留时返回 410，客户端需从第一页重新开始。
+     */
+    private ResponseEntity<InstancePage> findPage(String service, Map<String, String> predicates,
+                                                  String client, int subset, int limit, String cursor) {
+        ServiceInstances instances;
+        int offset = 0;
+        if (cursor == null || cursor.isEmpty()) {
+            instances = RegistryManService.instances(service);
+            if (instances == null) {
+                return ResponseEntity.ok().build();
+            }
+        } else {
+            long version;
+            try {
+                int separator = cursor.indexOf(':');
+                version = Long.parseLong(cursor.substring(0, separator));
+                offset = Integer.parseInt(cursor.substring(separator + 1));
+            } catch (RuntimeException ex) {
+                return ResponseEntity.badRequest().build();
+            }
+            instances = pageSnapshots.get(service, version);
+            if (instances == null || offset < 0) {
+                return ResponseEntity.status(HttpStatus.GONE).build();
+            }
+        }
+        pageSnapshots.pin(service, instances);
+        List<InstanceMeta> matched = resolve(instances, predicates, client, subset);
+        int from = Math.min(offset, matched.size());
+        int to = Math.min(matched.size(), from + Math.min(limit, PAGE_LIMIT));
+        String next = to < matched.size() ? instances.getVersion() + ":" + to : null;
+        return ResponseEntity.ok()
+                .eTag(ResponseCache.etag(instances.getVersion()))
+                .body(new InstancePage(instances.getVersion(), matched.subList(from, to), next));
+    }
+
+    /**
+     * 从 /findall 的全部查询参数中取出实例参数条件。
+     */
+    static Map<String, String> predicates(Map<String, String> parameters) {
+        Map<String, String> predicates = new HashMap<>(parameters);
+        predicates.keySet().removeAll(FINDALL_RESERVED);
+        return predicates;
+    }
+
+    /**
+     * 在服务快照上依次应用参数条件与子集划分。
+     */
+    static List<InstanceMeta> resolve(ServiceInstances instances, Map<String, String> predicates,
+                                              String client, int subset) {
+        List<InstanceMeta> matched = instances.select(predicates);
+        return subset > 0 ? Subsetting.subset(matched, client, subset) : matched;
     }
 
     /**
@@ -80,10 +304,13 @@ public class IMRegistryController {
      * @return 续期结果，通常为续期时间。
      */
     @RequestMapping("/renew")
-    public long renew(@RequestParam String service, @RequestBody InstanceMeta instance) {
-        log.info(" ===> renew {} @ {}", service, instance);
-        checkLeader();
-        return registryService.reNew(instance, service);
+    public CompletableFuture<Long> renew(@RequestParam String service, @RequestBody InstanceMeta instance) {
+        log.debug(" ===> renew {} @ {}", service, instance);
+        if (cluster.isLeader()) {
+            return CompletableFuture.completedFuture(registryService.reNew(instance, service));
+        }
+        return leaderForwarder.forward(new BatchItem(BatchItem.Op.RENEW, service, instance))
+                .thenApply(BatchResult::getTimestamp);
     }
 
     /**
@@ -94,10 +321,16 @@ public class IMRegistryController {
      * @return 续期结果，通常为续期时间。
      */
     @RequestMapping("/renews")
-    public long renews(@RequestParam String services, @RequestBody InstanceMeta instanceMeta) {
-        log.info(" ====> renews {}", services);
-        checkLeader();
-        return registryService.reNew(instanceMeta, services.split(","));
+    public CompletableFuture<Long> renews(@RequestParam String services, @RequestBody InstanceMeta instanceMeta) {
+        log.debug(" ====> renews {}", services);
+        if (cluster.isLeader()) {
+            return CompletableFuture.completedFuture(registryService.reNew(instanceMeta, services.split(",")));
+        }
+        List<BatchItem> items = Arrays.stream(services.split(","))
+                .map(service -> new BatchItem(BatchItem.Op.RENEW, service, instanceMeta))
+                .toList();
+        return leaderForwarder.forward(items)
+                .thenApply(results -> results.stream().mapToLong(BatchResult::getTimestamp).max().orElse(0));
     }
 
     /**
@@ -113,26 +346,38 @@ public class IMRegistryController {
     }
 
     /**
-     * 查询多个服务的版本。
+     * 查询多个服务的版本。ETag 由各服务的版本号计算，版本均未变化时返回 304。
      *
      * @param services 服务名称集合。
+     * @param ifNoneMatch 客户端缓存的 ETag。
      * @return 各服务的版本号映射。
      */
     @RequestMapping("/versions")
-    public Map<String, Long> versions(@RequestParam String services) {
+    public ResponseEntity<Map<String, Long>> versions(@RequestParam String services,
+                                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.info(" ====> versions {}", services);
-        return registryService.versions(services.split(","));
+        Map<String, Long> versions = registryService.versions(services.split(","));
+        long hash = 1125899906842597L;
+        for (Long version : versions.values()) {
+            hash = 31 * hash + (version == null ? -1 : version);
+        }
+        String etag = "\"" + Long.toHexString(hash) + "\"";
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(versions);
     }
 
     /**
-     * 获取集群快照。
+     * 获取指定版本之后的增量变更。用于Follower增量同步，落后太多时返回的变更集合标记为不完整。
      *
-     * @return 集群快照信息。
+     * @param since 起始版本号(不包含)。
+     * @return 增量变更集合。
      */
-    @RequestMapping("/snapshot")
-    public Snapshot snapshot() {
-        log.info(" ===> snapshot");
-        return RegistryManService.snapshot();
+    @RequestMapping("/changes")
+    public ChangeSet changes(@RequestParam long since) {
+        log.info(" ===> changes since {}", since);
+        return RegistryManService.changes(since, CHANGES_LIMIT);
     }
 
     /**
@@ -172,8 +417,33 @@ public class IMRegistryController {
      */
     @RequestMapping("/sm")
     public Server setMaster() {
-        cluster.myself().setLeader(!cluster.isLeader());
-        return cluster.myself();
+        Server myself = cluster.myself();
+        if (!myself.isLeader()) {
+            // 手动切为主节点时进入新的任期，其它Leader会因任期较低而退位
+            myself.setTerm(myself.getTerm() + 1);
+        }
+        myself.setLeader(!myself.isLeader());
+        return myself;
+    }
+
+    /**
+     * 获取选举与故障切换指标。
+     *
+     * @return 选举指标。
+     */
+    @RequestMapping("/election")
+    public ElectionMetrics election() {
+        return cluster.getElectionMetrics();
+    }
+
+    /**
+     * 获取健康检查的自我保护状态。只有Leader剔除实例，Follower上始终为未进入保护。
+     *
+     * @return 自我保护状态。
+     */
+    @RequestMapping("/preservation")
+    public SelfPreservation preservation() {
+        return healthChecker.selfPreservation();
     }
 
     @RequestMapping("/")
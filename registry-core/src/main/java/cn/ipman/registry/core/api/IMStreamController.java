@@ -0,0 +1,113 @@
+package cn.ipman.registry.core.api;
+
+import cn.ipman.registry.core.cache.ResponseCache;
+import cn.ipman.registry.core.cluster.Snapshot;
+import cn.ipman.registry.core.cluster.SnapshotCodec;
+import cn.ipman.registry.core.config.RegistryConfigProperties;
+import cn.ipman.registry.core.metrics.RegistryMetrics;
+import cn.ipman.registry.core.model.InstanceMeta;
+import cn.ipman.registry.core.service.RegistryManService;
+import cn.ipman.registry.core.service.ServiceInstances;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式响应 Controller，Servlet 前端使用，响应体边序列化边写出。
+ * 非阻塞前端下的对应实现见 {@link IMReactiveController}。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 23:50
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Slf4j
+public class IMStreamController {
+
+    @Autowired
+    private RegistryConfigProperties registryConfigProperties; // 注册中心配置
+
+    @Autowired
+    private ObjectMapper objectMapper; // JSON快照序列化
+
+    /**
+     * 以 NDJSON 流式返回服务实例，请求头 Accept 为 application/x-ndjson 时使用。每行一个实例，
+     * 逐个序列化写出，不拼出完整的响应体，两端都可以逐个处理实例，不需要把整个列表放在内存中。
+     * 参数条件、子集划分与 ETag 同 {@link IMRegistryController#findAll}，流式返回不分页。
+     *
+     * @param service 待查询服务名称。
+     * @param client 客户端标识，用于实例子集划分。
+     * @param subset 子集大小，不大于0时返回全部实例。
+     * @param parameters 全部查询参数，其中除 service、client、subset、limit、cursor 外的参数为实例参数条件。
+     * @param ifNoneMatch 客户端缓存的 ETag。
+     * @return 该服务的所有(或匹配条件的)实例，每行一个。
+     */
+    @RequestMapping(value = "/findall", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> findAllStream(@RequestParam String service,
+                                                               @RequestParam(required = false) String client,
+                                                               @RequestParam(defaultValue = "0") int subset,
+                                                               @RequestParam Map<String, String> parameters,
+                                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        log.info(" ====> findAllInstances stream {} {}", service, parameters);
+        // 只记录查找与过滤的耗时，不含逐行写出响应的时间
+        long start = System.nanoTime();
+        try {
+            ServiceInstances instances = RegistryManService.instances(service);
+            if (instances == null) {
+                return ResponseEntity.ok().build();
+            }
+            String etag = ResponseCache.etag(instances.getVersion());
+            if (etag.equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            List<InstanceMeta> matched = IMRegistryController.resolve(instances,
+                    IMRegistryController.predicates(parameters), client, client == null ? 0 : subset);
+            ObjectWriter writer = objectMapper.writerFor(InstanceMeta.class);
+            return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_NDJSON).body(out -> {
+                for (InstanceMeta instance : matched) {
+                    out.write(writer.writeValueAsBytes(instance));
+                    out.write('\n');
+                }
+            });
+        } finally {
+            RegistryMetrics.FINDALL.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 获取集群快照。默认返回JSON便于人工查看，请求头 Accept 为二进制快照类型时返回紧凑的二进制编码，
+     * 供 Follower 同步使用。二进制快照边编码边写入响应流，不在内存中拼出完整快照。
+     *
+     * @param accept 请求头 Accept。
+     * @return 集群快照信息。
+     */
+    @RequestMapping("/snapshot")
+    public ResponseEntity<StreamingResponseBody> snapshot(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        log.info(" ===> snapshot");
+        if (accept != null && accept.contains(SnapshotCodec.MEDIA_TYPE)) {
+            boolean compress = registryConfigProperties.isSnapshotCompress();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(SnapshotCodec.MEDIA_TYPE))
+                    .body(out -> RegistryManService.writeSnapshot(out, compress));
+        }
+        Snapshot snapshot = RegistryManService.snapshot();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> objectMapper.writeValue(out, snapshot));
+    }
+}
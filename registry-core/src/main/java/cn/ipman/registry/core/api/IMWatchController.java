@@ -0,0 +1,38 @@
+package cn.ipman.registry.core.api;
+
+import cn.ipman.registry.core.watch.ServiceWatcher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 服务变更订阅 Controller. Servlet 前端使用，非阻塞前端下见 {@link IMReactiveController#watch}。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 11:45
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Slf4j
+public class IMWatchController {
+
+    @Autowired
+    private ServiceWatcher serviceWatcher; // 服务变更推送器
+
+    /**
+     * 订阅服务变更。返回SSE长连接，服务版本变化时推送名为 versions 的事件，数据格式与 /versions 相同。
+     *
+     * @param services 服务名称集合，逗号分隔。
+     * @return SSE连接。
+     */
+    @RequestMapping(value = "/watch", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter watch(@RequestParam String services) {
+        log.info(" ====> watch {}", services);
+        return serviceWatcher.watch(services.split(","));
+    }
+}
@@ -0,0 +1,90 @@
+package cn.ipman.registry.core.cache;
+
+import cn.ipman.registry.core.service.RegistryManService;
+import cn.ipman.registry.core.service.ServiceInstances;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分页查询用到的实例列表快照。服务每次变更都会发布新快照，分页过程中服务发生变更时，
+ * 后续页仍需从第一页所基于的快照中读取，这里按 服务@版本 保留被分页读取过的快照，
+ * 超过保留时长没有再被读取的快照会被丢弃，快照本身不可变，保留的只是引用。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 22:35
+ */
+public class PageSnapshots {
+
+    // 服务@版本 -> 被保留的快照
+    final Map<String, Pinned> pinned = new ConcurrentHashMap<>();
+
+    // 快照在最后一次被读取后保留的时长(毫秒)
+    final long ttl;
+
+    /**
+     * @param ttl 快照在最后一次被读取后保留的时长(毫秒)。
+     */
+    public PageSnapshots(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * 停止时丢弃所有保留的快照。
+     */
+    public void stop() {
+        pinned.clear();
+    }
+
+    /**
+     * 保留快照供后续页读取，已保留时刷新其保留时间。
+     *
+     * @param service 服务名称。
+     * @param instances 实例列表快照。
+     */
+    public void pin(String service, ServiceInstances instances) {
+        long now = System.currentTimeMillis();
+        pinned.compute(key(service, instances.getVersion()), (key, current) -> {
+            if (current == null) {
+                return new Pinned(instances, now);
+            }
+            current.accessed = now;
+            return current;
+        });
+        // 保留的快照数量很少，顺带清理过期的即可
+        pinned.values().removeIf(p -> now - p.accessed > ttl);
+    }
+
+    /**
+     * 获取指定版本的快照，优先使用服务的当前快照。
+     *
+     * @param service 服务名称。
+     * @param version 服务版本号。
+     * @return 对应版本的快照，已不再保留时返回null。
+     */
+    public ServiceInstances get(String service, long version) {
+        ServiceInstances current = RegistryManService.instances(service);
+        if (current != null && current.getVersion() == version) {
+            return current;
+        }
+        Pinned p = pinned.get(key(service, version));
+        return p == null ? null : p.instances;
+    }
+
+    private static String key(String service, long version) {
+        return service + "@" + version;
+    }
+
+    /**
+     * 被保留的快照与最后一次读取的时间。
+     */
+    static final class Pinned {
+        final ServiceInstances instances;
+        volatile long accessed;
+
+        Pinned(ServiceInstances instances, long accessed) {
+            this.instances = instances;
+            this.accessed = accessed;
+        }
+    }
+}
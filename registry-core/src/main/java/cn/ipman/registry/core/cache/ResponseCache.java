@@ -0,0 +1,169 @@
+package cn.ipman.registry.core.cache;
+
+import cn.ipman.registry.core.metrics.RegistryMetrics;
+import cn.ipman.registry.core.model.InstanceMeta;
+import cn.ipman.registry.core.service.RegistryManService;
+import cn.ipman.registry.core.service.ServiceInstances;
+import cn.ipman.registry.core.service.Subsetting;
+import cn.ipman.registry.core.service.VersionListener;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实例列表响应缓存。按服务缓存序列化后的 /findall 响应体，以服务版本号作为缓存键，
+ * 版本不变时直接返回缓存的字节，不再重复序列化；服务注册或注销后缓存失效。
+ * 按客户端划分的实例子集同样按服务版本缓存，键为子集大小、轮次与子集序号。
+ * 以哈希作为客户端编号时几乎每个客户端各占一个轮次，每个服务版本最多缓存 {@link #MAX_SUBSETS} 个子集，
+ * 超出后的子集每次请求时重新序列化，不进入缓存。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 16:40
+ */
+@Slf4j
+public class ResponseCache implements VersionListener {
+
+    // 每个服务版本最多缓存的实例子集数
+    static final int MAX_SUBSETS = 1024;
+
+    // 服务 -> 序列化后的实例列表
+    final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // 服务 -> 当前版本的实例子集
+    final Map<String, Subsets> subsets = new ConcurrentHashMap<>();
+
+    // 与Spring MVC使用同一个ObjectMapper，保证输出格式与直接返回对象一致
+    final ObjectMapper objectMapper;
+
+    /**
+     * @param objectMapper 用于序列化实例列表。
+     */
+    public ResponseCache(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 启动缓存，监听服务版本变更。
+     */
+    public void start() {
+        RegistryManService.addListener(this);
+    }
+
+    /**
+     * 停止缓存，清空所有缓存项。
+     */
+    public void stop() {
+        RegistryManService.removeListener(this);
+        entries.clear();
+        subsets.clear();
+    }
+
+    /**
+     * 获取服务当前版本的实例列表响应。
+     *
+     * @param service 服务名称。
+     * @return 缓存项，服务不存在时返回null。
+     */
+    public Entry instances(String service) {
+        ServiceInstances instances = RegistryManService.instances(service);
+        if (instances == null) {
+            entries.remove(service);
+            return null;
+        }
+        Entry entry = entries.get(service);
+        if (entry != null && entry.version == instances.getVersion()) {
+            RegistryMetrics.FINDALL_CACHE_HIT.increment();
+            return entry;
+        }
+        RegistryMetrics.FINDALL_CACHE_MISS.increment();
+        entry = new Entry(instances.getVersion(), serialize(instances));
+        entries.put(service, entry);
+        return entry;
+    }
+
+    /**
+     * 获取服务当前版本中分配给指定客户端的实例子集响应。
+     *
+     * @param service 服务名称。
+     * @param client 客户端标识。
+     * @param size 子集大小。
+     * @return 缓存项，服务不存在时返回null。
+     * @see Subsetting
+     */
+    public Entry subset(String service, String client, int size) {
+        ServiceInstances instances = RegistryManService.instances(service);
+        if (instances == null) {
+            subsets.remove(service);
+            return null;
+        }
+        Subsets current = subsets.get(service);
+        if (current == null || current.version != instances.getVersion()) {
+            current = new Subsets(instances.getVersion(), new ConcurrentHashMap<>());
+            subsets.put(service, current);
+        }
+        // 同一轮次、同一子集序号的客户端得到的子集相同，共享缓存项
+        String key = Subsetting.key(instances.size(), client, size);
+        Entry entry = current.entries.get(key);
+        if (entry != null) {
+            RegistryMetrics.FINDALL_CACHE_HIT.increment();
+            return entry;
+        }
+        RegistryMetrics.FINDALL_CACHE_MISS.increment();
+        entry = new Entry(instances.getVersion(),
+                serialize(Subsetting.subset(instances.getInstances(), client, size)));
+        if (current.entries.size() < MAX_SUBSETS) {
+            current.entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    @Override
+    public void onVersionChanged(String service, long version) {
+        entries.remove(service);
+        subsets.remove(service);
+    }
+
+    /**
+     * 根据版本号生成 ETag。
+     *
+     * @param version 版本号。
+     * @return 带引号的 ETag。
+     */
+    public static String etag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    private byte[] serialize(ServiceInstances instances) {
+        return serialize(instances.getInstances());
+    }
+
+    private byte[] serialize(List<InstanceMeta> instances) {
+        try {
+            return objectMapper.writeValueAsBytes(instances);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("serialize instances failed", ex);
+        }
+    }
+
+    /**
+     * 缓存项，版本号与该版本序列化后的响应体。
+     *
+     * @param version 服务版本号。
+     * @param body 序列化后的实例列表。
+     */
+    public record Entry(long version, byte[] body) {
+    }
+
+    /**
+     * 一个服务某个版本的所有实例子集。
+     *
+     * @param version 服务版本号。
+     * @param entries 子集键 -> 序列化后的实例子集。
+     */
+    record Subsets(long version, Map<String, Entry> entries) {
+    }
+}
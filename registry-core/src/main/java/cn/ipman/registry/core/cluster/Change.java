@@ -0,0 +1,33 @@
+package cn.ipman.registry.core.cluster;
+
+import cn.ipman.registry.core.model.InstanceMeta;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 注册中心的一次变更记录，Leader 按全局版本号顺序记录，Follower 按顺序回放。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 12:10
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Change {
+
+    private long version;           // 变更后的全局版本号
+    private Op op;                  // 变更类型
+    private String service;         // 服务名称
+    private InstanceMeta instance;  // 变更的服务实例
+    private long timestamp;         // 变更发生的时间戳
+    private long ttl;               // 注册时确定的租约超时时间(毫秒)，注销或旧版本的变更为0
+
+    /**
+     * 变更类型
+     */
+    public enum Op {
+        REGISTER,   // 注册实例
+        UNREGISTER  // 注销实例
+    }
+}
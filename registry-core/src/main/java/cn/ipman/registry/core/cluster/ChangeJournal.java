@@ -0,0 +1,27 @@
+package cn.ipman.registry.core.cluster;
+
+import java.util.List;
+
+/**
+ * 变更日志的持久化扩展点。{@link ReplicationLog} 在追加变更的同一把锁内回调，
+ * 因此收到的变更严格按版本号有序。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 17:50
+ */
+public interface ChangeJournal {
+
+    /**
+     * 追加变更。
+     *
+     * @param changes 已分配版本号的变更，版本号升序。
+     */
+    void append(List<Change> changes);
+
+    /**
+     * 变更日志被重置，通常是恢复了全量快照，之前的变更无法再描述当前状态。
+     *
+     * @param version 快照的版本号。
+     */
+    void reset(long version);
+}
@@ -0,0 +1,23 @@
+package cn.ipman.registry.core.cluster;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Leader 返回给 Follower 的增量变更集合。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 12:14
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeSet {
+
+    private boolean complete;       // 变更是否完整，请求的版本已超出日志保留范围时为false，需要改为同步全量快照
+    private long version;           // 本次返回的最后一条变更的版本号，没有变更时为请求的版本号
+    private List<Change> changes;   // 按版本号升序排列的变更
+}
@@ -104,6 +104,15 @@ public class Cluster {
         serverHealth.checkServerHealth();
     }
 
+    /**
+     * 停止服务器健康检查。
+     */
+    public void stop() {
+        if (serverHealth != null) {
+            serverHealth.stop();
+        }
+    }
+
 
     /**
      * 获取当前服务器实例的信息。
@@ -116,7 +125,7 @@ public class Cluster {
         if (MYSELF == null) {
             // 如果MYSELF尚未初始化，则创建一个新的Server实例
             @SuppressWarnings("all")
-            Server myself = new Server("http://" + ip + ":" + port, false, true, -1);
+            Server myself = new Server("http://" + ip + ":" + port, false, true, -1, 0);
             log.info(" ========>>>>>>  myself:{}", myself);
             MYSELF = myself; // 将新创建的Server实例赋值给静态变量MYSELF
         }
@@ -167,4 +176,13 @@ public class Cluster {
     public boolean isLeader() {
         return myself().isLeader();
     }
+
+    /**
+     * 获取选举与故障切换指标。
+     *
+     * @return 选举指标，集群尚未初始化时返回null。
+     */
+    public ElectionMetrics getElectionMetrics() {
+        return serverHealth == null ? null : serverHealth.getMetrics();
+    }
 }
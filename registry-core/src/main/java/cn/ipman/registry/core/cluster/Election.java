@@ -14,10 +14,12 @@ import java.util.List;
 public class Election {
 
     /**
-     * 选举算法，用于从服务器列表中选出一个服务器作为leader。
+     * 选举算法，用于从服务器列表中选出一个服务器作为leader，并进入新的任期。
      * 如果列表为空或只有一个服务器，那么该服务器即被选为leader。
-     * 如果列表中有多个服务器，则选择状态为激活（isStatus返回true）且哈希值最小的服务器作为leader。
+     * 如果列表中有多个服务器，则在状态为激活（isStatus返回true）的服务器中优先选择数据版本最高的，
+     * 避免刚重启、数据为空的节点当选后其它节点都要从它全量同步甚至丢失数据；版本相同时选择哈希值最小的。
      * 如果没有满足条件的服务器，则将当前服务器 myself 选为leader。
+     * 新任期为所有已知任期的最大值加一，各节点在相同视图下会得到相同的结果。
      *
      * @param myself 当前服务器，用于在没有其他候选服务器时成为leader。
      * @param servers 服务器列表，用于从中选举leader。
@@ -35,22 +37,21 @@ public class Election {
         } else {
             // 遍历服务器列表以选举leader
             for (Server server : servers) {
-                // 选举条件：服务器状态为激活且为第一个满足条件的服务器，或哈希值较小的服务器
-                if (server.isStatus()) {
-                    // 并且没有候选节点时, 则被选中为候选节点
-                    if (candidate == null) {
-                        candidate = server;
-                        continue;
-                    }
-                    if (server.hashCode() < candidate.hashCode()) { // TODO 可以改成比数据版本
-                        candidate = server;
-                    }
+                // 选举条件：服务器状态为激活，数据版本更高者优先，版本相同时哈希值较小者优先
+                if (server.isStatus() && (candidate == null || better(server, candidate))) {
+                    candidate = server;
                 }
             }
         }
         // 若最终没有选出候选节点，则将当前服务器作为候选节点
         if (candidate == null) candidate = myself;
-        log.debug(" ======>>>> ELECT candidate = " + candidate);
+
+        // 进入新的任期
+        long term = Math.max(myself.getTerm(),
+                servers.stream().mapToLong(Server::getTerm).max().orElse(0)) + 1;
+        myself.setTerm(term);
+        candidate.setTerm(term);
+        log.debug(" ======>>>> ELECT candidate = {}, term = {}", candidate, term);
 
         // 将所有服务器标记为非leader状态
         servers.forEach(server -> server.setLeader(false));
@@ -59,4 +60,39 @@ public class Election {
         candidate.setLeader(true);
         log.debug(" ======>>>> servers after ELECT = " + servers);
     }
+
+    /**
+     * 存在多个leader时(例如网络分区恢复后)，保留任期最高的leader，其余leader退位，不再重新选举。
+     * 任期相同时按选举规则比较。
+     *
+     * @param masters 当前所有自认为是leader的服务器。
+     * @return 保留的leader。
+     */
+    public Server resolve(List<Server> masters) {
+        Server winner = null;
+        for (Server master : masters) {
+            if (winner == null
+                    || master.getTerm() > winner.getTerm()
+                    || master.getTerm() == winner.getTerm() && better(master, winner)) {
+                winner = master;
+            }
+        }
+        for (Server master : masters) {
+            if (master != winner) {
+                master.setLeader(false);
+            }
+        }
+        log.debug(" ======>>>> RESOLVE leader = {}", winner);
+        return winner;
+    }
+
+    /**
+     * 比较两个候选节点，数据版本更高者优先，版本相同时哈希值较小者优先。
+     */
+    private boolean better(Server server, Server candidate) {
+        if (server.getVersion() != candidate.getVersion()) {
+            return server.getVersion() > candidate.getVersion();
+        }
+        return server.hashCode() < candidate.hashCode();
+    }
 }
@@ -0,0 +1,20 @@
+package cn.ipman.registry.core.cluster;
+
+import lombok.Data;
+
+/**
+ * Leader选举与故障切换指标，由 {@link ServerHealth} 在健康检查循环中更新。
+ * 故障切换耗时从最后一次看到旧Leader存活开始计算，到选出新Leader为止，即集群不可写的时间。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 18:50
+ */
+@Data
+public class ElectionMetrics {
+    private volatile long term;               // 当前任期
+    private volatile long elections;          // 发起选举的次数
+    private volatile long failovers;          // 完成的故障切换次数
+    private volatile long lastFailoverMillis; // 最近一次故障切换耗时(毫秒)
+    private volatile long maxFailoverMillis;  // 最长一次故障切换耗时(毫秒)
+    private volatile long leaderlessSince;    // 失去Leader的时间，0表示当前有Leader
+}
@@ -0,0 +1,187 @@
+package cn.ipman.registry.core.cluster;
+
+import cn.ipman.registry.core.health.HttpInvoker;
+import cn.ipman.registry.core.health.http.OkHttpInvoker;
+import cn.ipman.registry.core.model.BatchItem;
+import cn.ipman.registry.core.model.BatchResult;
+import cn.ipman.registry.core.service.RegistryService;
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Follower 的写请求转发器。Follower 收到的注册、注销、续约请求不再直接拒绝，而是放入队列，
+ * 由单个发送线程合并成 /batch 请求转发给当前 Leader，客户端可以连接任意节点。
+ * <p>
+ * 发送线程每次取出队列中已有的全部请求(最多 {@link #MAX_BATCH} 条)立即发送，不等待凑批；
+ * 同时最多有 {@link #MAX_IN_FLIGHT} 个批次在途，前一个批次未返回时新到的请求继续排队，
+ * 自然合并成更大的批次。转发请求带有 forwarded 标记，收到转发请求的节点如果也不是 Leader
+ * 则直接拒绝，不会再次转发。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 19:20
+ */
+@Slf4j
+public class LeaderForwarder {
+
+    // 单个批次最多包含的请求数
+    static final int MAX_BATCH = 500;
+
+    // 同时在途的批次数
+    static final int MAX_IN_FLIGHT = 4;
+
+    final RegistryService registryService;
+    final Cluster cluster;
+    final HttpInvoker invoker;
+    final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+
+    volatile boolean running;
+    Thread sender;
+
+    /**
+     * @param registryService 注册服务，本节点在排队期间成为 Leader 时直接在本地执行。
+     * @param cluster 注册中心集群，用于查找当前 Leader。
+     */
+    public LeaderForwarder(RegistryService registryService, Cluster cluster) {
+        this(registryService, cluster, 0);
+    }
+
+    /**
+     * @param registryService 注册服务，本节点在排队期间成为 Leader 时直接在本地执行。
+     * @param cluster 注册中心集群，用于查找当前 Leader。
+     * @param coalesceWindow Leader 合并写操作的窗口(毫秒)，转发请求最多多等待一个窗口才返回。
+     */
+    public LeaderForwarder(RegistryService registryService, Cluster cluster, long coalesceWindow) {
+        this.registryService = registryService;
+        this.cluster = cluster;
+        this.invoker = coalesceWindow > 0 ? new OkHttpInvoker((int) (500 + coalesceWindow)) : HttpInvoker.Default;
+    }
+
+    /**
+     * 启动发送线程。
+     */
+    public void start() {
+        running = true;
+        sender = new Thread(this::send, "registry-forwarder");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * 停止发送线程，队列中尚未发送的请求以失败结束。
+     */
+    public void stop() throws InterruptedException {
+        running = false;
+        if (sender != null) {
+            sender.interrupt();
+            sender.join(1000);
+        }
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        fail(rest, new IllegalStateException("forwarder stopped"));
+    }
+
+    /**
+     * 将一个写操作转发给 Leader。
+     *
+     * @param item 写操作。
+     * @return 操作结果的Future。
+     */
+    public CompletableFuture<BatchResult> forward(BatchItem item) {
+        Pending pending = new Pending(item, new CompletableFuture<>());
+        queue.add(pending);
+        return pending.future;
+    }
+
+    /**
+     * 将一组写操作转发给 Leader，结果与操作一一对应。
+     *
+     * @param items 写操作列表。
+     * @return 操作结果列表的Future。
+     */
+    public CompletableFuture<List<BatchResult>> forward(List<BatchItem> items) {
+        List<CompletableFuture<BatchResult>> futures = items.stream().map(this::forward).toList();
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(v -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    private void send() {
+        while (running) {
+            List<Pending> batch = new ArrayList<>();
+            try {
+                inFlight.acquire();
+                batch.add(queue.take());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            try {
+                dispatch(batch).whenComplete((v, ex) -> inFlight.release());
+            } catch (RuntimeException ex) {
+                inFlight.release();
+                fail(batch, ex);
+            }
+        }
+    }
+
+    private CompletableFuture<Void> dispatch(List<Pending> batch) {
+        List<BatchItem> items = batch.stream().map(Pending::item).toList();
+        if (cluster.isLeader()) {
+            // 排队期间本节点成为了 Leader，直接在本地执行
+            complete(batch, registryService.batch(items));
+            return CompletableFuture.completedFuture(null);
+        }
+        Server leader = cluster.getLeader();
+        if (leader == null) {
+            fail(batch, new IllegalStateException("no leader to forward writes to"));
+            return CompletableFuture.completedFuture(null);
+        }
+        log.debug(" ====> forward {} writes to leader {}", items.size(), leader.getUrl());
+        return invoker.postAsync(JSON.toJSONString(items), leader.getUrl() + "/batch?forwarded=true")
+                .handle((respJson, ex) -> {
+                    if (ex != null) {
+                        fail(batch, ex);
+                        return null;
+                    }
+                    try {
+                        complete(batch, JSON.parseArray(respJson, BatchResult.class));
+                    } catch (RuntimeException e) {
+                        // Leader 拒绝时返回的是错误信息而不是结果列表
+                        fail(batch, new IllegalStateException("leader " + leader.getUrl() + " rejected writes: " + respJson, e));
+                    }
+                    return null;
+                });
+    }
+
+    private static void complete(List<Pending> batch, List<BatchResult> results) {
+        if (results == null || results.size() != batch.size()) {
+            fail(batch, new IllegalStateException("unexpected batch results " + results));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future.complete(results.get(i));
+        }
+    }
+
+    private static void fail(List<Pending> batch, Throwable ex) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        log.warn(" ====> forward {} writes failed: {}", batch.size(), ex.toString());
+        batch.forEach(pending -> pending.future.completeExceptionally(ex));
+    }
+
+    /**
+     * 等待转发的写操作。
+     */
+    private record Pending(BatchItem item, CompletableFuture<BatchResult> future) {
+    }
+}
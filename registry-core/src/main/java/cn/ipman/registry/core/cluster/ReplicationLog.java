@@ -0,0 +1,177 @@
+package cn.ipman.registry.core.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 有界的内存变更日志，按全局版本号顺序保存最近的注册/注销变更。
+ * Follower 只需拉取自身版本之后的变更进行回放，落后超过日志保留范围时才需要同步全量快照。
+ * 版本号由调用方在替换服务快照时无锁分配，日志追加在之后进行；并发追加可能乱序到达，
+ * 先到的较大版本号暂存，等之前的版本号全部追加后再按序写入，保证日志(及持久化)中的版本号严格有序、没有空洞。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 12:20
+ */
+@Slf4j
+public class ReplicationLog {
+
+    private Change[] ring;      // 环形缓冲区
+    private long head;          // 已追加的变更总数，下一条变更写入 ring[head % capacity]
+    private long truncated;     // 已被覆盖(或重置前)的最大版本号，比它更早的变更无法再提供
+    private long appended;      // 已按序追加的最大版本号
+    private final Map<Long, Change[]> reordering = new HashMap<>(); // 先于之前的版本号到达、等待追加的变更
+    private ChangeJournal journal; // 变更持久化，未开启时为null
+
+    /**
+     * @param capacity 最多保留的变更条数。
+     */
+    public ReplicationLog(int capacity) {
+        this.ring = new Change[capacity];
+    }
+
+    /**
+     * 按版本号顺序追加变更，多条变更共享同一个版本号。之前还有已分配、未追加的版本号时先暂存，
+     * 由追加该版本号的调用一并写入。每个分配出去的版本号都必须追加一次，否则之后的变更无法写入。
+     *
+     * @param version 分配给这些变更的版本号，版本号由本方法填充到变更中。
+     * @param changes 待追加的变更，为空表示该版本号没有产生变更(例如替换失败)，只推进顺序。
+     */
+    public synchronized void append(long version, Change... changes) {
+        for (Change change : changes) {
+            change.setVersion(version);
+        }
+        if (version <= appended) {
+            return; // 日志已重置到更新的版本
+        }
+        reordering.put(version, changes);
+        Change[] next;
+        while ((next = reordering.remove(appended + 1)) != null) {
+            appended++;
+            for (Change change : next) {
+                add(change);
+            }
+            if (journal != null && next.length > 0) {
+                journal.append(Arrays.asList(next));
+            }
+        }
+    }
+
+    /**
+     * 追加从 Leader 同步过来的变更，版本号沿用 Leader 分配的版本号。
+     *
+     * @param changes 变更列表，版本号升序。
+     */
+    public synchronized void replicate(List<Change> changes) {
+        changes.forEach(this::add);
+        if (!changes.isEmpty()) {
+            appended = changes.get(changes.size() - 1).getVersion();
+        }
+        if (journal != null) {
+            journal.append(changes);
+        }
+    }
+
+    /**
+     * 获取指定版本之后的变更。
+     *
+     * @param since 起始版本号(不包含)。
+     * @param limit 最多返回的变更条数，同一版本的变更不会被拆开。
+     * @return 增量变更集合。
+     */
+    public synchronized ChangeSet since(long since, int limit) {
+        if (since < truncated) {
+            return new ChangeSet(false, since, List.of());
+        }
+        List<Change> changes = new ArrayList<>();
+        long version = since;
+        long tail = Math.max(0, head - ring.length);
+        for (long i = firstAfter(since, tail); i < head; i++) {
+            Change change = ring[(int) (i % ring.length)];
+            if (changes.size() >= limit && change.getVersion() != version) {
+                break;
+            }
+            changes.add(change);
+            version = change.getVersion();
+        }
+        return new ChangeSet(true, version, changes);
+    }
+
+    /**
+     * 清空日志，通常在恢复全量快照之后调用，之后只能提供该版本之后的变更。
+     *
+     * @param version 快照的版本号。
+     */
+    public synchronized void reset(long version) {
+        ring = new Change[ring.length];
+        head = 0;
+        truncated = version;
+        appended = version;
+        reordering.clear();
+        if (journal != null) {
+            journal.reset(version);
+        }
+    }
+
+    /**
+     * 设置变更持久化，之后追加的变更都会同步写入。
+     *
+     * @param journal 变更持久化，传入null表示关闭。
+     */
+    public synchronized void setJournal(ChangeJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * 调整日志容量，保留最近的变更。
+     *
+     * @param capacity 新的容量。
+     */
+    public synchronized void resize(int capacity) {
+        if (capacity == ring.length) {
+            return;
+        }
+        Change[] resized = new Change[capacity];
+        long tail = Math.max(0, head - ring.length);
+        long from = Math.max(tail, head - capacity);
+        for (long i = from; i < head; i++) {
+            resized[(int) ((i - from) % capacity)] = ring[(int) (i % ring.length)];
+        }
+        if (from > tail) {
+            truncated = Math.max(truncated, ring[(int) ((from - 1) % ring.length)].getVersion());
+        }
+        head = head - from;
+        ring = resized;
+        log.info(" ====> replication log resized to {}", capacity);
+    }
+
+    private void add(Change change) {
+        int index = (int) (head % ring.length);
+        Change evicted = ring[index];
+        if (evicted != null) {
+            truncated = evicted.getVersion();
+        }
+        ring[index] = change;
+        head++;
+    }
+
+    /**
+     * 二分查找第一条版本号大于 since 的变更下标。
+     */
+    private long firstAfter(long since, long tail) {
+        long low = tail, high = head;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (ring[(int) (mid % ring.length)].getVersion() <= since) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
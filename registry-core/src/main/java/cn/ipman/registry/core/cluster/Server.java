@@ -20,4 +20,5 @@ public class Server {
     private boolean leader; // 标记该服务器是否被选举为leader
     private boolean status; // 服务器的状态，通常用于表示服务器是否在线或离线
     private long version;   // 服务器的版本
+    private long term;      // 服务器所知的最新选举任期，单调递增
 }
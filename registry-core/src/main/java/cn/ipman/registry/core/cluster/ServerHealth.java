@@ -1,12 +1,17 @@
 package cn.ipman.registry.core.cluster;
 
 import cn.ipman.registry.core.health.HttpInvoker;
+import cn.ipman.registry.core.metrics.RegistryMetrics;
 import cn.ipman.registry.core.service.RegistryManService;
+import com.alibaba.fastjson.JSON;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -21,19 +26,34 @@ public class ServerHealth {
     // 注册中心集群对象
     Cluster cluster;
 
+    // 选举与故障切换指标
+    @Getter
+    final ElectionMetrics metrics = new ElectionMetrics();
+
+    // 最后一次看到唯一且存活的Leader的时间，0表示还从未有过Leader
+    long leaderSeenAt;
+
+    // 健康检查与同步线程
+    ScheduledExecutorService executor;
+
     /**
      * @param cluster 注册中心集群对象
      */
     public ServerHealth(Cluster cluster) {
         this.cluster = cluster;
+        RegistryMetrics.bindCluster(cluster, metrics);
     }
 
     /**
      * 定期检查注册中心服务器健康状态，并进行Leader选举和同步操作
      */
     public void checkServerHealth() {
-        // 定期执行健康检查和领导选举任务
-        final ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+        // 定期执行健康检查和领导选举任务, 使用独立的命名线程, 快照同步也在该线程上执行
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "registry-server-health");
+            thread.setDaemon(true);
+            return thread;
+        });
         // 创建一个给定初始延迟的间隔性的任务，之后的每次任务执行时间为 初始延迟 + N * delay(间隔)
         executor.scheduleAtFixedRate(
                 () -> {
@@ -59,20 +79,33 @@ public class ServerHealth {
                 , 0, 5, java.util.concurrent.TimeUnit.SECONDS);
     }
 
+    /**
+     * 停止健康检查，节点下线后不再探测其它server、参与选举或同步
+     */
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * 更新所有服务器的信息
+     * 同时向所有其它server发起异步探测, 每个探测都有独立的超时时间, 一轮探测的耗时取决于最慢的那个server,
+     * 不占用公共的ForkJoin线程池, 也不会因为线程数不足而排队
      */
     private void updateServer() {
         long start = System.currentTimeMillis();
-        cluster.getServers().stream().parallel()
+        CompletableFuture<?>[] probes = cluster.getServers().stream()
                 .filter(s -> !s.equals(cluster.MYSELF)) // 过滤掉当前server
-                .forEach(this::checkServerInfo); // 检查其它server的状态
+                .map(this::checkServerInfo)             // 检查其它server的状态
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(probes).join();
         log.debug(" =====>>>>>> updateServer info: " + (System.currentTimeMillis() - start) + " ms");
     }
 
 
     /**
-     * 进行Leader选举
+     * 进行Leader选举，并记录故障切换耗时
      */
     private void doElect() {
         // leader 选举类
@@ -84,42 +117,70 @@ public class ServerHealth {
                 .filter(Server::isStatus)
                 .filter(Server::isLeader).collect(Collectors.toList());
 
-        // 没有Leader或存在多个Leader时进行重新选举
+        // 没有Leader时进行选举，存在多个Leader时保留任期最高的Leader
+        long now = System.currentTimeMillis();
         if (masters.isEmpty()) {
             log.warn(" =========>>>>> ELECT: no masters: {}", servers);
+            if (leaderSeenAt > 0 && metrics.getLeaderlessSince() == 0) {
+                metrics.setLeaderlessSince(leaderSeenAt);
+            }
+            metrics.setElections(metrics.getElections() + 1);
             election.elect(cluster.myself(), servers);
         } else if (masters.size() > 1) {
             log.warn(" =========>>>>> ELECT: more than one master: {}", masters);
-            election.elect(cluster.myself(), servers);
+            election.resolve(masters);
         } else {
             log.warn(" =========>>>>> ELECT: on need elect master: {}", masters);
         }
+
+        Server myself = cluster.myself();
+        Server leader = cluster.getLeader();
+        if (leader != null) {
+            myself.setTerm(Math.max(myself.getTerm(), leader.getTerm()));
+            long since = metrics.getLeaderlessSince();
+            if (since > 0) {
+                long duration = now - since;
+                metrics.setFailovers(metrics.getFailovers() + 1);
+                metrics.setLastFailoverMillis(duration);
+                metrics.setMaxFailoverMillis(Math.max(metrics.getMaxFailoverMillis(), duration));
+                metrics.setLeaderlessSince(0);
+                log.info(" =========>>>>> FAILOVER: new leader {} in term {}, took {} ms",
+                        leader.getUrl(), leader.getTerm(), duration);
+            }
+            leaderSeenAt = now;
+        }
+        metrics.setTerm(myself.getTerm());
     }
 
     /**
-     * 检查指定服务器的信息
+     * 异步检查指定服务器的信息
      *
      * @param server 待检查的服务器
+     * @return 检查完成的Future, 检查失败时也会正常完成
      */
-    public void checkServerInfo(Server server) {
-        try {
-            // 通过HTTP GET请求获取其它服务器信息
-            Server serverInfo = HttpInvoker.httpGet(server.getUrl() + "/info", Server.class);
-            log.info(" =========>>>>> health check success for {}.", server);
-            if (!server.isStatus()) {
-                server.setStatus(true);
-            }
-            // 更新服务器的状态和领导者信息
-            server.setVersion(serverInfo.getVersion());
-            server.setLeader(serverInfo.isLeader());
-        } catch (RuntimeException ex) {
-            log.warn(" =========>>>>> health check failed for {}", server);//, ex);
-            // 如果服务器状态异常，则标记为不可用
-            if (server.isStatus()) {
-                server.setStatus(false);
-                server.setLeader(false);
-            }
-        }
+    public CompletableFuture<Void> checkServerInfo(Server server) {
+        // 通过HTTP GET请求获取其它服务器信息
+        return HttpInvoker.httpGetAsync(server.getUrl() + "/info", Server.class)
+                .handle((serverInfo, ex) -> {
+                    if (ex == null && serverInfo != null) {
+                        log.info(" =========>>>>> health check success for {}.", server);
+                        if (!server.isStatus()) {
+                            server.setStatus(true);
+                        }
+                        // 更新服务器的状态和领导者信息
+                        server.setVersion(serverInfo.getVersion());
+                        server.setLeader(serverInfo.isLeader());
+                        server.setTerm(serverInfo.getTerm());
+                    } else {
+                        log.warn(" =========>>>>> health check failed for {}", server);//, ex);
+                        // 如果服务器状态异常，则标记为不可用
+                        if (server.isStatus()) {
+                            server.setStatus(false);
+                            server.setLeader(false);
+                        }
+                    }
+                    return null;
+                });
     }
 
     /**
@@ -129,7 +190,7 @@ public class ServerHealth {
      * 改成 判断LEADER是否改变 DONE
      * 把这个类拆分为多个类 DONE
      * 控制读写分离 TODO 客户端
-     * 优化实时性同步 TODO 优先级低
+     * 优化实时性同步 DONE 优先增量同步变更日志，超出日志保留范围时再同步全量快照
      *
      * @return 同步后的新版本号，若失败则返回-1
      */
@@ -137,14 +198,56 @@ public class ServerHealth {
         try {
             if (!cluster.isLeader()
                     && cluster.getMYSELF().getVersion() < cluster.getLeader().getVersion()) {
+                long start = System.nanoTime();
+                long version = syncChangesFromLeader();
+                if (version >= 0) {
+                    RegistryMetrics.SYNC_CHANGES.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    return version;
+                }
                 log.info(" =========>>>>> syncSnapshotFromLeader {}", cluster.getLeader().getUrl() + "/snapshot");
-                Snapshot snapshot = HttpInvoker.httpGet(cluster.getLeader().getUrl() + "/snapshot", Snapshot.class);
-                return RegistryManService.restore(snapshot);
+                // 边下载边解码, 解码完成后才持写锁替换注册表
+                start = System.nanoTime();
+                version = HttpInvoker.Default.get(cluster.getLeader().getUrl() + "/snapshot", SnapshotCodec.MEDIA_TYPE,
+                        (contentType, body) -> contentType != null && contentType.startsWith(SnapshotCodec.MEDIA_TYPE)
+                                ? RegistryManService.restore(body)
+                                // 兼容还不支持二进制快照的旧版本Leader, 它们会返回JSON
+                                : RegistryManService.restore(JSON.<Snapshot>parseObject(body, Snapshot.class)));
+                RegistryMetrics.SYNC_SNAPSHOT.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return version;
             }
         } catch (Exception ex) {
+            RegistryMetrics.SYNC_FAILURES.increment();
             log.error(" =========>>>>> syncSnapshotFromLeader failed.", ex);
         }
         return -1;
     }
 
+    /**
+     * 从Leader增量同步变更日志，直到追上Leader的版本
+     *
+     * @return 同步后的新版本号，若Leader的日志已不包含所需变更、或日志中的变更追不上Leader的版本则返回-1
+     */
+    private long syncChangesFromLeader() {
+        Server leader = cluster.getLeader();
+        long version = RegistryManService.VERSION.get();
+        while (version < leader.getVersion()) {
+            ChangeSet changeSet = HttpInvoker.httpGet(
+                    leader.getUrl() + "/changes?since=" + version, ChangeSet.class);
+            if (changeSet == null || !changeSet.isComplete()) {
+                log.info(" =========>>>>> syncChangesFromLeader: version {} is out of leader's log", version);
+                return -1;
+            }
+            long applied = changeSet.getChanges().isEmpty() ? version : RegistryManService.apply(changeSet);
+            if (applied <= version) {
+                // Leader 的版本更高, 日志中却没有更多变更(分配了版本号的写操作没有产生变更), 增量同步无法追上
+                log.info(" =========>>>>> syncChangesFromLeader: no changes after {}, leader is at {}",
+                        version, leader.getVersion());
+                return -1;
+            }
+            log.debug(" =========>>>>> syncChangesFromLeader: {} changes since {}", changeSet.getChanges().size(), version);
+            version = applied;
+        }
+        return version;
+    }
+
 }
@@ -18,6 +18,7 @@ public class Snapshot {
     final LinkedMultiValueMap<String, InstanceMeta> REGISTRY; // 服务注册表，保存实例的元数据
     final Map<String, Long> VERSIONS;   // 版本映射，记录每个实例的版本号
     final Map<String, Long> TIMESTAMPS; // 服务时间戳映射，记录每个服务@实例的最后更新时间戳
+    final Map<String, Long> TTLS;       // 租约超时时间映射，记录每个服务@实例的租约超时时间(毫秒)
     final long version;                 // 注册中心全局最新的版本号
 
 
@@ -27,15 +28,18 @@ public class Snapshot {
      * @param registry 注册表，保存实例元数据的映射。
      * @param versions 版本映射，保存每个实例的当前版本号。
      * @param timestamps 时间戳映射，保存每个实例的最后更新时间戳。
+     * @param ttls 租约超时时间映射，保存每个实例的租约超时时间，旧版本的快照中没有时为null。
      * @param version 快照的全局版本号。
      */
     public Snapshot(LinkedMultiValueMap<String, InstanceMeta> registry,
                     Map<String, Long> versions,
                     Map<String, Long> timestamps,
+                    Map<String, Long> ttls,
                     long version) {
         this.REGISTRY = registry;
         this.VERSIONS = versions;
         this.TIMESTAMPS = timestamps;
+        this.TTLS = ttls;
         this.version = version;
     }
 
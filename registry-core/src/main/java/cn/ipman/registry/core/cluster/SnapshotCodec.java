@@ -0,0 +1,390 @@
+package cn.ipman.registry.core.cluster;
+
+import cn.ipman.registry.core.model.InstanceMeta;
+import org.springframework.util.LinkedMultiValueMap;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 快照的二进制编解码，用于节点之间同步全量快照，JSON格式仍保留给人工查看。
+ * <p>
+ * 帧格式: magic(4) | version(1) | flags(1) | body，flags 标记 body 是否经过 GZIP 压缩。
+ * body 依次为: 全局版本号、服务版本表、服务实例表，实例的租约时间戳与超时时间直接跟在实例后面
+ * (版本1的快照没有超时时间，解码时使用默认值)。
+ * 编解码都按服务流式进行，发送方不必先拼出完整快照，接收方也可以边读边恢复。
+ * 字符串使用边写边建的字典编码: 首次出现时写入原文并加入字典，之后只写字典下标，
+ * 服务名、协议、主机、上下文以及参数的键值在大量实例之间高度重复，编码后只保留一份。
+ * 整数统一使用变长编码。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 17:10
+ */
+public final class SnapshotCodec {
+
+    // 二进制快照的内容类型，Follower 通过 Accept 头请求该格式
+    public static final String MEDIA_TYPE = "application/x-registry-snapshot";
+
+    static final int MAGIC = 0x524D5353; // "RMSS"
+    static final byte VERSION = 2;
+    static final byte FLAG_GZIP = 1;
+
+    // 字符串引用: 0 表示null，1 表示后面跟着新字符串，n(n>=2) 表示字典中第 n-2 个字符串
+    static final int STR_NULL = 0;
+    static final int STR_NEW = 1;
+
+    private SnapshotCodec() {
+    }
+
+    /**
+     * 将快照编码为二进制格式。
+     *
+     * @param snapshot 注册中心快照。
+     * @param compress 是否使用GZIP压缩。
+     * @return 编码后的字节数组。
+     */
+    public static byte[] encode(Snapshot snapshot, boolean compress) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        try {
+            Map<String, Long> timestamps = snapshot.getTIMESTAMPS();
+            Map<String, Long> ttls = snapshot.getTTLS() == null ? Map.of() : snapshot.getTTLS();
+            Encoder encoder = encoder(bytes, compress, snapshot.getVersion(),
+                    snapshot.getVERSIONS(), snapshot.getREGISTRY().size());
+            for (Map.Entry<String, List<InstanceMeta>> entry : snapshot.getREGISTRY().entrySet()) {
+                String service = entry.getKey();
+                encoder.writeService(service, entry.getValue(),
+                        instance -> timestamps.get(service + "@" + instance.toHttpUrl()),
+                        instance -> ttls.get(service + "@" + instance.toHttpUrl()));
+            }
+            encoder.finish();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 创建流式编码器，写入帧头、全局版本号与服务版本表，之后由调用方逐个写入服务。
+     *
+     * @param out 输出流，不会被关闭。
+     * @param compress 是否使用GZIP压缩。
+     * @param version 全局版本号。
+     * @param versions 服务版本表。
+     * @param services 之后将要写入的服务数量。
+     * @return 编码器。
+     * @throws IOException 写入失败时抛出。
+     */
+    public static Encoder encoder(OutputStream out, boolean compress, long version,
+                                  Map<String, Long> versions, int services) throws IOException {
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(compress ? FLAG_GZIP : 0);
+        header.flush();
+
+        GZIPOutputStream gzip = compress ? new GZIPOutputStream(out, 8192) : null;
+        Encoder encoder = new Encoder(new DataOutputStream(
+                new BufferedOutputStream(gzip != null ? gzip : out, 8192)), gzip, services);
+        encoder.writeVarLong(version);
+        encoder.writeVarInt(versions.size());
+        for (Map.Entry<String, Long> entry : versions.entrySet()) {
+            encoder.writeString(entry.getKey());
+            encoder.writeVarLong(entry.getValue() == null ? 0 : entry.getValue());
+        }
+        encoder.writeVarInt(services);
+        return encoder;
+    }
+
+    /**
+     * 判断数据是否为二进制快照格式。
+     *
+     * @param data 待判断的字节数组。
+     * @return 以快照 magic 开头时返回true。
+     */
+    public static boolean isBinary(byte[] data) {
+        return data.length >= 4
+                && ((data[0] & 0xFF) << 24 | (data[1] & 0xFF) << 16 | (data[2] & 0xFF) << 8 | (data[3] & 0xFF)) == MAGIC;
+    }
+
+    /**
+     * 解码二进制快照。
+     *
+     * @param data 编码后的字节数组。
+     * @return 注册中心快照。
+     */
+    public static Snapshot decode(byte[] data) {
+        LinkedMultiValueMap<String, InstanceMeta> registry = new LinkedMultiValueMap<>();
+        Map<String, Long> versions = new HashMap<>();
+        Map<String, Long> timestamps = new HashMap<>();
+        Map<String, Long> ttls = new HashMap<>();
+        long[] version = new long[1];
+        try {
+            decode(new ByteArrayInputStream(data), new Sink() {
+                @Override
+                public void begin(long snapshotVersion, Map<String, Long> serviceVersions) {
+                    version[0] = snapshotVersion;
+                    versions.putAll(serviceVersions);
+                }
+
+                @Override
+                public void service(String service, List<InstanceMeta> instances, long[] leases, long[] ttl) {
+                    registry.put(service, instances);
+                    for (int i = 0; i < instances.size(); i++) {
+                        if (leases[i] >= 0) {
+                            String key = service + "@" + instances.get(i).toHttpUrl();
+                            timestamps.put(key, leases[i]);
+                            ttls.put(key, ttl[i]);
+                        }
+                    }
+                }
+            });
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return new Snapshot(registry, versions, timestamps, ttls, version[0]);
+    }
+
+    /**
+     * 从输入流逐个服务地解码二进制快照，每解码完一个服务就交给 sink 处理，
+     * 内存中只保留当前服务的实例与字符串字典，不会缓存整个快照。
+     *
+     * @param in 输入流，不会被关闭。
+     * @param sink 快照数据的接收方。
+     * @return 快照的全局版本号。
+     * @throws IOException 读取失败或格式错误时抛出。
+     */
+    public static long decode(InputStream in, Sink sink) throws IOException {
+        DataInputStream header = new DataInputStream(in);
+        if (header.readInt() != MAGIC) {
+            throw new IOException("bad snapshot magic");
+        }
+        byte version = header.readByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("unsupported snapshot version: " + version);
+        }
+        boolean compressed = (header.readByte() & FLAG_GZIP) != 0;
+        Reader reader = new Reader(new DataInputStream(
+                new BufferedInputStream(compressed ? new GZIPInputStream(in, 8192) : in, 8192)));
+        long snapshotVersion = reader.readVarLong();
+
+        int serviceCount = reader.readVarInt();
+        Map<String, Long> versions = new HashMap<>(serviceCount * 2);
+        for (int i = 0; i < serviceCount; i++) {
+            versions.put(reader.readString(), reader.readVarLong());
+        }
+        sink.begin(snapshotVersion, versions);
+
+        int registryCount = reader.readVarInt();
+        for (int i = 0; i < registryCount; i++) {
+            String service = reader.readString();
+            int instanceCount = reader.readVarInt();
+            List<InstanceMeta> instances = new ArrayList<>(instanceCount);
+            long[] leases = new long[instanceCount];
+            long[] ttls = new long[instanceCount];
+            for (int j = 0; j < instanceCount; j++) {
+                instances.add(reader.readInstance());
+                // 0 表示没有租约
+                leases[j] = reader.readVarLong() - 1;
+                if (version >= 2) {
+                    ttls[j] = reader.readVarLong();
+                }
+            }
+            sink.service(service, instances, leases, ttls);
+        }
+        return snapshotVersion;
+    }
+
+    /**
+     * 流式解码时的快照数据接收方。
+     */
+    public interface Sink {
+
+        /**
+         * 快照头部解码完成。
+         *
+         * @param version 快照的全局版本号。
+         * @param versions 服务版本表。
+         */
+        void begin(long version, Map<String, Long> versions);
+
+        /**
+         * 一个服务解码完成。
+         *
+         * @param service 服务名称。
+         * @param instances 服务实例列表。
+         * @param leases 与实例一一对应的租约时间戳，没有租约时为-1。
+         * @param ttls 与实例一一对应的租约超时时间(毫秒)，为0时使用默认值。
+         */
+        void service(String service, List<InstanceMeta> instances, long[] leases, long[] ttls);
+    }
+
+    /**
+     * 流式编码器，按服务逐个写入实例、租约时间戳与超时时间，维护写入侧的字符串字典。
+     */
+    public static final class Encoder {
+        final DataOutputStream out;
+        final GZIPOutputStream gzip;
+        final Map<String, Integer> dictionary = new HashMap<>();
+        int remaining; // 还需要写入的服务数量
+
+        Encoder(DataOutputStream out, GZIPOutputStream gzip, int services) {
+            this.out = out;
+            this.gzip = gzip;
+            this.remaining = services;
+        }
+
+        /**
+         * 写入一个服务。
+         *
+         * @param service 服务名称。
+         * @param instances 服务实例列表。
+         * @param timestamps 获取实例租约时间戳，没有租约时返回null。
+         * @param ttls 获取实例租约超时时间，没有租约时返回null。
+         * @throws IOException 写入失败时抛出。
+         */
+        public void writeService(String service, List<InstanceMeta> instances,
+                                 Function<InstanceMeta, Long> timestamps,
+                                 Function<InstanceMeta, Long> ttls) throws IOException {
+            if (--remaining < 0) {
+                throw new IllegalStateException("more services than declared");
+            }
+            writeString(service);
+            writeVarInt(instances.size());
+            for (InstanceMeta instance : instances) {
+                writeInstance(instance);
+                Long timestamp = timestamps.apply(instance);
+                // 0 表示没有租约
+                writeVarLong(timestamp == null ? 0 : timestamp + 1);
+                Long ttl = ttls.apply(instance);
+                // 0 表示使用默认值
+                writeVarLong(ttl == null ? 0 : ttl);
+            }
+        }
+
+        /**
+         * 结束编码，刷出缓冲与压缩尾部，不关闭底层输出流。
+         *
+         * @throws IOException 写入失败时抛出。
+         */
+        public void finish() throws IOException {
+            if (remaining != 0) {
+                throw new IllegalStateException("fewer services than declared");
+            }
+            out.flush();
+            if (gzip != null) {
+                gzip.finish();
+            }
+        }
+
+        void writeInstance(InstanceMeta instance) throws IOException {
+            writeString(instance.getScheme());
+            writeString(instance.getHost());
+            // 0 表示端口为空
+            writeVarInt(instance.getPort() == null ? 0 : instance.getPort() + 1);
+            writeString(instance.getContext());
+            out.writeBoolean(instance.isStatus());
+            Map<String, String> parameters = instance.getParameters();
+            int size = parameters == null ? 0 : parameters.size();
+            writeVarInt(size);
+            if (size > 0) {
+                for (Map.Entry<String, String> entry : parameters.entrySet()) {
+                    writeString(entry.getKey());
+                    writeString(entry.getValue());
+                }
+            }
+        }
+
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarInt(STR_NULL);
+                return;
+            }
+            Integer index = dictionary.get(value);
+            if (index != null) {
+                writeVarInt(index + 2);
+                return;
+            }
+            dictionary.put(value, dictionary.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(STR_NEW);
+            writeVarInt(bytes.length);
+            out.write(bytes);
+        }
+
+        void writeVarInt(int value) throws IOException {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+
+    /**
+     * 解码器，按写入顺序重建字符串字典。
+     */
+    private static final class Reader {
+        final DataInputStream in;
+        final List<String> dictionary = new ArrayList<>();
+
+        Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        InstanceMeta readInstance() throws IOException {
+            String scheme = readString();
+            String host = readString();
+            int port = readVarInt();
+            String context = readString();
+            InstanceMeta instance = new InstanceMeta(scheme, host, port == 0 ? null : port - 1, context);
+            instance.setStatus(in.readBoolean());
+            int size = readVarInt();
+            for (int i = 0; i < size; i++) {
+                instance.getParameters().put(readString(), readString());
+            }
+            return instance;
+        }
+
+        String readString() throws IOException {
+            int ref = readVarInt();
+            if (ref == STR_NULL) {
+                return null;
+            }
+            if (ref != STR_NEW) {
+                if (ref - 2 >= dictionary.size()) {
+                    throw new IOException("bad string reference: " + ref);
+                }
+                return dictionary.get(ref - 2);
+            }
+            byte[] bytes = new byte[readVarInt()];
+            in.readFully(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            dictionary.add(value);
+            return value;
+        }
+
+        int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = in.readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("malformed varint");
+        }
+    }
+}
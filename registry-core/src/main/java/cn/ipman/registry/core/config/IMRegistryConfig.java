@@ -1,18 +1,34 @@
 package cn.ipman.registry.core.config;
 
 
+import cn.ipman.registry.core.cache.PageSnapshots;
+import cn.ipman.registry.core.cache.ResponseCache;
 import cn.ipman.registry.core.cluster.Cluster;
+import cn.ipman.registry.core.cluster.LeaderForwarder;
 import cn.ipman.registry.core.health.HealthChecker;
+import cn.ipman.registry.core.heartbeat.HeartbeatListener;
 import cn.ipman.registry.core.health.HealthManChecker;
+import cn.ipman.registry.core.persist.RegistryPersistence;
 import cn.ipman.registry.core.service.RegistryManService;
 import cn.ipman.registry.core.service.RegistryService;
+import cn.ipman.registry.core.service.VersionCoalescer;
+import cn.ipman.registry.core.watch.ServiceWatcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.autoconfigure.AbstractDependsOnBeanFactoryPostProcessor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Path;
+
 /**
  * 注册中心配置类，用于配置所有bean。
  *
@@ -25,10 +41,14 @@ public class IMRegistryConfig {
     /**
      * 配置注册服务bean。
      *
+     * @param registryConfigProperties 注册中心配置属性，通过自动装配获取。
      * @return 返回注册服务实例。
      */
     @Bean
-    public RegistryService registryService() {
+    public RegistryService registryService(@Autowired RegistryConfigProperties registryConfigProperties) {
+        RegistryManService.CHANGES.resize(registryConfigProperties.getChangeLogSize());
+        RegistryConfigProperties.Lease lease = registryConfigProperties.getLease();
+        RegistryManService.LEASES.bounds(lease.getTimeout(), lease.getMinTimeout(), lease.getMaxTimeout());
         return new RegistryManService();
     }
 
@@ -36,11 +56,137 @@ public class IMRegistryConfig {
      * 配置健康检查服务bean，使用RegistryService作为依赖。
      *
      * @param registryService 注册服务实例，通过自动装配获取。
+     * @param cluster 集群管理实例，通过自动装配获取。
+     * @param registryConfigProperties 注册中心配置属性，通过自动装配获取。
      * @return 返回健康检查服务实例。
      */
     @Bean(initMethod = "start", destroyMethod = "stop")
-    public HealthChecker healthChecker(@Autowired RegistryService registryService) {
-        return new HealthManChecker(registryService);
+    public HealthChecker healthChecker(@Autowired RegistryService registryService,
+                                       @Autowired Cluster cluster,
+                                       @Autowired RegistryConfigProperties registryConfigProperties) {
+        RegistryConfigProperties.Lease lease = registryConfigProperties.getLease();
+        return new HealthManChecker(registryService, cluster,
+                lease.getTimeout(), lease.getTick(), lease.getEvictionRatio(), lease.getMinEvictions());
+    }
+
+    /**
+     * 配置实例列表响应缓存bean。
+     *
+     * @param objectMapper Spring MVC使用的ObjectMapper，通过自动装配获取。
+     * @return 返回响应缓存实例。
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public ResponseCache responseCache(@Autowired ObjectMapper objectMapper) {
+        return new ResponseCache(objectMapper);
+    }
+
+    /**
+     * 配置分页查询快照保留bean。
+     *
+     * @param registryConfigProperties 注册中心配置属性，通过自动装配获取。
+     * @return 返回分页快照保留实例。
+     */
+    @Bean(destroyMethod = "stop")
+    public PageSnapshots pageSnapshots(@Autowired RegistryConfigProperties registryConfigProperties) {
+        return new PageSnapshots(registryConfigProperties.getPageTtl());
+    }
+
+    /**
+     * 配置服务变更推送bean。
+     *
+     * @return 返回服务变更推送器实例。
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public ServiceWatcher serviceWatcher() {
+        return new ServiceWatcher();
+    }
+
+    /**
+     * 配置非阻塞前端的 Reactor Netty 服务器，仅在 spring.main.web-application-type=reactive 时开启。
+     * Tomcat 同样在类路径上，不显式声明时响应式前端会跑在 Tomcat 上，
+     * 这里固定使用 Netty，由少量事件循环线程处理所有连接。
+     *
+     * @return 返回 Netty 服务器工厂实例。
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * 配置UDP心跳监听bean，仅在 registry.heartbeat.enabled=true 时开启。
+     *
+     * @param registryService 注册服务实例，通过自动装配获取。
+     * @param cluster 集群管理实例，通过自动装配获取。
+     * @param registryConfigProperties 注册中心配置属性，通过自动装配获取。
+     * @param serverPort HTTP服务端口，未配置心跳端口时使用。
+     * @return 返回心跳监听实例。
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(prefix = "registry.heartbeat", name = "enabled", havingValue = "true")
+    public HeartbeatListener heartbeatListener(@Autowired RegistryService registryService,
+                                               @Autowired Cluster cluster,
+                                               @Autowired RegistryConfigProperties registryConfigProperties,
+                                               @Value("${server.port}") int serverPort) {
+        Integer port = registryConfigProperties.getHeartbeat().getPort();
+        return new HeartbeatListener(registryService, cluster, port == null ? serverPort : port);
+    }
+
+    /**
+     * 配置 Follower 写请求转发bean。
+     *
+     * @param registryService 注册服务实例，通过自动装配获取。
+     * @param cluster 集群管理实例，通过自动装配获取。
+     * @param registryConfigProperties 注册中心配置属性，通过自动装配获取。
+     * @return 返回写请求转发实例。
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public LeaderForwarder leaderForwarder(@Autowired RegistryService registryService,
+                                           @Autowired Cluster cluster,
+                                           @Autowired RegistryConfigProperties registryConfigProperties) {
+        return new LeaderForwarder(registryService, cluster, registryConfigProperties.getCoalesceWindow());
+    }
+
+    /**
+     * 配置 Leader 写操作合并bean，registry.coalesce-window 不大于0时写操作直接执行。
+     *
+     * @param registryService 注册服务实例，通过自动装配获取。
+     * @param cluster 集群管理实例，通过自动装配获取。
+     * @param registryConfigProperties 注册中心配置属性，通过自动装配获取。
+     * @return 返回写操作合并实例。
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public VersionCoalescer versionCoalescer(@Autowired RegistryService registryService,
+                                             @Autowired Cluster cluster,
+                                             @Autowired RegistryConfigProperties registryConfigProperties) {
+        return new VersionCoalescer(registryService, cluster, registryConfigProperties.getCoalesceWindow());
+    }
+
+    /**
+     * 配置本地持久化bean，仅在 registry.persistence.enabled=true 时开启。
+     *
+     * @param registryConfigProperties 注册中心配置属性，通过自动装配获取。
+     * @return 返回持久化实例。
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(prefix = "registry.persistence", name = "enabled", havingValue = "true")
+    public RegistryPersistence registryPersistence(@Autowired RegistryConfigProperties registryConfigProperties) {
+        RegistryConfigProperties.Persistence persistence = registryConfigProperties.getPersistence();
+        return new RegistryPersistence(Path.of(persistence.getDir()),
+                persistence.getCheckpointInterval(), persistence.getSyncInterval());
+    }
+
+    /**
+     * 开启本地持久化时，集群管理依赖本地持久化：先从本地磁盘恢复数据，再启动集群同步。
+     * 持久化未开启时没有该bean，不能直接在集群管理上标注 @DependsOn，按类型找到持久化bean时才添加依赖。
+     *
+     * @return 为集群管理bean添加依赖的后置处理器。
+     */
+    @Bean
+    public static BeanFactoryPostProcessor clusterDependsOnPersistence() {
+        return new AbstractDependsOnBeanFactoryPostProcessor(Cluster.class, RegistryPersistence.class) {
+        };
     }
 
     /**
@@ -49,7 +195,7 @@ public class IMRegistryConfig {
      * @param registryConfigProperties 注册中心配置属性，通过自动装配获取。
      * @return 返回集群管理实例。
      */
-    @Bean(initMethod = "init")
+    @Bean(initMethod = "init", destroyMethod = "stop")
     @ConditionalOnMissingClass
     public Cluster cluster(@Autowired RegistryConfigProperties registryConfigProperties){
         return new Cluster(registryConfigProperties);
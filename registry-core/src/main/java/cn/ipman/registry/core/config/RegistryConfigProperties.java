@@ -20,4 +20,115 @@ public class RegistryConfigProperties {
      * 这个属性会绑定配置文件中registry.serverList的值，允许配置多个服务器地址。
      */
     List<String> serverlist;
+
+    /**
+     * 变更日志保留的最大条数，对应配置 registry.change-log-size。
+     * Follower 落后超过该范围时需要从 Leader 同步全量快照。
+     */
+    int changeLogSize = 10_000;
+
+    /**
+     * 二进制快照是否使用GZIP压缩，对应配置 registry.snapshot-compress。
+     * 节点间带宽充足而CPU紧张时可以关闭。
+     */
+    boolean snapshotCompress = true;
+
+    /**
+     * 分页查询 /findall 时，被分页读取的服务快照在最后一次读取后保留的时长(毫秒)，对应配置 registry.page-ttl。
+     * 分页期间服务发生变更，后续页仍从该快照读取；超过该时长的游标失效，需要从第一页重新开始。
+     */
+    long pageTtl = 60_000;
+
+    /**
+     * Leader 合并写操作的窗口(毫秒)，对应配置 registry.coalesce-window。窗口内同一服务的注册、注销
+     * 合并为一次变更，只发布一个新版本，滚动发布时消费方与 Follower 不再逐个实例地感知版本变化；
+     * 代价是写操作的响应最多延迟一个窗口。不大于0时不合并，每个写操作立即发布。
+     */
+    long coalesceWindow = 0;
+
+    /**
+     * 实例租约配置，对应配置 registry.lease.*。
+     */
+    Lease lease = new Lease();
+
+    /**
+     * UDP二进制心跳配置，对应配置 registry.heartbeat.*。
+     */
+    Heartbeat heartbeat = new Heartbeat();
+
+    /**
+     * 本地持久化配置，对应配置 registry.persistence.*。
+     */
+    Persistence persistence = new Persistence();
+
+    @Data
+    public static class Lease {
+        /**
+         * 默认的租约超时时间(毫秒)，实例注册时没有声明超时时间时使用，实例在该时间内没有续约则被剔除。
+         */
+        long timeout = 20_000;
+
+        /**
+         * 实例注册时允许声明的最短租约超时时间(毫秒)，声明值更短时取该值。
+         */
+        long minTimeout = 5_000;
+
+        /**
+         * 实例注册时允许声明的最长租约超时时间(毫秒)，声明值更长时取该值。
+         */
+        long maxTimeout = 300_000;
+
+        /**
+         * 到期检测的精度(毫秒)，即时间轮每个槽的跨度，实例最多在超时后再过一个 tick 被剔除。
+         */
+        long tick = 1_000;
+
+        /**
+         * 自我保护阈值：一个超时周期内最多剔除的租约比例，超过时暂停剔除，之后按该比例逐步恢复。
+         * 默认为0，关闭自我保护，到期的租约总是立即剔除；需要时显式配置，例如 0.15。
+         */
+        double evictionRatio = 0;
+
+        /**
+         * 开启自我保护时，一个超时周期内至少允许剔除的租约数。实例较少时按比例算出的额度太小，
+         * 一台机器上的几个实例同时下线就会进入保护，额度不低于该值。
+         */
+        int minEvictions = 5;
+    }
+
+    @Data
+    public static class Heartbeat {
+        /**
+         * 是否开启UDP心跳监听。
+         */
+        boolean enabled = false;
+
+        /**
+         * 监听的UDP端口，不配置时与HTTP端口(server.port)相同。
+         */
+        Integer port;
+    }
+
+    @Data
+    public static class Persistence {
+        /**
+         * 是否开启WAL与检查点持久化。
+         */
+        boolean enabled = false;
+
+        /**
+         * 数据目录，同一台机器上的多个节点需要配置不同的目录。
+         */
+        String dir = "data";
+
+        /**
+         * 检查点间隔(毫秒)，每次检查点之后删除之前的WAL。
+         */
+        long checkpointInterval = 60_000;
+
+        /**
+         * WAL刷盘间隔(毫秒)，进程崩溃不丢数据，机器掉电最多丢失该时间段内的变更。
+         */
+        long syncInterval = 1_000;
+    }
 }
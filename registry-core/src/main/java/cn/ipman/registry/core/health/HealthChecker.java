@@ -18,4 +18,11 @@ public interface HealthChecker {
      * 停止健康检查。该方法应停止执行中的健康检查任务，并清理相关资源。
      */
     void stop();
+
+    /**
+     * 获取自我保护状态。
+     *
+     * @return 自我保护状态。
+     */
+    SelfPreservation selfPreservation();
 }
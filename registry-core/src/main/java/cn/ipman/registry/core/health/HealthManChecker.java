@@ -1,10 +1,21 @@
 package cn.ipman.registry.core.health;
 
+import cn.ipman.registry.core.cluster.Cluster;
+import cn.ipman.registry.core.metrics.RegistryMetrics;
+import cn.ipman.registry.core.model.BatchItem;
+import cn.ipman.registry.core.model.BatchResult;
+import cn.ipman.registry.core.service.Lease;
+import cn.ipman.registry.core.service.LeaseListener;
 import cn.ipman.registry.core.service.RegistryService;
-import cn.ipman.registry.core.model.InstanceMeta;
 import cn.ipman.registry.core.service.RegistryManService;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -12,71 +23,329 @@ import java.util.concurrent.TimeUnit;
 /**
  * 实例健康状态检查器。该类负责定期检查注册的服务实例是否活跃，如果某个实例在指定超时时间内没有更新其状态，
  * 则将其从注册表中移除。
+ * <p>
+ * 租约的到期时间由时间轮管理：租约创建时按 创建时间+租约的超时时间 放入时间轮，续约只更新时间戳。
+ * 每个租约的超时时间由实例注册时声明，见 {@link cn.ipman.registry.core.service.LeaseTable#grant}。
+ * 时间轮中的租约到期时再检查最新时间戳，已续约的按新的到期时间重新放回，未续约的剔除。
+ * 每次检查只处理当前槽内到期的租约，不再扫描全部实例。一次检查剔除的实例合并成一次批量注销，
+ * 每个受影响的服务只发布一个新版本，而不是每个实例一个。
+ * <p>
+ * 自我保护(默认关闭，evictionRatio 大于0时开启)：每个存活的实例在一个超时周期内至少续约一次，期望的续约数约等于租约数。
+ * 一个超时周期内剔除的租约超过其中 evictionRatio 的比例(且不少于 minEvictions 个)时，更可能是Leader的GC停顿或网络抖动，
+ * 而不是实例真的同时下线，此时进入自我保护，到期的租约暂缓剔除，避免逐个注销引发的版本号风暴。
+ * 暂缓的租约在之后的续约中恢复；进入保护一个超时周期后仍未续约的，再按同样的比例逐步剔除，
+ * 全部处理完后退出自我保护。
  *
  * @Author IpMan
  * @Date 2024/4/13 20:42
  */
 @Slf4j
-public class HealthManChecker implements HealthChecker {
+public class HealthManChecker implements HealthChecker, LeaseListener {
 
     // 注册服务接口，用于注册和注销服务实例
     RegistryService registryService;
 
+    // 注册中心集群，只有Leader负责剔除实例，Follower通过同步Leader的变更剔除
+    Cluster cluster;
+
+    // 上一轮检查时当前节点是否为Leader
+    volatile boolean leader;
+
+    // 默认的租约超时时间，默认为20秒，也是自我保护统计剔除数的周期；每个租约按自己的超时时间判断是否到期
+    long timeout = 20_000;
+
+    // 到期检测的精度，默认为1秒
+    long tick = 1_000;
+
+    // 一个超时周期内最多剔除的租约比例，超过时进入自我保护，不大于0时关闭自我保护
+    double evictionRatio;
+
+    // 一个超时周期内至少允许剔除的租约数，避免实例较少时按比例算出的额度过小
+    int minEvictions;
+
+    // 租约到期时间轮
+    final TimingWheel<Lease> wheel;
+
+    // 最近一个超时周期内每个 tick 剔除的租约数，按 tick 序号循环使用
+    final int[] evicted;
+
+    // evicted 最近一次滚动到的 tick 序号
+    long evictedTick;
+
+    // 自我保护期间暂缓剔除的租约，按到期先后排列
+    final ArrayDeque<Lease> deferred = new ArrayDeque<>();
+
+    // 是否处于自我保护，以及进入的时间
+    volatile boolean preserving;
+    volatile long preservingSince;
+
+    // 暂缓剔除的租约数，供其它线程查询
+    volatile int deferredCount;
+
+    /**
+     * 健康检查器构造函数。
+     *
+     * @param registryService 注册服务实例，不可为null。
+     * @param cluster 注册中心集群，不可为null。
+     * @param timeout 租约超时时间(毫秒)。
+     * @param tick 到期检测的精度(毫秒)。
+     */
+    public HealthManChecker(RegistryService registryService, Cluster cluster, long timeout, long tick) {
+        this(registryService, cluster, timeout, tick, 0);
+    }
+
+    /**
+     * 健康检查器构造函数。
+     *
+     * @param registryService 注册服务实例，不可为null。
+     * @param cluster 注册中心集群，不可为null。
+     * @param timeout 租约超时时间(毫秒)。
+     * @param tick 到期检测的精度(毫秒)。
+     * @param evictionRatio 一个超时周期内最多剔除的租约比例，不大于0时关闭自我保护。
+     */
+    public HealthManChecker(RegistryService registryService, Cluster cluster, long timeout, long tick,
+                            double evictionRatio) {
+        this(registryService, cluster, timeout, tick, evictionRatio, 5);
+    }
+
     /**
      * 健康检查器构造函数。
      *
      * @param registryService 注册服务实例，不可为null。
+     * @param cluster 注册中心集群，不可为null。
+     * @param timeout 租约超时时间(毫秒)。
+     * @param tick 到期检测的精度(毫秒)。
+     * @param evictionRatio 一个超时周期内最多剔除的租约比例，不大于0时关闭自我保护。
+     * @param minEvictions 一个超时周期内至少允许剔除的租约数。
      */
-    public HealthManChecker(RegistryService registryService) {
+    public HealthManChecker(RegistryService registryService, Cluster cluster, long timeout, long tick,
+                            double evictionRatio, int minEvictions) {
         this.registryService = registryService;
+        this.cluster = cluster;
+        this.timeout = timeout;
+        this.tick = tick;
+        this.evictionRatio = evictionRatio;
+        this.minEvictions = Math.max(1, minEvictions);
+        long now = System.currentTimeMillis();
+        this.wheel = new TimingWheel<>(tick, now);
+        this.evicted = new int[(int) Math.max(1, timeout / tick)];
+        this.evictedTick = now / tick;
     }
 
     // 定时任务执行器，用于执行定期检查任务
     final ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
 
-    // 超时时间，默认为20秒，如果服务实例在该时间内没有更新状态，则认为其不活跃
-    long timeout = 20_000;
-
     /**
-     * 启动健康检查器。该方法会创建一个定时任务，该任务会定期检查注册的服务实例是否活跃。
+     * 启动健康检查器。该方法会创建一个定时任务，每个 tick 推进一次时间轮，剔除到期的服务实例。
      */
     @Override
     public void start() {
-        // 使用固定延迟执行策略启动定时任务，任务间隔为30秒，初始延迟为10秒
+        RegistryManService.addLeaseListener(this);
+        RegistryMetrics.bindHealthChecker(this);
         executor.scheduleWithFixedDelay(
                 () -> {
-                    log.info("Health checker running...");
-                    long now = System.currentTimeMillis();
-                    // 遍历所有已注册的服务实例，检查其是否超时
-                    RegistryManService.TIMESTAMPS.keySet().forEach(serviceAndInstance -> {
-
-                        // 检查服务实例的最后更新时间是否超过超时时间，如果是，则将其从注册表中移除
-                        long timestamp = RegistryManService.TIMESTAMPS.get(serviceAndInstance);
-                        if (now - timestamp > timeout) {
-                            log.info(" === > Health checker: {} is down", serviceAndInstance);
-
-                            // 解析服务名称和实例URL
-                            int index = serviceAndInstance.indexOf("@");
-                            String service = serviceAndInstance.substring(0, index);
-                            String url = serviceAndInstance.substring(index + 1);
-
-                            // 注销不活跃的服务实例
-                            InstanceMeta instanceMeta = InstanceMeta.from(url);
-                            registryService.unregister(service, instanceMeta);
-                            RegistryManService.TIMESTAMPS.remove(service);
-                        }
-                    });
+                    try {
+                        check(System.currentTimeMillis());
+                    } catch (Throwable t) {
+                        log.error(" === > Health checker failed", t);
+                    }
                 },
-                10, 30, TimeUnit.SECONDS);
+                tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onLeaseCreated(Lease lease, long timestamp) {
+        if (!leader) {
+            return; // 成为Leader时会重新安排所有租约
+        }
+        wheel.schedule(timestamp + lease.getTtl(), lease);
     }
 
+    /**
+     * 推进时间轮，检查到期的租约。由定时任务每个 tick 调用一次；
+     * 不启动定时任务时也可以直接调用，按给定的时间戳驱动检查(例如基准测试)。
+     *
+     * @param now 当前时间戳。
+     */
+    public void check(long now) {
+        if (!cluster.isLeader()) {
+            if (leader) {
+                wheel.clear(now);
+                resetPreservation();
+                leader = false;
+            }
+            return;
+        }
+        if (!leader) {
+            // 刚成为Leader: 心跳不会同步到Follower, 本地时间戳可能已过期, 给所有实例一个完整的超时周期
+            log.info(" === > Health checker: became leader, reset {} leases", RegistryManService.LEASES.size());
+            wheel.clear(now);
+            resetPreservation();
+            // 先标记为Leader再遍历: 遍历期间新建的租约由 onLeaseCreated 放入时间轮，不会漏掉；
+            // 同一租约可能被放入两次，到期时按下面的去重合并
+            leader = true;
+            RegistryManService.LEASES.forEach(lease -> {
+                RegistryManService.LEASES.touch(lease, now);
+                wheel.schedule(now + lease.getTtl(), lease);
+            });
+        }
+        List<Lease> stale = new ArrayList<>();
+        Set<Lease> expired = new HashSet<>();
+        wheel.advance(now, lease -> {
+            // 重复放入的租约在同一次推进中只处理一次，续约后只放回一份
+            if (expired.add(lease) && !renewed(lease, now)) {
+                stale.add(lease);
+            }
+        });
+        evict(stale, now);
+        if (preserving) {
+            resume(now);
+        }
+        deferredCount = deferred.size();
+    }
+
+    /**
+     * 检查到期的租约：已注销的丢弃，已续约的按新的到期时间放回时间轮。
+     *
+     * @return 租约已注销或已续约时返回true，未续约时返回false。
+     */
+    private boolean renewed(Lease lease, long now) {
+        if (!RegistryManService.LEASES.isActive(lease)) {
+            return true; // 实例已注销
+        }
+        long timestamp = RegistryManService.LEASES.timestamp(lease);
+        if (now - timestamp <= lease.getTtl()) {
+            wheel.schedule(timestamp + lease.getTtl(), lease);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 剔除本次到期未续约的租约。一次到期的租约作为整体判断，剔除后超出本周期的剔除额度时全部暂缓，
+     * Leader长时间停顿后大量租约同时到期的情况因此一个都不会被剔除。
+     */
+    private void evict(List<Lease> stale, long now) {
+        if (stale.isEmpty()) {
+            return;
+        }
+        if (!preserving && (evictionRatio <= 0 || evictedInWindow(now) + stale.size() <= budget())) {
+            unregister(stale, now);
+            return;
+        }
+        if (!preserving) {
+            preserving = true;
+            preservingSince = now;
+            log.warn(" === > Health checker: {} leases expired at once, more than {} of {} leases allowed per {}ms,"
+                            + " enter self preservation", stale.size() + evictedInWindow(now), budget(),
+                    RegistryManService.LEASES.size(), timeout);
+        }
+        deferred.addAll(stale);
+    }
+
+    /**
+     * 自我保护期间处理暂缓的租约：已续约的放回时间轮；进入保护满一个超时周期后，
+     * 仍未续约的在剩余的剔除额度内逐步剔除。暂缓的租约全部处理完后退出自我保护。
+     */
+    private void resume(long now) {
+        Iterator<Lease> it = deferred.iterator();
+        while (it.hasNext()) {
+            if (renewed(it.next(), now)) {
+                it.remove();
+            }
+        }
+        if (now - preservingSince >= timeout) {
+            int quota = budget() - evictedInWindow(now);
+            List<Lease> evicting = new ArrayList<>();
+            for (int i = 0; i < quota && !deferred.isEmpty(); i++) {
+                evicting.add(deferred.poll());
+            }
+            unregister(evicting, now);
+        }
+        if (deferred.isEmpty()) {
+            log.warn(" === > Health checker: exit self preservation after {}ms", now - preservingSince);
+            preserving = false;
+        }
+    }
+
+    /**
+     * 在一次批量注销中剔除不活跃的服务实例，每个服务只产生一个新版本，并计入本周期的剔除数。
+     */
+    private void unregister(List<Lease> leases, long now) {
+        if (leases.isEmpty()) {
+            return;
+        }
+        List<BatchItem> items = new ArrayList<>(leases.size());
+        for (Lease lease : leases) {
+            log.info(" === > Health checker: {} is down", lease.key());
+            items.add(new BatchItem(BatchItem.Op.UNREGISTER, lease.getService(), lease.getInstance()));
+        }
+        List<BatchResult> results = registryService.batch(items);
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).getResult() == BatchResult.Result.ABSENT) {
+                // 只续约过、未注册的实例不在注销时释放租约，这里直接结束
+                RegistryManService.LEASES.release(leases.get(i).getService(), leases.get(i).getInstance());
+            }
+        }
+        RegistryMetrics.LEASES_EXPIRED.increment(leases.size());
+        roll(now);
+        evicted[(int) (evictedTick % evicted.length)] += leases.size();
+    }
+
+    /**
+     * @return 一个超时周期内允许剔除的租约数，即期望续约数(租约数)的 evictionRatio，至少为 minEvictions。
+     */
+    private int budget() {
+        return Math.max(minEvictions, (int) Math.ceil(evictionRatio * RegistryManService.LEASES.size()));
+    }
+
+    /**
+     * @return 最近一个超时周期内剔除的租约数。
+     */
+    private int evictedInWindow(long now) {
+        roll(now);
+        int sum = 0;
+        for (int count : evicted) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    /**
+     * 滚动剔除计数窗口到当前 tick，清空已滑出窗口的计数。
+     */
+    private void roll(long now) {
+        long current = now / tick;
+        long passed = Math.min(current - evictedTick, evicted.length);
+        for (long i = 1; i <= passed; i++) {
+            evicted[(int) ((evictedTick + i) % evicted.length)] = 0;
+        }
+        evictedTick = Math.max(evictedTick, current);
+    }
+
+    private void resetPreservation() {
+        deferred.clear();
+        deferredCount = 0;
+        preserving = false;
+    }
+
+    @Override
+    public SelfPreservation selfPreservation() {
+        SelfPreservation status = new SelfPreservation();
+        status.setEnabled(evictionRatio > 0);
+        status.setActive(preserving);
+        status.setSince(preserving ? preservingSince : 0);
+        status.setDeferred(deferredCount);
+        status.setBudget(budget());
+        return status;
+    }
 
     /**
      * 停止健康检查器。该方法会取消所有计划的检查任务。
      */
     @Override
     public void stop() {
+        RegistryManService.removeLeaseListener(this);
         executor.shutdown();
     }
-
 }
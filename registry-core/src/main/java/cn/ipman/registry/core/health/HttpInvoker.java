@@ -6,6 +6,10 @@ import lombok.SneakyThrows;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
 
 /**
  * HttpInvoker 接口定义了HTTP调用的基本方法。
@@ -35,6 +39,54 @@ public interface HttpInvoker {
      */
     String get(String url);
 
+    /**
+     * 异步执行HTTP GET请求，不占用调用线程，整个请求(含连接、读写)受调用器超时时间的限制。
+     *
+     * @param url 请求的URL。
+     * @return 响应字符串内容的Future，请求失败或超时时异常完成。
+     */
+    CompletableFuture<String> getAsync(String url);
+
+    /**
+     * 异步执行HTTP POST请求，整个请求受调用器超时时间的限制。
+     *
+     * @param requestString 请求体字符串。
+     * @param url 请求的URL。
+     * @return 响应字符串内容的Future，请求失败或超时时异常完成。
+     */
+    CompletableFuture<String> postAsync(String requestString, String url);
+
+    /**
+     * 执行HTTP GET请求，按指定的 Accept 头协商内容类型，由 reader 直接从响应流中读取结果，
+     * 响应体不会被整体读入内存。
+     *
+     * @param url 请求的URL。
+     * @param accept 期望的内容类型。
+     * @param reader 响应体读取器。
+     * @param <T> 返回对象的类型。
+     * @return reader 读取的结果。
+     */
+    <T> T get(String url, String accept, BodyReader<T> reader);
+
+    /**
+     * 响应体读取器。
+     *
+     * @param <T> 读取结果的类型。
+     */
+    @FunctionalInterface
+    interface BodyReader<T> {
+
+        /**
+         * 从响应流中读取结果。
+         *
+         * @param contentType 响应的内容类型，可能为null。
+         * @param body 响应体输入流，由调用方负责关闭。
+         * @return 读取的结果。
+         * @throws IOException 读取失败时抛出。
+         */
+        T read(String contentType, InputStream body) throws IOException;
+    }
+
     /**
      * 使用HTTP GET方法获取信息，并将其解析为指定的Java类型。
      *
@@ -52,6 +104,19 @@ public interface HttpInvoker {
     }
 
 
+    /**
+     * 使用HTTP GET方法异步获取信息，并将其解析为指定的Java类型。
+     *
+     * @param url 请求的URL。
+     * @param clazz 需要解析成的Java类型。
+     * @param <T> 返回对象的类型。
+     * @return 解析后的对象实例的Future。
+     */
+    static <T> CompletableFuture<T> httpGetAsync(String url, Class<T> clazz) {
+        log.debug(" =====>>>>>> httpGetAsync: " + url);
+        return Default.getAsync(url).thenApply(respJson -> JSON.parseObject(respJson, clazz));
+    }
+
     /**
      * 使用HTTP POST方法发送请求，并将其解析为指定的Java类型。
      *
@@ -0,0 +1,18 @@
+package cn.ipman.registry.core.health;
+
+import lombok.Data;
+
+/**
+ * 健康检查器的自我保护状态，见 {@link HealthManChecker}。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 23:58
+ */
+@Data
+public class SelfPreservation {
+    private boolean enabled;    // 是否开启自我保护
+    private boolean active;     // 当前是否处于自我保护
+    private long since;         // 进入自我保护的时间，未处于自我保护时为0
+    private int deferred;       // 暂缓剔除的租约数
+    private int budget;         // 一个超时周期内允许剔除的租约数
+}
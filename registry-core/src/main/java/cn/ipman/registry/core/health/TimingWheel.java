@@ -0,0 +1,149 @@
+package cn.ipman.registry.core.health;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮。每一层有 wheelSize 个槽，第0层每个槽跨度为一个 tick，第N层每个槽跨度为 wheelSize^N 个 tick。
+ * 到期时间较远的任务先放在高层，随着时间推进逐层下沉(cascade)，最终在第0层对应的槽到期。
+ * 每次推进只处理当前槽内的任务，开销与任务总数无关。
+ * <p>
+ * schedule 可以被任意线程调用(先进入无锁队列)，advance 只能由单个线程调用。
+ *
+ * @param <T> 任务类型
+ * @Author IpMan
+ * @Date 2026/10/18 13:05
+ */
+public class TimingWheel<T> {
+
+    static final int BITS = 6;                  // 每层槽数的位数
+    static final int WHEEL_SIZE = 1 << BITS;    // 每层槽数: 64
+    static final int MASK = WHEEL_SIZE - 1;
+    static final int LEVELS = 4;                // 层数，可覆盖 64^4 个 tick
+
+    private final long tick;                    // 第0层每个槽的时间跨度(毫秒)
+    private final Queue<Timeout<T>>[][] buckets;
+    private final Queue<Timeout<T>> incoming = new ConcurrentLinkedQueue<>();
+    private long currentTick;                   // 已经处理到的 tick(绝对值, 即 时间戳/tick)
+    private int size;                           // 时间轮中的任务数(不含 incoming)
+
+    /**
+     * @param tick 第0层每个槽的时间跨度(毫秒)，也就是到期检测的精度。
+     * @param now 当前时间戳(毫秒)。
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tick, long now) {
+        this.tick = tick;
+        this.currentTick = now / tick;
+        this.buckets = new Queue[LEVELS][WHEEL_SIZE];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                buckets[level][slot] = new ArrayDeque<>();
+            }
+        }
+    }
+
+    /**
+     * 添加一个在指定时间到期的任务，线程安全。
+     *
+     * @param deadline 到期时间戳(毫秒)。
+     * @param task 任务。
+     */
+    public void schedule(long deadline, T task) {
+        incoming.offer(new Timeout<>(deadline, task));
+    }
+
+    /**
+     * 推进时间轮到指定时间，依次回调所有已到期的任务。
+     *
+     * @param now 当前时间戳(毫秒)。
+     * @param expired 到期任务的回调。
+     */
+    public void advance(long now, Consumer<T> expired) {
+        drainIncoming();
+        long target = now / tick;
+        while (currentTick < target) {
+            currentTick++;
+            cascade();
+            Queue<Timeout<T>> bucket = buckets[0][(int) (currentTick & MASK)];
+            Timeout<T> timeout;
+            while ((timeout = bucket.poll()) != null) {
+                size--;
+                expired.accept(timeout.task);
+            }
+        }
+    }
+
+    /**
+     * 清空所有任务，并把时间轮拨到指定时间。停用期间不推进时间轮，重新启用时不必逐个 tick 追赶。
+     *
+     * @param now 当前时间戳(毫秒)。
+     */
+    public void clear(long now) {
+        incoming.clear();
+        for (Queue<Timeout<T>>[] level : buckets) {
+            for (Queue<Timeout<T>> bucket : level) {
+                bucket.clear();
+            }
+        }
+        size = 0;
+        currentTick = now / tick;
+    }
+
+    /**
+     * @return 时间轮中的任务数。
+     */
+    public int size() {
+        return size + incoming.size();
+    }
+
+    private void drainIncoming() {
+        Timeout<T> timeout;
+        while ((timeout = incoming.poll()) != null) {
+            add(timeout, currentTick + 1);
+        }
+    }
+
+    /**
+     * @param earliest 最早的到期 tick。新加入的任务不早于下一个 tick；下沉的任务可以落在当前 tick，
+     *                 下沉之后紧接着处理当前槽，否则恰好在层边界到期的任务会晚一个 tick。
+     */
+    private void add(Timeout<T> timeout, long earliest) {
+        // 向上取整，保证任务不会提前到期；已经到期的任务放到最早的 tick 处理
+        long expireTick = Math.max((timeout.deadline + tick - 1) / tick, earliest);
+        long delta = expireTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        if (delta >= 1L << (BITS * LEVELS)) {
+            // 超出时间轮范围，先放在最高层最远的槽，下沉时重新计算位置
+            expireTick = currentTick + (1L << (BITS * LEVELS)) - 1;
+        }
+        int slot = (int) ((expireTick >>> (BITS * level)) & MASK);
+        buckets[level][slot].offer(timeout);
+        size++;
+    }
+
+    /**
+     * 低层转完一圈时，把高层对应槽的任务重新放入时间轮(下沉到更低的层)。
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (BITS * level)) - 1)) != 0) {
+                return;
+            }
+            Queue<Timeout<T>> bucket = buckets[level][(int) ((currentTick >>> (BITS * level)) & MASK)];
+            int count = bucket.size();
+            for (int i = 0; i < count; i++) {
+                size--;
+                add(bucket.poll(), currentTick);
+            }
+        }
+    }
+
+    private record Timeout<T>(long deadline, T task) {
+    }
+}
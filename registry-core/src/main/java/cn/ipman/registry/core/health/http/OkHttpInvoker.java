@@ -3,8 +3,11 @@ package cn.ipman.registry.core.health.http;
 import cn.ipman.registry.core.health.HttpInvoker;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -20,12 +23,16 @@ public class OkHttpInvoker implements HttpInvoker {
 
     OkHttpClient client;
 
+    // 单次请求的总超时时间(毫秒)
+    int timeout;
+
     /**
      * 构造函数，初始化OkHttpClient配置。
      *
      * @param timeout 连接、读写超时时间（毫秒）
      */
     public OkHttpInvoker(int timeout) {
+        this.timeout = timeout;
         // 配置OkHttpClient，包括连接池、超时设置和失败重试等
         this.client = new OkHttpClient.Builder()
                 .connectionPool(new ConnectionPool(16, 60, TimeUnit.SECONDS)) // 连接池配置
@@ -82,4 +89,86 @@ public class OkHttpInvoker implements HttpInvoker {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * 异步执行HTTP GET请求，由OkHttp的调度线程完成网络读写，整个请求受 timeout 限制。
+     *
+     * @param url 请求的URL
+     * @return 响应体字符串内容的Future
+     */
+    @Override
+    public CompletableFuture<String> getAsync(String url) {
+        log.debug(" ===> getAsync url = " + url);
+        Request request = new Request.Builder()
+                .url(url)
+                .get()
+                .build();
+        return enqueue(request);
+    }
+
+    /**
+     * 异步执行HTTP POST请求，整个请求受 timeout 限制。
+     *
+     * @param requestString 请求体字符串
+     * @param url 请求的URL
+     * @return 响应体字符串内容的Future
+     */
+    @Override
+    public CompletableFuture<String> postAsync(String requestString, String url) {
+        log.debug(" ===> postAsync url = {}", url);
+        Request request = new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(requestString, JSON_TYPE))
+                .build();
+        return enqueue(request);
+    }
+
+    private CompletableFuture<String> enqueue(Request request) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Call call = client.newCall(request);
+        call.timeout().timeout(timeout, TimeUnit.MILLISECONDS);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                try (response) {
+                    String respJson = Objects.requireNonNull(response.body()).string();
+                    log.debug(" ===> respJson = " + respJson);
+                    future.complete(respJson);
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 执行HTTP GET请求，由 reader 直接读取响应流。
+     *
+     * @param url 请求的URL
+     * @param accept 请求头 Accept 的值
+     * @param reader 响应体读取器
+     * @return 返回 reader 读取的结果
+     */
+    @Override
+    public <T> T get(String url, String accept, BodyReader<T> reader) {
+        log.debug(" ===> get url = {}, accept = {}", url, accept);
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Accept", accept)
+                .get()
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = Objects.requireNonNull(response.body());
+            MediaType contentType = body.contentType();
+            return reader.read(contentType == null ? null : contentType.toString(), body.byteStream());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
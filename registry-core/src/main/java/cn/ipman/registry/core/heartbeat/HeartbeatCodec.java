@@ -0,0 +1,154 @@
+package cn.ipman.registry.core.heartbeat;
+
+import cn.ipman.registry.core.model.InstanceMeta;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * 二进制心跳帧的编解码。一个帧(一个UDP数据报)可以包含多个实例，每个实例可以续约多个服务：
+ * <pre>
+ * frame    = magic(int 'RMHB') version(byte 1) block*
+ * block    = scheme(str8) host(str8) port(u16) context(str8) count(u16) service(str16){count}
+ * str8     = length(u8)  utf8-bytes
+ * str16    = length(u16) utf8-bytes
+ * </pre>
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 15:40
+ */
+public final class HeartbeatCodec {
+
+    public static final int MAGIC = 0x524D4842;     // "RMHB"
+    public static final byte VERSION = 1;
+    public static final int MAX_FRAME_SIZE = 1400;  // 默认帧大小上限，避免IP分片
+
+    private HeartbeatCodec() {
+    }
+
+    /**
+     * 把一组续约编码成若干个帧，每个帧不超过指定大小。
+     *
+     * @param leases 实例与其需要续约的服务集合。
+     * @param maxFrameSize 帧大小上限(字节)。
+     * @return 编码后的帧列表。
+     */
+    public static List<ByteBuffer> encode(Map<InstanceMeta, ? extends Collection<String>> leases, int maxFrameSize) {
+        List<ByteBuffer> frames = new ArrayList<>();
+        ByteBuffer frame = newFrame(maxFrameSize);
+        for (Map.Entry<InstanceMeta, ? extends Collection<String>> entry : leases.entrySet()) {
+            List<String> services = new ArrayList<>(entry.getValue());
+            int from = 0;
+            while (from < services.size()) {
+                int position = frame.position();
+                int written;
+                try {
+                    written = writeBlock(frame, entry.getKey(), services, from);
+                } catch (BufferOverflowException ex) {
+                    written = 0;
+                }
+                if (written == 0) {
+                    frame.position(position);
+                    if (position == 5) {
+                        throw new IllegalArgumentException("heartbeat block too large for frame size " + maxFrameSize);
+                    }
+                    frames.add(frame.flip());
+                    frame = newFrame(maxFrameSize);
+                    continue;
+                }
+                from += written;
+            }
+        }
+        if (frame.position() > 5) {
+            frames.add(frame.flip());
+        }
+        return frames;
+    }
+
+    /**
+     * 解码一个帧，对每个 服务+实例 回调一次。
+     *
+     * @param frame 帧数据。
+     * @param consumer 回调，参数为服务名称和实例元数据。
+     * @return 帧中续约的数量。
+     * @throws IllegalArgumentException 帧格式不正确。
+     */
+    public static int decode(ByteBuffer frame, BiConsumer<String, InstanceMeta> consumer) {
+        if (frame.remaining() < 5 || frame.getInt() != MAGIC) {
+            throw new IllegalArgumentException("bad heartbeat frame magic");
+        }
+        byte version = frame.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("unsupported heartbeat frame version " + version);
+        }
+        int leases = 0;
+        try {
+            while (frame.hasRemaining()) {
+                String scheme = readString(frame, frame.get() & 0xFF);
+                String host = readString(frame, frame.get() & 0xFF);
+                int port = frame.getShort() & 0xFFFF;
+                String context = readString(frame, frame.get() & 0xFF);
+                InstanceMeta instance = new InstanceMeta(scheme, host, port, context);
+                int count = frame.getShort() & 0xFFFF;
+                for (int i = 0; i < count; i++) {
+                    consumer.accept(readString(frame, frame.getShort() & 0xFFFF), instance);
+                    leases++;
+                }
+            }
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("truncated heartbeat frame", ex);
+        }
+        return leases;
+    }
+
+    private static ByteBuffer newFrame(int maxFrameSize) {
+        return ByteBuffer.allocate(maxFrameSize).putInt(MAGIC).put(VERSION);
+    }
+
+    /**
+     * 写入一个实例块，返回写入的服务数量，空间不足以写入任何服务时返回0。
+     */
+    private static int writeBlock(ByteBuffer frame, InstanceMeta instance, List<String> services, int from) {
+        writeString8(frame, instance.getScheme());
+        writeString8(frame, instance.getHost());
+        frame.putShort((short) instance.getPort().intValue());
+        writeString8(frame, instance.getContext());
+        int countPosition = frame.position();
+        frame.putShort((short) 0);
+        int count = 0;
+        for (int i = from; i < services.size() && count < 0xFFFF; i++) {
+            byte[] service = services.get(i).getBytes(StandardCharsets.UTF_8);
+            if (frame.remaining() < 2 + service.length) {
+                break;
+            }
+            frame.putShort((short) service.length).put(service);
+            count++;
+        }
+        frame.putShort(countPosition, (short) count);
+        return count;
+    }
+
+    private static void writeString8(ByteBuffer frame, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFF) {
+            throw new IllegalArgumentException("heartbeat field too long: " + value);
+        }
+        frame.put((byte) bytes.length).put(bytes);
+    }
+
+    private static String readString(ByteBuffer frame, int length) {
+        if (length > frame.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(frame.array(), frame.arrayOffset() + frame.position(), length, StandardCharsets.UTF_8);
+        frame.position(frame.position() + length);
+        return value;
+    }
+}
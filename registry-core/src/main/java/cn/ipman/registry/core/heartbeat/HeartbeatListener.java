@@ -0,0 +1,114 @@
+package cn.ipman.registry.core.heartbeat;
+
+import cn.ipman.registry.core.cluster.Cluster;
+import cn.ipman.registry.core.metrics.RegistryMetrics;
+import cn.ipman.registry.core.service.RegistryService;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * UDP二进制心跳监听器，作为 /renew、/renews 的轻量替代。
+ * 心跳帧(见 {@link HeartbeatCodec})中的每个 服务+实例 都直接调用 {@link RegistryService#reNew}，
+ * 与HTTP续约更新的是同一份租约状态，但省去了Tomcat、JSON绑定和日志的开销。
+ * 心跳是单向的，不回复；丢失的心跳由下一次心跳补上。只有Leader处理心跳，Follower直接丢弃。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 16:05
+ */
+@Slf4j
+public class HeartbeatListener {
+
+    // 注册服务接口，用于续约服务实例
+    RegistryService registryService;
+
+    // 注册中心集群，用于判断当前节点是否为Leader
+    Cluster cluster;
+
+    // 监听的UDP端口
+    int port;
+
+    DatagramChannel channel;
+    Thread worker;
+
+    // 收到的帧数、续约数、丢弃的帧数，用于观测
+    volatile long frames;
+    volatile long renews;
+    volatile long dropped;
+
+    /**
+     * @param registryService 注册服务实例。
+     * @param cluster 注册中心集群。
+     * @param port 监听的UDP端口。
+     */
+    public HeartbeatListener(RegistryService registryService, Cluster cluster, int port) {
+        this.registryService = registryService;
+        this.cluster = cluster;
+        this.port = port;
+    }
+
+    /**
+     * 绑定端口并启动接收线程。
+     */
+    public void start() throws IOException {
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+        worker = new Thread(this::receive, "registry-heartbeat-" + port);
+        worker.setDaemon(true);
+        worker.start();
+        RegistryMetrics.bindHeartbeat(this);
+        log.info(" ====> heartbeat listener started on udp port {}", port);
+    }
+
+    /**
+     * 关闭端口，接收线程随之退出。
+     */
+    public void stop() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void receive() {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                SocketAddress from = channel.receive(buffer);
+                buffer.flip();
+                frames++;
+                if (!cluster.isLeader()) {
+                    dropped++;
+                    continue;
+                }
+                renews += HeartbeatCodec.decode(buffer, (service, instance) -> registryService.reNew(instance, service));
+                log.debug(" ====> heartbeat frame from {}", from);
+            } catch (ClosedChannelException ex) {
+                break;
+            } catch (IllegalArgumentException ex) {
+                dropped++;
+                log.debug(" ====> bad heartbeat frame: {}", ex.getMessage());
+            } catch (Exception ex) {
+                log.warn(" ====> heartbeat listener error", ex);
+            }
+        }
+        log.info(" ====> heartbeat listener on udp port {} stopped", port);
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getRenews() {
+        return renews;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+}
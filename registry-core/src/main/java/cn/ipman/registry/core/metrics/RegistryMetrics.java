@@ -0,0 +1,180 @@
+package cn.ipman.registry.core.metrics;
+
+import cn.ipman.registry.core.cluster.Cluster;
+import cn.ipman.registry.core.cluster.ElectionMetrics;
+import cn.ipman.registry.core.cluster.Server;
+import cn.ipman.registry.core.health.HealthManChecker;
+import cn.ipman.registry.core.heartbeat.HeartbeatListener;
+import cn.ipman.registry.core.service.RegistryManService;
+import cn.ipman.registry.core.service.ServiceInstances;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+
+/**
+ * 注册中心的监控指标，统一注册到 Micrometer 的全局注册表 {@link Metrics#globalRegistry}，
+ * 由 registry-server 的 Prometheus 端点(/actuator/prometheus)对外暴露。
+ * <p>
+ * 热路径上使用的计数器和计时器在类加载时创建好，调用方只做一次 increment/record，
+ * 不按请求查找或创建 Meter；实例数、服务数、复制延迟等状态类指标用 Gauge 在抓取时计算，
+ * 不在写入路径上维护额外的计数。没有任何具体注册表时全局注册表的 Meter 为空操作。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 19:50
+ */
+public final class RegistryMetrics {
+
+    static final MeterRegistry METER_REGISTRY = Metrics.globalRegistry;
+
+    // 注册、注销、批量操作的耗时
+    public static final Timer REGISTER = timer("registry.register", "注册实例耗时");
+    public static final Timer UNREGISTER = timer("registry.unregister", "注销实例耗时");
+    public static final Timer BATCH = timer("registry.batch", "批量操作耗时");
+    public static final DistributionSummary BATCH_SIZE = DistributionSummary.builder("registry.batch.size")
+            .description("批量操作包含的条数")
+            .register(METER_REGISTRY);
+
+    // 续约次数，按服务计数
+    public static final Counter RENEWS = Counter.builder("registry.renews")
+            .description("续约的服务实例数")
+            .register(METER_REGISTRY);
+
+    // 查询实例列表的耗时与缓存命中，耗时包含 /findall 的所有形式(缓存、条件过滤、分页、NDJSON)，不含写出响应
+    public static final Timer FINDALL = timer("registry.findall", "查询服务实例耗时");
+    public static final Counter FINDALL_CACHE_HIT = findAllCache("hit");
+    public static final Counter FINDALL_CACHE_MISS = findAllCache("miss");
+
+    // 租约到期被剔除的实例数
+    public static final Counter LEASES_EXPIRED = Counter.builder("registry.leases.expired")
+            .description("租约到期被剔除的实例数")
+            .register(METER_REGISTRY);
+
+    // 从Leader同步的耗时，按同步方式区分
+    public static final Timer SYNC_CHANGES = sync("changes");
+    public static final Timer SYNC_SNAPSHOT = sync("snapshot");
+    public static final Counter SYNC_FAILURES = Counter.builder("registry.sync.failures")
+            .description("从Leader同步失败的次数")
+            .register(METER_REGISTRY);
+
+    // Leader 输出的快照大小
+    public static final DistributionSummary SNAPSHOT_SIZE = DistributionSummary.builder("registry.snapshot.size")
+            .description("写出的快照字节数")
+            .baseUnit("bytes")
+            .register(METER_REGISTRY);
+
+    static {
+        Gauge.builder("registry.services", RegistryManService.REGISTRY, registry -> registry.size())
+                .description("注册的服务数")
+                .register(METER_REGISTRY);
+        Gauge.builder("registry.instances", RegistryManService.REGISTRY,
+                        registry -> registry.values().stream().mapToInt(ServiceInstances::size).sum())
+                .description("注册的服务实例数")
+                .register(METER_REGISTRY);
+        Gauge.builder("registry.leases", RegistryManService.LEASES, leases -> leases.size())
+                .description("活跃的租约数")
+                .register(METER_REGISTRY);
+        Gauge.builder("registry.version", RegistryManService.VERSION, version -> version.get())
+                .description("注册中心的全局版本号")
+                .register(METER_REGISTRY);
+    }
+
+    private RegistryMetrics() {
+    }
+
+    /**
+     * 注册集群相关的指标: 复制延迟、任期与故障切换。
+     *
+     * @param cluster 注册中心集群
+     * @param election 选举与故障切换指标
+     */
+    public static void bindCluster(Cluster cluster, ElectionMetrics election) {
+        // Leader 的版本号来自最近一次探测，最多滞后一个探测周期
+        Gauge.builder("registry.replication.lag", cluster, RegistryMetrics::replicationLag)
+                .description("Follower 落后 Leader 的版本数")
+                .register(METER_REGISTRY);
+        Gauge.builder("registry.leader", cluster, c -> c.isLeader() ? 1 : 0)
+                .description("本节点是否为Leader")
+                .register(METER_REGISTRY);
+        Gauge.builder("registry.election.term", election, ElectionMetrics::getTerm)
+                .description("当前任期")
+                .register(METER_REGISTRY);
+        FunctionCounter.builder("registry.elections", election, ElectionMetrics::getElections)
+                .description("发起选举的次数")
+                .register(METER_REGISTRY);
+        FunctionCounter.builder("registry.failovers", election, ElectionMetrics::getFailovers)
+                .description("完成故障切换的次数")
+                .register(METER_REGISTRY);
+        Gauge.builder("registry.failover.last", election, ElectionMetrics::getLastFailoverMillis)
+                .description("最近一次故障切换的耗时")
+                .baseUnit("milliseconds")
+                .register(METER_REGISTRY);
+    }
+
+    /**
+     * 注册UDP心跳监听器的指标。
+     *
+     * @param listener 心跳监听器
+     */
+    public static void bindHeartbeat(HeartbeatListener listener) {
+        FunctionCounter.builder("registry.heartbeat.frames", listener, HeartbeatListener::getFrames)
+                .description("收到的心跳报文数")
+                .register(METER_REGISTRY);
+        FunctionCounter.builder("registry.heartbeat.renews", listener, HeartbeatListener::getRenews)
+                .description("通过心跳续约的实例数")
+                .register(METER_REGISTRY);
+        FunctionCounter.builder("registry.heartbeat.dropped", listener, HeartbeatListener::getDropped)
+                .description("丢弃的心跳报文数")
+                .register(METER_REGISTRY);
+    }
+
+    /**
+     * 注册健康检查器的自我保护指标。
+     *
+     * @param checker 健康检查器
+     */
+    public static void bindHealthChecker(HealthManChecker checker) {
+        Gauge.builder("registry.self.preservation", checker, c -> c.selfPreservation().isActive() ? 1 : 0)
+                .description("是否处于自我保护")
+                .register(METER_REGISTRY);
+        Gauge.builder("registry.leases.deferred", checker, c -> c.selfPreservation().getDeferred())
+                .description("自我保护期间暂缓剔除的租约数")
+                .register(METER_REGISTRY);
+    }
+
+    private static double replicationLag(Cluster cluster) {
+        Server leader = cluster.getLeader();
+        if (leader == null || cluster.isLeader()) {
+            return 0;
+        }
+        return Math.max(0, leader.getVersion() - RegistryManService.VERSION.get());
+    }
+
+    private static Timer timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(1))
+                .register(METER_REGISTRY);
+    }
+
+    private static Timer sync(String mode) {
+        return Timer.builder("registry.sync")
+                .description("从Leader同步的耗时")
+                .tag("mode", mode)
+                .register(METER_REGISTRY);
+    }
+
+    private static Counter findAllCache(String result) {
+        return Counter.builder("registry.findall.cache")
+                .description("查询服务实例时响应缓存的命中情况")
+                .tag("result", result)
+                .register(METER_REGISTRY);
+    }
+}
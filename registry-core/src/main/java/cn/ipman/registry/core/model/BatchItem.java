@@ -0,0 +1,43 @@
+package cn.ipman.registry.core.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量请求中的一项操作。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 15:02
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItem {
+
+    private Op op;                  // 操作类型
+    private String service;         // 服务名称
+    private InstanceMeta instance;  // 服务实例元数据
+    private long ttl;               // 注册时声明的租约超时时间(毫秒)，不大于0时使用服务端默认值
+
+    /**
+     * 创建不声明租约超时时间的批量操作。
+     *
+     * @param op 操作类型。
+     * @param service 服务名称。
+     * @param instance 服务实例元数据。
+     */
+    public BatchItem(Op op, String service, InstanceMeta instance) {
+        this(op, service, instance, 0);
+    }
+
+    /**
+     * 批量操作类型
+     */
+    public enum Op {
+        REGISTER,   // 注册实例
+        UNREGISTER, // 注销实例
+        UPSERT,     // 已注册则续约，否则注册
+        RENEW       // 只续约，不注册
+    }
+}
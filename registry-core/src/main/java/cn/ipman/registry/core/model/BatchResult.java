@@ -0,0 +1,45 @@
+package cn.ipman.registry.core.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量请求中每一项操作的结果，与请求中的操作一一对应。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 15:05
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchResult {
+
+    private Result result;  // 操作结果
+    private Long version;   // 操作后该服务的版本号
+    private long timestamp; // 操作发生的时间戳
+    private long ttl;       // 实例租约的超时时间(毫秒)，注销或操作无效时为0
+
+    /**
+     * 创建没有租约信息的操作结果。
+     *
+     * @param result 操作结果。
+     * @param version 操作后该服务的版本号。
+     * @param timestamp 操作发生的时间戳。
+     */
+    public BatchResult(Result result, Long version, long timestamp) {
+        this(result, version, timestamp, 0);
+    }
+
+    /**
+     * 批量操作结果
+     */
+    public enum Result {
+        REGISTERED,     // 新注册
+        EXISTED,        // 已注册，未发生变更
+        RENEWED,        // 已注册，已续约
+        UNREGISTERED,   // 已注销
+        ABSENT,         // 实例不存在，未发生变更
+        INVALID         // 请求不合法
+    }
+}
@@ -0,0 +1,23 @@
+package cn.ipman.registry.core.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 分页查询的一页实例。同一次分页的所有页都取自同一个服务版本。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 22:30
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InstancePage {
+
+    private long version;                // 分页所基于的服务版本号
+    private List<InstanceMeta> instances; // 本页的实例
+    private String next;                 // 下一页的游标，最后一页为null
+}
@@ -0,0 +1,195 @@
+package cn.ipman.registry.core.persist;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 注册中心检查点文件，内容为二进制快照(见 {@link cn.ipman.registry.core.cluster.SnapshotCodec})。
+ * 读写都通过内存映射按窗口进行，写入先落到临时文件，刷盘后原子替换正式文件，
+ * 进程在写检查点的过程中崩溃也不会破坏上一个检查点。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 18:10
+ */
+public class Checkpoint {
+
+    static final String FILE = "checkpoint.bin";
+    static final String TEMP = "checkpoint.tmp";
+
+    // 每次映射的窗口大小
+    static final int WINDOW = 8 * 1024 * 1024;
+
+    final Path file;
+    final Path temp;
+
+    /**
+     * @param dir 检查点所在目录。
+     */
+    public Checkpoint(Path dir) {
+        this.file = dir.resolve(FILE);
+        this.temp = dir.resolve(TEMP);
+    }
+
+    /**
+     * @return 检查点文件是否存在。
+     */
+    public boolean exists() {
+        return Files.exists(file);
+    }
+
+    /**
+     * 写入新的检查点。
+     *
+     * @param writer 向输出流写入检查点内容。
+     * @return 检查点的字节数。
+     * @throws IOException 写入失败时抛出。
+     */
+    public long write(Writer writer) throws IOException {
+        long size;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedOutputStream out = new MappedOutputStream(channel);
+            writer.write(out);
+            size = out.finish();
+            // 映射时按窗口扩展了文件，截掉多余部分
+            channel.truncate(size);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return size;
+    }
+
+    /**
+     * 读取检查点。
+     *
+     * @param reader 从输入流读取检查点内容。
+     * @param <T> 读取结果的类型。
+     * @return 读取的结果。
+     * @throws IOException 读取失败时抛出。
+     */
+    public <T> T read(Reader<T> reader) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return reader.read(new MappedInputStream(channel));
+        }
+    }
+
+    /**
+     * 检查点内容的写入方。
+     */
+    @FunctionalInterface
+    public interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * 检查点内容的读取方。
+     *
+     * @param <T> 读取结果的类型。
+     */
+    @FunctionalInterface
+    public interface Reader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    /**
+     * 按窗口映射文件的输出流，写满一个窗口后映射下一个窗口。
+     */
+    static final class MappedOutputStream extends OutputStream {
+        final FileChannel channel;
+        MappedByteBuffer window;
+        long position; // 当前窗口在文件中的起始位置
+
+        MappedOutputStream(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensure();
+            window.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                ensure();
+                int n = Math.min(len, window.remaining());
+                window.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        long finish() {
+            if (window == null) {
+                return 0;
+            }
+            window.force();
+            return position + window.position();
+        }
+
+        private void ensure() throws IOException {
+            if (window != null && window.hasRemaining()) {
+                return;
+            }
+            if (window != null) {
+                window.force();
+                position += window.capacity();
+            }
+            window = channel.map(FileChannel.MapMode.READ_WRITE, position, WINDOW);
+        }
+    }
+
+    /**
+     * 按窗口映射文件的输入流。
+     */
+    static final class MappedInputStream extends InputStream {
+        final FileChannel channel;
+        final long size;
+        MappedByteBuffer window;
+        long position; // 下一个窗口在文件中的起始位置
+
+        MappedInputStream(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return ensure() ? window.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensure()) {
+                return -1;
+            }
+            int n = Math.min(len, window.remaining());
+            window.get(b, off, n);
+            return n;
+        }
+
+        private boolean ensure() throws IOException {
+            if (window != null && window.hasRemaining()) {
+                return true;
+            }
+            if (position >= size) {
+                return false;
+            }
+            long length = Math.min(WINDOW, size - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            position += length;
+            return true;
+        }
+    }
+}
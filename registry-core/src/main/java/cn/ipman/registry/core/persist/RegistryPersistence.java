@@ -0,0 +1,163 @@
+package cn.ipman.registry.core.persist;
+
+import cn.ipman.registry.core.cluster.Change;
+import cn.ipman.registry.core.cluster.ChangeJournal;
+import cn.ipman.registry.core.cluster.ChangeSet;
+import cn.ipman.registry.core.service.RegistryManService;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 注册中心本地持久化: 变更写入WAL，定期写检查点并删除检查点之前的WAL。
+ * 启动时先加载检查点，再回放之后的WAL，重建 REGISTRY/VERSIONS/VERSION，然后才开始集群同步，
+ * 重启的节点只需从Leader追赶重启期间的变更。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 18:25
+ */
+@Slf4j
+public class RegistryPersistence implements ChangeJournal {
+
+    // 回放时每批提交的变更条数，同一版本的变更不会被拆开
+    static final int REPLAY_BATCH = 1000;
+
+    final Path dir;
+    final long checkpointInterval;
+    final long syncInterval;
+    final WriteAheadLog wal;
+    final Checkpoint checkpoint;
+
+    ScheduledExecutorService executor;
+
+    /**
+     * @param dir 数据目录。
+     * @param checkpointInterval 检查点间隔(毫秒)。
+     * @param syncInterval WAL刷盘间隔(毫秒)。
+     */
+    public RegistryPersistence(Path dir, long checkpointInterval, long syncInterval) {
+        this.dir = dir;
+        this.checkpointInterval = checkpointInterval;
+        this.syncInterval = syncInterval;
+        this.wal = new WriteAheadLog(dir);
+        this.checkpoint = new Checkpoint(dir);
+    }
+
+    /**
+     * 从本地磁盘恢复数据，并开始记录之后的变更。
+     */
+    public void start() throws IOException {
+        Files.createDirectories(dir);
+        long begin = System.currentTimeMillis();
+        long segment = recover();
+        log.info(" ====> registry recovered from {} to version {} in {} ms",
+                dir, RegistryManService.VERSION.get(), System.currentTimeMillis() - begin);
+
+        wal.open(segment + 1);
+        RegistryManService.CHANGES.setJournal(this);
+        // 恢复后立即写一次检查点，旧的WAL随之删除
+        checkpoint();
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "registry-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::checkpoint, checkpointInterval, checkpointInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止记录，写最后一个检查点。
+     */
+    public void stop() throws IOException, InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        checkpoint();
+        RegistryManService.CHANGES.setJournal(null);
+        wal.close();
+    }
+
+    @Override
+    public void append(List<Change> changes) {
+        try {
+            wal.append(changes);
+        } catch (IOException ex) {
+            log.error(" ====> wal append failed.", ex);
+        }
+    }
+
+    @Override
+    public void reset(long version) {
+        try {
+            wal.reset(version);
+        } catch (IOException ex) {
+            log.error(" ====> wal reset failed.", ex);
+        }
+        // 快照没有写进WAL，需要尽快写检查点
+        if (executor != null) {
+            executor.execute(this::checkpoint);
+        }
+    }
+
+    /**
+     * 写检查点: 先切换WAL段，再写出当前数据，检查点包含了旧段中的全部变更，旧段可以删除。
+     */
+    synchronized void checkpoint() {
+        try {
+            long segment = wal.rotate();
+            long size = checkpoint.write(out -> RegistryManService.writeSnapshot(out, false));
+            wal.deleteUpTo(segment);
+            log.debug(" ====> checkpoint written, {} bytes", size);
+        } catch (Exception ex) {
+            log.error(" ====> checkpoint failed.", ex);
+        }
+    }
+
+    private void sync() {
+        try {
+            wal.sync();
+        } catch (IOException ex) {
+            log.error(" ====> wal sync failed.", ex);
+        }
+    }
+
+    /**
+     * 加载检查点并回放WAL。
+     *
+     * @return 最大的WAL段序号，没有时返回-1。
+     */
+    private long recover() throws IOException {
+        if (checkpoint.exists()) {
+            checkpoint.read(RegistryManService::restore);
+        }
+        List<Change> batch = new ArrayList<>();
+        long segment = WriteAheadLog.replay(dir, change -> {
+            if (batch.size() >= REPLAY_BATCH
+                    && batch.get(batch.size() - 1).getVersion() != change.getVersion()) {
+                replay(batch);
+            }
+            batch.add(change);
+        });
+        replay(batch);
+        return segment;
+    }
+
+    private void replay(List<Change> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long version = batch.get(batch.size() - 1).getVersion();
+        RegistryManService.apply(new ChangeSet(true, version, new ArrayList<>(batch)));
+        batch.clear();
+    }
+}
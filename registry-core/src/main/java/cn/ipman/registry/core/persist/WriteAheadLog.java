@@ -0,0 +1,306 @@
+package cn.ipman.registry.core.persist;
+
+import cn.ipman.registry.core.cluster.Change;
+import cn.ipman.registry.core.model.InstanceMeta;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 只追加的注册/注销变更日志(WAL)，按段(segment)存放在 wal-{序号}.log 文件中。
+ * 每条记录格式为: length(4) | crc32(4) | payload，进程崩溃时最后一条记录可能不完整，回放时遇到即停止。
+ * 写入只进入操作系统的页缓存，由调用方定期 {@link #sync()} 刷盘。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 17:55
+ */
+@Slf4j
+public class WriteAheadLog {
+
+    static final String PREFIX = "wal-";
+    static final String SUFFIX = ".log";
+
+    static final byte CHANGE = 0; // 注册/注销变更
+    static final byte RESET = 1;  // 恢复了全量快照，之前的记录不能再往后回放
+
+    // 单条记录的上限，超过时认为文件已损坏
+    static final int MAX_RECORD = 16 * 1024 * 1024;
+
+    final Path dir;
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+    final DataOutputStream out = new DataOutputStream(buffer);
+    final CRC32 crc = new CRC32();
+
+    FileChannel channel;
+    long segment;
+
+    /**
+     * @param dir 日志所在目录。
+     */
+    public WriteAheadLog(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * 打开一个新的日志段用于追加。
+     *
+     * @param segment 段序号。
+     * @throws IOException 文件创建失败时抛出。
+     */
+    public synchronized void open(long segment) throws IOException {
+        this.channel = FileChannel.open(segmentPath(dir, segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.segment = segment;
+    }
+
+    /**
+     * 追加变更记录。
+     *
+     * @param changes 已分配版本号的变更。
+     * @throws IOException 写入失败时抛出。
+     */
+    public synchronized void append(List<Change> changes) throws IOException {
+        for (Change change : changes) {
+            begin(CHANGE);
+            out.writeLong(change.getVersion());
+            out.writeByte(change.getOp().ordinal());
+            writeString(change.getService());
+            writeInstance(change.getInstance());
+            out.writeLong(change.getTimestamp());
+            out.writeLong(change.getTtl());
+            commit();
+        }
+    }
+
+    /**
+     * 追加重置记录。
+     *
+     * @param version 快照的版本号。
+     * @throws IOException 写入失败时抛出。
+     */
+    public synchronized void reset(long version) throws IOException {
+        begin(RESET);
+        out.writeLong(version);
+        commit();
+    }
+
+    /**
+     * 切换到下一个日志段，之前的段在下次检查点完成后即可删除。
+     *
+     * @return 切换前的段序号。
+     * @throws IOException 文件操作失败时抛出。
+     */
+    public synchronized long rotate() throws IOException {
+        long previous = segment;
+        channel.force(false);
+        channel.close();
+        open(previous + 1);
+        return previous;
+    }
+
+    /**
+     * 将已写入的记录刷到磁盘。
+     *
+     * @throws IOException 刷盘失败时抛出。
+     */
+    public synchronized void sync() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * 刷盘并关闭当前日志段。
+     *
+     * @throws IOException 文件操作失败时抛出。
+     */
+    public synchronized void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    /**
+     * 删除序号不大于指定值的日志段。
+     *
+     * @param segment 段序号。
+     * @throws IOException 删除失败时抛出。
+     */
+    public void deleteUpTo(long segment) throws IOException {
+        for (Path path : segments(dir)) {
+            if (segmentOf(path) <= segment) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * 按顺序回放目录下所有日志段中的变更。遇到不完整或校验失败的记录时停止，
+     * 遇到重置记录时也停止，因为之后的记录基于一份没有落盘的快照。
+     *
+     * @param dir 日志所在目录。
+     * @param consumer 变更的消费者。
+     * @return 最大的段序号，没有日志段时返回-1。
+     * @throws IOException 读取失败时抛出。
+     */
+    public static long replay(Path dir, Consumer<Change> consumer) throws IOException {
+        long last = -1;
+        boolean stopped = false;
+        for (Path path : segments(dir)) {
+            last = segmentOf(path);
+            if (!stopped) {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 64 * 1024)) {
+                    stopped = !replay(path, new DataInputStream(in), consumer);
+                }
+            }
+        }
+        return last;
+    }
+
+    private static boolean replay(Path path, DataInputStream in, Consumer<Change> consumer) throws IOException {
+        CRC32 crc = new CRC32();
+        while (true) {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException ex) {
+                return true;
+            }
+            byte[] payload;
+            try {
+                int checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD) {
+                    throw new IOException("bad record length " + length);
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    throw new IOException("bad record checksum");
+                }
+            } catch (IOException ex) {
+                log.warn(" ====> wal {} has a broken tail, stop replay: {}", path, ex.getMessage());
+                return false;
+            }
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+            if (record.readByte() == RESET) {
+                log.info(" ====> wal {} reset at version {}, stop replay", path, record.readLong());
+                return false;
+            }
+            Change change = new Change();
+            change.setVersion(record.readLong());
+            change.setOp(Change.Op.values()[record.readByte()]);
+            change.setService(readString(record));
+            change.setInstance(readInstance(record));
+            change.setTimestamp(record.readLong());
+            // 旧版本写入的记录没有租约超时时间，回放时使用默认值
+            change.setTtl(record.available() >= Long.BYTES ? record.readLong() : 0);
+            consumer.accept(change);
+        }
+    }
+
+    /**
+     * 列出目录下所有日志段，按序号升序。
+     */
+    static List<Path> segments(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> segments = new ArrayList<>(files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .toList());
+            segments.sort((a, b) -> Long.compare(segmentOf(a), segmentOf(b)));
+            return segments;
+        }
+    }
+
+    static Path segmentPath(Path dir, long segment) {
+        return dir.resolve(PREFIX + segment + SUFFIX);
+    }
+
+    static long segmentOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private void begin(byte type) throws IOException {
+        buffer.reset();
+        out.writeByte(type);
+    }
+
+    private void commit() throws IOException {
+        byte[] payload = buffer.toByteArray();
+        crc.reset();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    private void writeInstance(InstanceMeta instance) throws IOException {
+        writeString(instance.getScheme());
+        writeString(instance.getHost());
+        out.writeInt(instance.getPort() == null ? -1 : instance.getPort());
+        writeString(instance.getContext());
+        out.writeBoolean(instance.isStatus());
+        Map<String, String> parameters = instance.getParameters();
+        out.writeInt(parameters == null ? 0 : parameters.size());
+        if (parameters != null) {
+            for (Map.Entry<String, String> entry : parameters.entrySet()) {
+                writeString(entry.getKey());
+                writeString(entry.getValue());
+            }
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static InstanceMeta readInstance(DataInputStream in) throws IOException {
+        String scheme = readString(in);
+        String host = readString(in);
+        int port = in.readInt();
+        String context = readString(in);
+        InstanceMeta instance = new InstanceMeta(scheme, host, port < 0 ? null : port, context);
+        instance.setStatus(in.readBoolean());
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            instance.getParameters().put(readString(in), readString(in));
+        }
+        return instance;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
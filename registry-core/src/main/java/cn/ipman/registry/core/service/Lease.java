@@ -0,0 +1,43 @@
+package cn.ipman.registry.core.service;
+
+import cn.ipman.registry.core.model.InstanceMeta;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 服务实例的租约。实例第一次注册(或续约)时创建并分配一个数字ID，注销前ID保持不变，
+ * 续约时间戳按ID保存在 {@link LeaseTable} 的原始类型数组中。
+ * 租约的超时时间由实例注册时声明，在服务端的上下限内确定，见 {@link LeaseTable#grant}。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 14:10
+ */
+@Getter
+@ToString
+public final class Lease {
+
+    private final int id;                   // 租约ID，注销后会被复用
+    private final int generation;           // 创建序号，区分复用同一ID的先后租约
+    private final String service;           // 服务名称
+    private final InstanceMeta instance;    // 服务实例元数据
+    private volatile long ttl;              // 租约超时时间(毫秒)，超过该时间没有续约则被剔除
+
+    Lease(int id, int generation, String service, InstanceMeta instance, long ttl) {
+        this.id = id;
+        this.generation = generation;
+        this.service = service;
+        this.instance = instance;
+        this.ttl = ttl;
+    }
+
+    void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * @return 租约对应的 服务@实例URL，与快照中时间戳的格式一致。
+     */
+    public String key() {
+        return service + "@" + instance.toHttpUrl();
+    }
+}
@@ -0,0 +1,20 @@
+package cn.ipman.registry.core.service;
+
+/**
+ * 实例租约监听器。实例第一次注册或续约(租约创建)时回调，后续续约只更新时间戳，不会回调。
+ * 回调发生在请求线程上，实现类不能阻塞。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 13:40
+ */
+@FunctionalInterface
+public interface LeaseListener {
+
+    /**
+     * 实例租约创建。
+     *
+     * @param lease 新创建的租约。
+     * @param timestamp 租约创建时间戳。
+     */
+    void onLeaseCreated(Lease lease, long timestamp);
+}
@@ -0,0 +1,293 @@
+package cn.ipman.registry.core.service;
+
+import cn.ipman.registry.core.model.InstanceMeta;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * 租约表。每个租约分配一个数字ID，续约时间戳保存在按ID分页的 long 数组中。
+ * 续约只需两次无锁的哈希查找(服务 -> 实例 -> 租约)和一次数组写入，不拼接字符串也不装箱；
+ * 只有创建和释放租约需要加锁。
+ * <p>
+ * 续约不加锁，手里的租约可能在此期间被释放、ID被新租约复用，或者整张表被清空。
+ * 时间戳槽的低 {@link #GENERATION_BITS} 位保存当前租约的创建序号，续约用 CAS 写入，
+ * 序号不一致时放弃，不会把时间戳写进复用了同一ID的其它租约。
+ * <p>
+ * 每个租约有自己的超时时间，由实例注册时声明，并限制在服务端配置的上下限内：
+ * 变化频繁的批处理任务可以声明较短的超时以便尽快剔除，稳定的网关可以声明较长的超时并降低心跳频率。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 14:15
+ */
+public class LeaseTable {
+
+    static final int PAGE_BITS = 10;                // 每页 1024 个租约
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+    static final int GENERATION_BITS = 16;          // 时间戳槽中创建序号的位数
+    static final long GENERATION_MASK = (1L << GENERATION_BITS) - 1;
+
+    // 服务 -> 实例 -> 租约
+    private final Map<String, Map<InstanceMeta, Lease>> leases = new ConcurrentHashMap<>();
+
+    private volatile AtomicLongArray[] timestamps = new AtomicLongArray[0];  // 按ID分页的 续约时间戳<<16|创建序号
+    private volatile Lease[][] owners = new Lease[0][];                      // 按ID分页的租约
+
+    private int[] free = new int[16];   // 已释放、可复用的ID
+    private int freeCount;
+    private int nextId;                 // 下一个未使用过的ID
+    private int generation;             // 上一个租约的创建序号，清空时不重置
+    private int size;                   // 当前租约数
+
+    private volatile long defaultTtl = 20_000;  // 没有声明超时时间时使用的默认值(毫秒)
+    private volatile long minTtl = 5_000;       // 允许声明的最短超时时间(毫秒)
+    private volatile long maxTtl = 300_000;     // 允许声明的最长超时时间(毫秒)
+
+    /**
+     * 设置租约超时时间的默认值与上下限。
+     *
+     * @param defaultTtl 没有声明超时时间时使用的默认值(毫秒)。
+     * @param minTtl 允许声明的最短超时时间(毫秒)。
+     * @param maxTtl 允许声明的最长超时时间(毫秒)。
+     */
+    public void bounds(long defaultTtl, long minTtl, long maxTtl) {
+        if (minTtl <= 0 || minTtl > maxTtl) {
+            throw new IllegalArgumentException("invalid lease ttl bounds [" + minTtl + ", " + maxTtl + "]");
+        }
+        this.minTtl = minTtl;
+        this.maxTtl = maxTtl;
+        this.defaultTtl = Math.min(Math.max(defaultTtl, minTtl), maxTtl);
+    }
+
+    /**
+     * 确定租约的超时时间。
+     *
+     * @param ttl 实例声明的超时时间(毫秒)，不大于0表示未声明。
+     * @return 未声明时返回默认值，否则返回限制在上下限内的声明值。
+     */
+    public long grant(long ttl) {
+        return ttl <= 0 ? defaultTtl : Math.min(Math.max(ttl, minTtl), maxTtl);
+    }
+
+    /**
+     * 续约已存在的租约，无锁。
+     *
+     * @param service 服务名称。
+     * @param instance 服务实例元数据。
+     * @param now 续约时间戳。
+     * @return 续约的租约，租约不存在时返回null。
+     */
+    public Lease renew(String service, InstanceMeta instance, long now) {
+        Map<InstanceMeta, Lease> instances = leases.get(service);
+        Lease lease = instances == null ? null : instances.get(instance);
+        return lease != null && stamp(lease, now) ? lease : null;
+    }
+
+    /**
+     * 创建使用默认超时时间的租约，租约已存在时只续约。
+     *
+     * @param service 服务名称。
+     * @param instance 服务实例元数据。
+     * @param timestamp 续约时间戳。
+     * @return 新创建的租约，若租约已被其它线程创建则返回null。
+     */
+    public Lease create(String service, InstanceMeta instance, long timestamp) {
+        return create(service, instance, timestamp, 0);
+    }
+
+    /**
+     * 创建租约，租约已存在时只续约，声明了超时时间时同时更新已存在租约的超时时间。
+     *
+     * @param service 服务名称。
+     * @param instance 服务实例元数据。
+     * @param timestamp 续约时间戳。
+     * @param ttl 实例声明的超时时间(毫秒)，不大于0表示未声明，见 {@link #grant}。
+     * @return 新创建的租约，若租约已存在则返回null。
+     */
+    public synchronized Lease create(String service, InstanceMeta instance, long timestamp, long ttl) {
+        Lease existing = renew(service, instance, timestamp);
+        if (existing != null) {
+            if (ttl > 0) {
+                existing.setTtl(grant(ttl));
+            }
+            return null;
+        }
+        int id = freeCount > 0 ? free[--freeCount] : nextId++;
+        if ((id >>> PAGE_BITS) >= owners.length) {
+            grow();
+        }
+        // 序号为0的槽表示空闲，序号在 1..GENERATION_MASK 之间循环
+        generation = generation == GENERATION_MASK ? 1 : generation + 1;
+        Lease lease = new Lease(id, generation, service, instance, grant(ttl));
+        owners[id >>> PAGE_BITS][id & PAGE_MASK] = lease;
+        timestamps[id >>> PAGE_BITS].set(id & PAGE_MASK, pack(timestamp, generation));
+        leases.computeIfAbsent(service, k -> new ConcurrentHashMap<>()).put(instance, lease);
+        size++;
+        return lease;
+    }
+
+    /**
+     * 释放租约，ID可以被之后创建的租约复用。
+     *
+     * @param service 服务名称。
+     * @param instance 服务实例元数据。
+     * @return 被释放的租约，租约不存在时返回null。
+     */
+    public synchronized Lease release(String service, InstanceMeta instance) {
+        Map<InstanceMeta, Lease> instances = leases.get(service);
+        Lease lease = instances == null ? null : instances.remove(instance);
+        if (lease == null) {
+            return null;
+        }
+        if (instances.isEmpty()) {
+            leases.remove(service);
+        }
+        int id = lease.getId();
+        owners[id >>> PAGE_BITS][id & PAGE_MASK] = null;
+        timestamps[id >>> PAGE_BITS].set(id & PAGE_MASK, 0);
+        if (freeCount == free.length) {
+            int[] grown = new int[free.length * 2];
+            System.arraycopy(free, 0, grown, 0, freeCount);
+            free = grown;
+        }
+        free[freeCount++] = id;
+        size--;
+        return lease;
+    }
+
+    /**
+     * 判断租约是否仍然有效(没有被释放，ID也没有被复用)。
+     *
+     * @param lease 租约。
+     * @return 有效返回true。
+     */
+    public boolean isActive(Lease lease) {
+        Lease[][] pages = owners;
+        int page = lease.getId() >>> PAGE_BITS;
+        return page < pages.length && pages[page][lease.getId() & PAGE_MASK] == lease;
+    }
+
+    /**
+     * @param lease 租约。
+     * @return 租约最近一次续约的时间戳，租约已被释放时返回0。
+     */
+    public long timestamp(Lease lease) {
+        AtomicLongArray[] pages = timestamps;
+        int page = lease.getId() >>> PAGE_BITS;
+        if (page >= pages.length) {
+            return 0;
+        }
+        long packed = pages[page].get(lease.getId() & PAGE_MASK);
+        return (packed & GENERATION_MASK) == lease.getGeneration() ? packed >>> GENERATION_BITS : 0;
+    }
+
+    /**
+     * 查询租约最近一次续约的时间戳。
+     *
+     * @param service 服务名称。
+     * @param instance 服务实例元数据。
+     * @return 续约时间戳，租约不存在时返回null。
+     */
+    public Long timestamp(String service, InstanceMeta instance) {
+        Map<InstanceMeta, Lease> instances = leases.get(service);
+        Lease lease = instances == null ? null : instances.get(instance);
+        return lease == null ? null : timestamp(lease);
+    }
+
+    /**
+     * 查询租约的超时时间。
+     *
+     * @param service 服务名称。
+     * @param instance 服务实例元数据。
+     * @return 超时时间(毫秒)，租约不存在时返回null。
+     */
+    public Long ttl(String service, InstanceMeta instance) {
+        Map<InstanceMeta, Lease> instances = leases.get(service);
+        Lease lease = instances == null ? null : instances.get(instance);
+        return lease == null ? null : lease.getTtl();
+    }
+
+    /**
+     * 设置租约的续约时间戳。
+     *
+     * @param lease 租约。
+     * @param timestamp 续约时间戳。
+     */
+    public void touch(Lease lease, long timestamp) {
+        stamp(lease, timestamp);
+    }
+
+    /**
+     * 遍历所有租约。
+     *
+     * @param action 对每个租约执行的操作。
+     */
+    public void forEach(Consumer<Lease> action) {
+        leases.values().forEach(instances -> instances.values().forEach(action));
+    }
+
+    /**
+     * 清空所有租约。
+     */
+    public synchronized void clear() {
+        leases.clear();
+        timestamps = new AtomicLongArray[0];
+        owners = new Lease[0][];
+        freeCount = 0;
+        nextId = 0;
+        size = 0;
+    }
+
+    /**
+     * @return 当前租约数。
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 写入租约的续约时间戳。页数组只读取一次，表被清空后仍写在旧的页上，不会越界；
+     * 槽中的创建序号与租约不一致(已释放或ID已被复用)时放弃写入。
+     *
+     * @return 写入成功返回true，租约已失效返回false。
+     */
+    private boolean stamp(Lease lease, long timestamp) {
+        AtomicLongArray[] pages = timestamps;
+        int page = lease.getId() >>> PAGE_BITS;
+        if (page >= pages.length) {
+            return false;
+        }
+        AtomicLongArray slots = pages[page];
+        int slot = lease.getId() & PAGE_MASK;
+        long next = pack(timestamp, lease.getGeneration());
+        while (true) {
+            long current = slots.get(slot);
+            if ((current & GENERATION_MASK) != lease.getGeneration()) {
+                return false;
+            }
+            if (current == next || slots.compareAndSet(slot, current, next)) {
+                return true;
+            }
+        }
+    }
+
+    private static long pack(long timestamp, int generation) {
+        return timestamp << GENERATION_BITS | generation;
+    }
+
+    private void grow() {
+        int pages = owners.length + 1;
+        AtomicLongArray[] grownTimestamps = new AtomicLongArray[pages];
+        System.arraycopy(timestamps, 0, grownTimestamps, 0, timestamps.length);
+        grownTimestamps[pages - 1] = new AtomicLongArray(PAGE_SIZE);
+        Lease[][] grownOwners = new Lease[pages][];
+        System.arraycopy(owners, 0, grownOwners, 0, owners.length);
+        grownOwners[pages - 1] = new Lease[PAGE_SIZE];
+        // 先发布时间戳页，再发布租约页
+        timestamps = grownTimestamps;
+        owners = grownOwners;
+    }
+}
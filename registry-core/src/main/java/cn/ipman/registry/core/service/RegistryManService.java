@@ -1,17 +1,35 @@
 package cn.ipman.registry.core.service;
 
+import cn.ipman.registry.core.cluster.Change;
+import cn.ipman.registry.core.cluster.ChangeSet;
+import cn.ipman.registry.core.cluster.ReplicationLog;
 import cn.ipman.registry.core.cluster.Snapshot;
+import cn.ipman.registry.core.cluster.SnapshotCodec;
+import cn.ipman.registry.core.metrics.RegistryMetrics;
+import cn.ipman.registry.core.model.BatchItem;
+import cn.ipman.registry.core.model.BatchResult;
 import cn.ipman.registry.core.model.InstanceMeta;
+import com.alibaba.fastjson.util.TypeUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 
+import java.io.IOException;
+import java.io.FilterOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * 注册中心实现类
@@ -22,43 +40,87 @@ import java.util.stream.Collectors;
 @Slf4j
 public class RegistryManService implements RegistryService {
 
-    // 保存服务与实例元数据的映射
-    public final static MultiValueMap<String, InstanceMeta> REGISTRY = new LinkedMultiValueMap<>();
+    // 保存服务与实例列表快照的映射，每个服务的快照不可变，写入时按服务粒度替换
+    public final static Map<String, ServiceInstances> REGISTRY = new ConcurrentHashMap<>();
     // 保存服务及其变更后的版本（全局递增）
     public final static Map<String, Long> VERSIONS = new ConcurrentHashMap<>();
-    // 保存服务@实例与变更时间戳的映射
-    public final static Map<String, Long> TIMESTAMPS = new ConcurrentHashMap<>();
+    // 保存服务实例的租约与续约时间戳
+    public final static LeaseTable LEASES = new LeaseTable();
     // 注册中心整体的变更版本，全局递增
     public final static AtomicLong VERSION = new AtomicLong(0);
+    // 最近的变更日志，供Follower增量同步
+    public final static ReplicationLog CHANGES = new ReplicationLog(10_000);
+
+    // 服务版本变更监听器
+    private final static List<VersionListener> LISTENERS = new CopyOnWriteArrayList<>();
+    // 实例租约监听器
+    private final static List<LeaseListener> LEASE_LISTENERS = new CopyOnWriteArrayList<>();
+
+    // 注册/注销共享读锁，互不阻塞；快照与恢复需要整体一致的视图，独占写锁
+    private final static ReentrantReadWriteLock LOCK = new ReentrantReadWriteLock();
 
     /**
-     * 注册服务实例
+     * 注册服务实例，使用默认的租约超时时间
      *
      * @param service 服务名称
      * @param instance 服务实例元数据
      * @return 注册后的服务实例元数据
      */
     @Override
-    public synchronized InstanceMeta register(String service, InstanceMeta instance) {
-        List<InstanceMeta> metas = REGISTRY.get(service);
-        // 检查该服务是否已存在该实例
-        if (metas != null && !metas.isEmpty()) {
-            if (metas.contains(instance)) {
-                log.info(" ====> instance {} already registered", instance.toHttpUrl());
-                instance.setStatus(true);
-                return instance;
-            }
-        }
-        // 为新服务或实例进行注册
-        log.info(" ====> register instance {}", instance.toHttpUrl());
-        REGISTRY.add(service, instance);
-        instance.setStatus(true);
+    public InstanceMeta register(String service, InstanceMeta instance) {
+        return register(service, instance, 0);
+    }
 
-        // 更新实例注册时间
-        reNew(instance, service);
-        // 更新服务版本
-        VERSIONS.put(service, VERSION.incrementAndGet());
+    /**
+     * 注册服务实例。租约超时时间只在新注册时生效，已注册的实例保持原有的超时时间
+     *
+     * @param service 服务名称
+     * @param instance 服务实例元数据
+     * @param ttl 声明的租约超时时间(毫秒)，不大于0时使用默认值，超出服务端上下限时取上下限
+     * @return 注册后的服务实例元数据
+     */
+    @Override
+    public InstanceMeta register(String service, InstanceMeta instance, long ttl) {
+        long start = System.nanoTime();
+        ServiceInstances metas = REGISTRY.get(service);
+        ServiceInstances instances = null;
+        Allocation allocation = new Allocation();
+        LOCK.readLock().lock();
+        try {
+            // compute 只锁住该服务所在的槽位，不同服务之间的注册可以并行
+            instances = REGISTRY.compute(service, (key, current) -> {
+                if (current == null) {
+                    current = ServiceInstances.EMPTY;
+                }
+                // 检查该服务是否已存在该实例
+                if (current.contains(instance)) {
+                    log.info(" ====> instance {} already registered", instance.toHttpUrl());
+                    instance.setStatus(true);
+                    return current;
+                }
+                // 为新服务或实例进行注册
+                log.info(" ====> register instance {}", instance.toHttpUrl());
+                instance.setStatus(true);
 
+                // 更新实例注册时间与租约超时时间
+                long now = System.currentTimeMillis();
+                Lease lease = renew(service, instance, now, ttl);
+                RegistryMetrics.RENEWS.increment();
+                // 分配版本号并更新服务版本，变更在槽位锁之外写入日志
+                long version = allocation.allocate(
+                        new Change(0, Change.Op.REGISTER, service, instance, now, lease.getTtl()));
+                VERSIONS.put(service, version);
+                return current.add(instance, version);
+            });
+        } finally {
+            allocation.commit(instances != null);
+            LOCK.readLock().unlock();
+        }
+        // 新快照发布后再通知，保证监听方拿到版本号时已能查到对应的实例列表
+        if (instances != metas) {
+            fireVersionChanged(service, instances.getVersion());
+        }
+        RegistryMetrics.REGISTER.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         return instance;
     }
 
@@ -70,31 +132,198 @@ public class RegistryManService implements RegistryService {
      * @return 注销后的服务实例元数据，如果不存在则返回null
      */
     @Override
-    public synchronized InstanceMeta unregister(String service, InstanceMeta instance) {
-        List<InstanceMeta> metas = REGISTRY.get(service);
-        if (metas == null || metas.isEmpty()) {
+    public InstanceMeta unregister(String service, InstanceMeta instance) {
+        long start = System.nanoTime();
+        ServiceInstances metas = REGISTRY.get(service);
+        if (metas == null || metas.size() == 0) {
             return null;
         }
         log.info(" ====> unregister instance {}", instance.toHttpUrl());
-        metas.removeIf(m -> m.equals(instance));
+        ServiceInstances instances = null;
+        Allocation allocation = new Allocation();
+        LOCK.readLock().lock();
+        try {
+            instances = REGISTRY.computeIfPresent(service, (key, current) -> {
+                if (!current.contains(instance)) {
+                    return current;
+                }
+                // 分配版本号并更新服务版本，变更在槽位锁之外写入日志
+                long version = allocation.allocate(
+                        new Change(0, Change.Op.UNREGISTER, service, instance, System.currentTimeMillis(), 0));
+                VERSIONS.put(service, version);
+                return current.remove(instance, version);
+            });
+        } finally {
+            allocation.commit(instances != null);
+            LOCK.readLock().unlock();
+        }
+        if (instances != null && instances != metas) {
+            fireVersionChanged(service, instances.getVersion());
+        }
         instance.setStatus(false);
 
-        // 更新实例注销时间
-        reNew(instance, service);
-        // 更新服务版本
-        VERSIONS.put(service, VERSION.incrementAndGet());
-
+        // 实例已注销，租约随之结束
+        LEASES.release(service, instance);
+        RegistryMetrics.UNREGISTER.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         return instance;
     }
 
+    /**
+     * 批量注册、注销或续约服务实例。按服务分组，每个服务的所有操作在一次替换中完成，
+     * 有变更的服务只产生一个新版本，所有变更共享该版本号写入变更日志。
+     *
+     * @param items 批量操作列表
+     * @return 与操作一一对应的结果列表
+     */
+    @Override
+    public List<BatchResult> batch(List<BatchItem> items) {
+        long start = System.nanoTime();
+        BatchResult[] results = new BatchResult[items.size()];
+        // 按服务分组，保留请求中的顺序
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            BatchItem item = items.get(i);
+            if (item == null || item.getOp() == null || item.getService() == null || item.getInstance() == null) {
+                results[i] = new BatchResult(BatchResult.Result.INVALID, null, 0);
+                continue;
+            }
+            groups.computeIfAbsent(item.getService(), k -> new ArrayList<>()).add(i);
+        }
+        log.info(" ====> batch {} items of {} services", items.size(), groups.size());
+
+        Map<String, Long> changed = new LinkedHashMap<>();
+        LOCK.readLock().lock();
+        try {
+            groups.forEach((service, indexes) -> {
+                Allocation allocation = new Allocation();
+                ServiceInstances instances;
+                boolean replaced = false;
+                try {
+                    instances = REGISTRY.compute(service, (key, current) -> {
+                        ServiceInstances next = batch(service, current == null ? ServiceInstances.EMPTY : current,
+                                items, indexes, results, allocation);
+                        // 没有变更的未知服务不创建空条目
+                        return current == null && next == ServiceInstances.EMPTY ? null : next;
+                    });
+                    replaced = true;
+                } finally {
+                    allocation.commit(replaced);
+                }
+                if (results[indexes.get(0)].getVersion() == null) {
+                    // 服务没有发生变更
+                    indexes.forEach(i -> results[i].setVersion(VERSIONS.get(service)));
+                } else {
+                    changed.put(service, instances.getVersion());
+                }
+            });
+        } finally {
+            LOCK.readLock().unlock();
+        }
+        changed.forEach(RegistryManService::fireVersionChanged);
+        RegistryMetrics.BATCH.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        RegistryMetrics.BATCH_SIZE.record(items.size());
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 在一个服务上依次执行批量操作，返回新的实例列表快照。
+     */
+    private ServiceInstances batch(String service, ServiceInstances current,
+                                   List<BatchItem> items, List<Integer> indexes, BatchResult[] results,
+                                   Allocation allocation) {
+        // 工作副本，保持实例原有顺序
+        Map<InstanceMeta, InstanceMeta> working = new LinkedHashMap<>();
+        current.getInstances().forEach(instance -> working.put(instance, instance));
+        List<Change> changes = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i : indexes) {
+            BatchItem item = items.get(i);
+            InstanceMeta instance = item.getInstance();
+            BatchResult.Result result;
+            long ttl = 0;
+            switch (item.getOp()) {
+                case UNREGISTER -> {
+                    if (working.remove(instance) != null) {
+                        instance.setStatus(false);
+                        LEASES.release(service, instance);
+                        changes.add(new Change(0, Change.Op.UNREGISTER, service, instance, now, 0));
+                        result = BatchResult.Result.UNREGISTERED;
+                    } else {
+                        result = BatchResult.Result.ABSENT;
+                    }
+                }
+                case UPSERT, REGISTER -> {
+                    if (working.containsKey(instance)) {
+                        instance.setStatus(true);
+                        if (item.getOp() == BatchItem.Op.UPSERT) {
+                            ttl = renew(service, instance, now, 0).getTtl();
+                            RegistryMetrics.RENEWS.increment();
+                            result = BatchResult.Result.RENEWED;
+                        } else {
+                            Long granted = LEASES.ttl(service, instance);
+                            ttl = granted == null ? 0 : granted;
+                            result = BatchResult.Result.EXISTED;
+                        }
+                    } else {
+                        instance.setStatus(true);
+                        working.put(instance, instance);
+                        ttl = renew(service, instance, now, item.getTtl()).getTtl();
+                        RegistryMetrics.RENEWS.increment();
+                        changes.add(new Change(0, Change.Op.REGISTER, service, instance, now, ttl));
+                        result = BatchResult.Result.REGISTERED;
+                    }
+                }
+                case RENEW -> {
+                    ttl = renew(service, instance, now, 0).getTtl();
+                    RegistryMetrics.RENEWS.increment();
+                    result = BatchResult.Result.RENEWED;
+                }
+                default -> result = BatchResult.Result.INVALID;
+            }
+            results[i] = new BatchResult(result, null, now, ttl);
+        }
+        if (changes.isEmpty()) {
+            return current;
+        }
+        // 分配版本号并更新服务版本，同一服务的所有变更共享一个版本号，在槽位锁之外写入日志
+        long version = allocation.allocate(changes.toArray(new Change[0]));
+        VERSIONS.put(service, version);
+        indexes.forEach(i -> results[i].setVersion(version));
+        return ServiceInstances.of(new ArrayList<>(working.values()), version);
+    }
+
     /**
      * 获取指定服务的所有实例元数据
      *
      * @param service 服务名称
-     * @return 该服务的所有实例元数据列表
+     * @return 该服务的所有实例元数据列表(只读)
      */
     @Override
     public List<InstanceMeta> getAllInstances(String service) {
+        ServiceInstances instances = REGISTRY.get(service);
+        return instances == null ? null : instances.getInstances();
+    }
+
+    /**
+     * 获取指定服务中参数全部匹配的实例，由服务快照中的参数倒排索引直接得出，不需要遍历全部实例
+     *
+     * @param service 服务名称
+     * @param parameters 参数条件，为空时返回全部实例
+     * @return 匹配的实例列表(只读)，服务不存在时返回null
+     */
+    @Override
+    public List<InstanceMeta> findInstances(String service, Map<String, String> parameters) {
+        ServiceInstances instances = REGISTRY.get(service);
+        return instances == null ? null : instances.select(parameters);
+    }
+
+    /**
+     * 获取指定服务当前版本的实例列表快照
+     *
+     * @param service 服务名称
+     * @return 实例列表快照，服务不存在时返回null
+     */
+    public static ServiceInstances instances(String service) {
         return REGISTRY.get(service);
     }
 
@@ -105,14 +334,37 @@ public class RegistryManService implements RegistryService {
      * @param services 受影响的服务名称集合
      * @return 当前系统时间戳
      */
-    public synchronized long reNew(InstanceMeta instance, String... services) {
+    public long reNew(InstanceMeta instance, String... services) {
         long now = System.currentTimeMillis();
         for (String service : services) {
-            TIMESTAMPS.put(service + "@" + instance.toHttpUrl(), now);
+            renew(service, instance, now, 0);
         }
+        RegistryMetrics.RENEWS.increment(services.length);
         return now;
     }
 
+    /**
+     * 续约服务实例，租约不存在时创建；声明了超时时间(新注册的实例)时同时更新租约的超时时间
+     *
+     * @return 续约后的租约
+     */
+    private static Lease renew(String service, InstanceMeta instance, long now, long ttl) {
+        Lease lease = ttl > 0 ? null : LEASES.renew(service, instance, now);
+        while (lease == null) {
+            Lease created = LEASES.create(service, instance, now, ttl);
+            if (created != null) {
+                // 新的租约，通知监听器安排到期检查
+                for (LeaseListener listener : LEASE_LISTENERS) {
+                    listener.onLeaseCreated(created, now);
+                }
+                return created;
+            }
+            // 租约已存在(已续约)，取出已有的租约；期间被释放时重新创建
+            lease = LEASES.renew(service, instance, now);
+        }
+        return lease;
+    }
+
     /**
      * 获取指定服务的当前版本号
      *
@@ -127,11 +379,18 @@ public class RegistryManService implements RegistryService {
      * 获取多个服务的当前版本号
      *
      * @param services 服务名称集合
-     * @return 服务名称与版本号的映射关系
+     * @return 服务名称与版本号的映射关系，尚未注册过的服务不包含在内
      */
     public Map<String, Long> versions(String... services) {
-        return Arrays.stream(services)
-                .collect(Collectors.toMap(x -> x, VERSIONS::get, (a, b) -> b));
+        Map<String, Long> versions = new HashMap<>();
+        for (String service : services) {
+            // Follower 尚未同步到的服务没有版本号
+            Long version = VERSIONS.get(service);
+            if (version != null) {
+                versions.put(service, version);
+            }
+        }
+        return versions;
     }
 
     /**
@@ -139,13 +398,58 @@ public class RegistryManService implements RegistryService {
      *
      * @return 注册中心的快照实例
      */
-    public static synchronized Snapshot snapshot() {
-        // 复制当前注册中心的数据到快照
-        LinkedMultiValueMap<String, InstanceMeta> registry = new LinkedMultiValueMap<>();
-        registry.addAll(REGISTRY);
-        Map<String, Long> versions = new ConcurrentHashMap<>(VERSIONS);
-        Map<String, Long> timestamps = new ConcurrentHashMap<>(TIMESTAMPS);
-        return new Snapshot(registry, versions, timestamps, VERSION.get());
+    public static Snapshot snapshot() {
+        LOCK.writeLock().lock();
+        try {
+            // 复制当前注册中心的数据到快照
+            LinkedMultiValueMap<String, InstanceMeta> registry = new LinkedMultiValueMap<>();
+            REGISTRY.forEach((service, instances) ->
+                    registry.put(service, new ArrayList<>(instances.getInstances())));
+            Map<String, Long> versions = new ConcurrentHashMap<>(VERSIONS);
+            Map<String, Long> timestamps = new ConcurrentHashMap<>();
+            Map<String, Long> ttls = new ConcurrentHashMap<>();
+            LEASES.forEach(lease -> {
+                timestamps.put(lease.key(), LEASES.timestamp(lease));
+                ttls.put(lease.key(), lease.getTtl());
+            });
+            return new Snapshot(registry, versions, timestamps, ttls, VERSION.get());
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 将当前注册中心数据以二进制快照格式直接写入输出流。
+     * 持锁期间只复制各服务实例列表快照的引用(实例列表本身不可变)，编码与写出在锁外进行，
+     * 不会在内存中拼出完整快照。
+     *
+     * @param out 输出流，不会被关闭
+     * @param compress 是否使用GZIP压缩
+     * @throws IOException 写入失败时抛出
+     */
+    public static void writeSnapshot(OutputStream out, boolean compress) throws IOException {
+        Map<String, ServiceInstances> registry;
+        Map<String, Long> versions;
+        long version;
+        LOCK.writeLock().lock();
+        try {
+            registry = new LinkedHashMap<>(REGISTRY);
+            versions = new HashMap<>(VERSIONS);
+            version = VERSION.get();
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+        CountingOutputStream counting = new CountingOutputStream(out);
+        SnapshotCodec.Encoder encoder = SnapshotCodec.encoder(counting, compress, version, versions, registry.size());
+        for (Map.Entry<String, ServiceInstances> entry : registry.entrySet()) {
+            String service = entry.getKey();
+            // 租约时间戳在写出时读取，可能比引用复制时更新，不影响一致性
+            encoder.writeService(service, entry.getValue().getInstances(),
+                    instance -> LEASES.timestamp(service, instance),
+                    instance -> LEASES.ttl(service, instance));
+        }
+        encoder.finish();
+        RegistryMetrics.SNAPSHOT_SIZE.record(counting.count);
     }
 
     /**
@@ -154,18 +458,283 @@ public class RegistryManService implements RegistryService {
      * @param snapshot 注册中心的快照实例
      * @return 恢复后的版本号
      */
-    public static synchronized long restore(Snapshot snapshot) {
-        // 使用Leader快照数据恢复注册中心数据
-        REGISTRY.clear();
-        REGISTRY.addAll(snapshot.getREGISTRY());
+    public static long restore(Snapshot snapshot) {
+        // 逐个服务替换，持写锁只移除快照中不存在的服务
+        Restorer restorer = new Restorer();
+        restorer.begin(snapshot.getVersion(), snapshot.getVERSIONS());
+        Map<String, Long> timestamps = snapshot.getTIMESTAMPS();
+        Map<String, Long> ttls = snapshot.getTTLS() == null ? Map.of() : snapshot.getTTLS();
+        snapshot.getREGISTRY().forEach((service, instances) -> {
+            // fastjson 反序列化快照时无法识别 MultiValueMap 的泛型, 元素可能是 JSONObject, 需要逐个转换
+            List<InstanceMeta> metas = new ArrayList<>(instances.size());
+            long[] leases = new long[instances.size()];
+            long[] leaseTtls = new long[instances.size()];
+            for (Object instance : (List<?>) instances) {
+                InstanceMeta meta = instance instanceof InstanceMeta m
+                        ? m : TypeUtils.castToJavaBean(instance, InstanceMeta.class);
+                String key = service + "@" + meta.toHttpUrl();
+                Long timestamp = timestamps.get(key);
+                Long ttl = ttls.get(key);
+                leases[metas.size()] = timestamp == null ? -1 : timestamp;
+                leaseTtls[metas.size()] = ttl == null ? 0 : ttl;
+                metas.add(meta);
+            }
+            restorer.service(service, metas, leases, leaseTtls);
+        });
+        LOCK.writeLock().lock();
+        try {
+            restorer.finish();
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+        restorer.fireChanges();
+        return snapshot.getVersion();
+    }
 
-        VERSIONS.clear();
-        VERSIONS.putAll(snapshot.getVERSIONS());
+    /**
+     * 从二进制快照流恢复注册中心数据。输入通常是 Leader 的HTTP响应体，边读取边解码，
+     * 每解码出一个服务就替换该服务的实例列表与租约，不在内存中保留整个快照，注册表再大占用的内存也有上限。
+     * 读取网络期间不持写锁，最后持写锁移除快照中不存在的服务并重置版本号，期间的注册、续约不会等待网络传输。
+     *
+     * @param in 二进制快照输入流
+     * @return 恢复后的版本号
+     * @throws IOException 读取失败或格式错误时抛出
+     */
+    public static long restore(InputStream in) throws IOException {
+        Restorer restorer = new Restorer();
+        long version = SnapshotCodec.decode(in, restorer);
+        LOCK.writeLock().lock();
+        try {
+            restorer.finish();
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+        restorer.fireChanges();
+        return version;
+    }
+
+    /**
+     * 获取指定版本之后的变更，供Follower增量同步
+     *
+     * @param since 起始版本号(不包含)
+     * @param limit 最多返回的变更条数
+     * @return 增量变更集合
+     */
+    public static ChangeSet changes(long since, int limit) {
+        return CHANGES.since(since, limit);
+    }
 
-        TIMESTAMPS.clear();
-        TIMESTAMPS.putAll(snapshot.getTIMESTAMPS());
+    /**
+     * 回放Leader的增量变更，版本号沿用Leader分配的版本号
+     *
+     * @param changeSet 增量变更集合
+     * @return 回放后的版本号
+     */
+    public static long apply(ChangeSet changeSet) {
+        Map<String, Long> changed = new LinkedHashMap<>();
+        LOCK.writeLock().lock();
+        try {
+            long applied = VERSION.get();
+            for (Change change : changeSet.getChanges()) {
+                if (change.getVersion() <= applied) {
+                    continue; // 已经回放过的变更
+                }
+                String service = change.getService();
+                InstanceMeta instance = change.getInstance();
+                long version = change.getVersion();
+                REGISTRY.compute(service, (key, current) -> {
+                    if (current == null) {
+                        current = ServiceInstances.EMPTY;
+                    }
+                    if (change.getOp() == Change.Op.REGISTER) {
+                        instance.setStatus(true);
+                        return current.remove(instance, version).add(instance, version);
+                    }
+                    return current.remove(instance, version);
+                });
+                if (change.getOp() == Change.Op.REGISTER) {
+                    LEASES.create(service, instance, change.getTimestamp(), change.getTtl());
+                } else {
+                    LEASES.release(service, instance);
+                }
+                VERSIONS.put(service, version);
+                VERSION.set(version);
+                CHANGES.replicate(List.of(change));
+                changed.put(service, version);
+            }
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+        changed.forEach(RegistryManService::fireVersionChanged);
+        return VERSION.get();
+    }
 
-        VERSION.set(snapshot.getVersion());
-        return snapshot.getVersion();
+    /**
+     * 添加服务版本变更监听器
+     *
+     * @param listener 版本变更监听器
+     */
+    public static void addListener(VersionListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * 移除服务版本变更监听器
+     *
+     * @param listener 版本变更监听器
+     */
+    public static void removeListener(VersionListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * 添加实例租约监听器
+     *
+     * @param listener 租约监听器
+     */
+    public static void addLeaseListener(LeaseListener listener) {
+        LEASE_LISTENERS.add(listener);
+    }
+
+    /**
+     * 移除实例租约监听器
+     *
+     * @param listener 租约监听器
+     */
+    public static void removeLeaseListener(LeaseListener listener) {
+        LEASE_LISTENERS.remove(listener);
+    }
+
+    private static void fireVersionChanged(String service, long version) {
+        for (VersionListener listener : LISTENERS) {
+            try {
+                listener.onVersionChanged(service, version);
+            } catch (RuntimeException ex) {
+                log.warn(" ====> version listener {} failed", listener, ex);
+            }
+        }
+    }
+
+    /**
+     * 在 compute 中为服务的变更分配的版本号。compute 持有该服务所在槽位的锁，只在其中无锁地递增全局版本号，
+     * 写入变更日志(以及持久化)在 compute 返回、释放槽位锁之后进行，由 {@link ReplicationLog} 保证按版本号顺序追加。
+     */
+    private static final class Allocation {
+        long version;
+        Change[] changes;
+
+        long allocate(Change... changes) {
+            this.version = VERSION.incrementAndGet();
+            this.changes = changes;
+            return version;
+        }
+
+        /**
+         * 追加分配的版本号的变更，需要在释放读锁之前调用，快照持有写锁时日志与注册表一致。
+         *
+         * @param replaced 服务快照是否已替换，替换失败时只追加空的版本号，不记录变更。
+         */
+        void commit(boolean replaced) {
+            if (version > 0) {
+                CHANGES.append(version, replaced ? changes : new Change[0]);
+            }
+        }
+    }
+
+    /**
+     * 按服务恢复快照数据：每解码出一个服务就持读锁替换该服务的实例列表与租约，不暂存整个注册表，
+     * 恢复期间占用的内存与单个服务的大小相当。finish 持写锁移除快照中不存在的服务并重置版本号与变更日志，
+     * 通知在锁外调用。恢复中途失败时已替换的服务保留快照中的数据，全局版本号不变，下次同步会补齐。
+     */
+    private static final class Restorer implements SnapshotCodec.Sink {
+
+        final Map<String, Long> previous = new HashMap<>();  // 恢复前各服务的版本
+        final Set<String> restored = new HashSet<>();        // 快照中的服务
+        Map<String, Long> versions = Map.of();
+        long version;
+
+        @Override
+        public void begin(long version, Map<String, Long> versions) {
+            this.version = version;
+            this.versions = versions;
+            previous.putAll(VERSIONS);
+        }
+
+        @Override
+        public void service(String service, List<InstanceMeta> instances, long[] leases, long[] ttls) {
+            Long version = versions.get(service);
+            ServiceInstances snapshot = ServiceInstances.of(instances, version == null ? 0 : version);
+            LOCK.readLock().lock();
+            try {
+                REGISTRY.compute(service, (key, current) -> {
+                    // 替换实例列表时一并替换该服务的租约，快照中没有时间戳的实例不创建租约
+                    if (current != null) {
+                        current.getInstances().forEach(instance -> LEASES.release(service, instance));
+                    }
+                    for (int i = 0; i < instances.size(); i++) {
+                        if (leases[i] >= 0) {
+                            LEASES.create(service, instances.get(i), leases[i], ttls[i]);
+                        }
+                    }
+                    return snapshot;
+                });
+                if (version != null) {
+                    VERSIONS.put(service, version);
+                }
+            } finally {
+                LOCK.readLock().unlock();
+            }
+            restored.add(service);
+        }
+
+        /**
+         * 移除快照中不存在的服务，重置版本号与变更日志，需要持有写锁调用。
+         */
+        void finish() {
+            REGISTRY.entrySet().removeIf(entry -> {
+                if (restored.contains(entry.getKey())) {
+                    return false;
+                }
+                entry.getValue().getInstances().forEach(instance -> LEASES.release(entry.getKey(), instance));
+                return true;
+            });
+            VERSIONS.keySet().retainAll(versions.keySet());
+            VERSIONS.putAll(versions);
+            VERSION.set(version);
+            // 快照之前的变更已无法补齐，从快照版本重新开始记录
+            CHANGES.reset(version);
+        }
+
+        void fireChanges() {
+            // 只通知版本发生变化的服务
+            versions.forEach((service, version) -> {
+                if (!version.equals(previous.get(service))) {
+                    fireVersionChanged(service, version);
+                }
+            });
+        }
+    }
+
+    /**
+     * 统计写出字节数的输出流，用于记录快照大小。
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
     }
 }
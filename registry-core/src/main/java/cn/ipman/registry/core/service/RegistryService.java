@@ -1,5 +1,7 @@
 package cn.ipman.registry.core.service;
 
+import cn.ipman.registry.core.model.BatchItem;
+import cn.ipman.registry.core.model.BatchResult;
 import cn.ipman.registry.core.model.InstanceMeta;
 
 import java.util.List;
@@ -23,6 +25,16 @@ public interface RegistryService {
      */
     InstanceMeta register(String service, InstanceMeta instance);
 
+    /**
+     * 注册一个服务实例，并声明其租约超时时间。
+     *
+     * @param service 服务名称。
+     * @param instance 待注册的服务实例元数据。
+     * @param ttl 租约超时时间(毫秒)，不大于0时使用服务端默认值，超出服务端允许的范围时取边界值。
+     * @return 注册成功返回服务实例的元数据。
+     */
+    InstanceMeta register(String service, InstanceMeta instance, long ttl);
+
     /**
      * 注销一个服务实例。
      *
@@ -32,6 +44,14 @@ public interface RegistryService {
      */
     InstanceMeta unregister(String service, InstanceMeta instance);
 
+    /**
+     * 批量注册、注销或续约服务实例。同一服务的所有操作一次完成，只产生一个新版本。
+     *
+     * @param items 批量操作列表。
+     * @return 与操作一一对应的结果列表。
+     */
+    List<BatchResult> batch(List<BatchItem> items);
+
     /**
      * 获取指定服务的所有实例元数据列表。
      *
@@ -40,6 +60,15 @@ public interface RegistryService {
      */
     List<InstanceMeta> getAllInstances(String service);
 
+    /**
+     * 获取指定服务中参数全部匹配的实例列表，如机房、灰度标记等。
+     *
+     * @param service 服务名称。
+     * @param parameters 参数条件，为空时返回全部实例。
+     * @return 返回匹配的实例列表，服务不存在时返回null。
+     */
+    List<InstanceMeta> findInstances(String service, Map<String, String> parameters);
+
     /**
      * 刷新一个服务实例的状态。
      *
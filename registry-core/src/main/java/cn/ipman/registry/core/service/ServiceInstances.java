@@ -0,0 +1,223 @@
+package cn.ipman.registry.core.service;
+
+import cn.ipman.registry.core.model.InstanceMeta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单个服务的实例列表快照，不可变且带版本号。
+ * 每次注册/注销都会基于旧快照复制出一个新快照(copy-on-write)，读操作直接拿到当前引用即可，无需加锁。
+ * 快照同时维护实例参数的倒排索引(参数键值 -> 实例)，注册/注销时只复制受影响的索引项，
+ * 按参数过滤查询时的开销只与命中的实例数相关。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 10:12
+ */
+public final class ServiceInstances {
+
+    // 空实例列表，用于服务首次注册
+    static final ServiceInstances EMPTY = new ServiceInstances(new InstanceMeta[0], Map.of(), 0);
+
+    private final InstanceMeta[] instances; // 实例数组，发布后不再修改
+    private final Map<String, InstanceMeta[]> index; // 参数倒排索引，"key=value" -> 实例，按注册顺序排列，发布后不再修改
+    private final long version;             // 产生该快照时的全局版本号
+    private final List<InstanceMeta> view;  // 对外暴露的只读视图
+
+    /**
+     * 构造实例列表快照。
+     *
+     * @param instances 实例数组，调用方需保证之后不再修改该数组。
+     * @param index 参数倒排索引，调用方需保证之后不再修改。
+     * @param version 快照对应的版本号。
+     */
+    private ServiceInstances(InstanceMeta[] instances, Map<String, InstanceMeta[]> index, long version) {
+        this.instances = instances;
+        this.index = index;
+        this.version = version;
+        this.view = Collections.unmodifiableList(Arrays.asList(instances));
+    }
+
+    /**
+     * 根据实例列表创建快照，会复制一份列表内容并重建参数索引。
+     *
+     * @param instances 实例列表。
+     * @param version 快照对应的版本号。
+     * @return 实例列表快照。
+     */
+    static ServiceInstances of(List<InstanceMeta> instances, long version) {
+        Map<String, List<InstanceMeta>> postings = new HashMap<>();
+        for (InstanceMeta instance : instances) {
+            for (String term : terms(instance)) {
+                postings.computeIfAbsent(term, k -> new ArrayList<>()).add(instance);
+            }
+        }
+        Map<String, InstanceMeta[]> index = new HashMap<>(postings.size() * 2);
+        postings.forEach((term, posting) -> index.put(term, posting.toArray(new InstanceMeta[0])));
+        return new ServiceInstances(instances.toArray(new InstanceMeta[0]), index, version);
+    }
+
+    /**
+     * @return 只读的实例列表，可安全地交给序列化框架使用。
+     */
+    public List<InstanceMeta> getInstances() {
+        return view;
+    }
+
+    /**
+     * @return 产生该快照时的全局版本号。
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return 实例数量。
+     */
+    public int size() {
+        return instances.length;
+    }
+
+    /**
+     * 判断快照中是否包含指定实例。
+     *
+     * @param instance 服务实例元数据。
+     * @return 包含返回true，否则返回false。
+     */
+    public boolean contains(InstanceMeta instance) {
+        return indexOf(instance) >= 0;
+    }
+
+    /**
+     * 按实例参数过滤，返回所有参数都匹配的实例。从命中最少的索引项开始，逐个校验其余条件，
+     * 开销与最短的索引项长度相关，与服务的实例总数无关。
+     *
+     * @param parameters 参数条件，为空时返回全部实例。
+     * @return 只读的匹配实例列表，按注册顺序排列。
+     */
+    public List<InstanceMeta> select(Map<String, String> parameters) {
+        if (parameters == null || parameters.isEmpty()) {
+            return view;
+        }
+        InstanceMeta[] candidates = null;
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            InstanceMeta[] posting = index.get(term(parameter.getKey(), parameter.getValue()));
+            if (posting == null) {
+                return List.of();
+            }
+            if (candidates == null || posting.length < candidates.length) {
+                candidates = posting;
+            }
+        }
+        if (parameters.size() == 1) {
+            return Collections.unmodifiableList(Arrays.asList(candidates));
+        }
+        List<InstanceMeta> matched = new ArrayList<>(candidates.length);
+        for (InstanceMeta candidate : candidates) {
+            if (candidate.getParameters().entrySet().containsAll(parameters.entrySet())) {
+                matched.add(candidate);
+            }
+        }
+        return Collections.unmodifiableList(matched);
+    }
+
+    /**
+     * 追加一个实例，返回新的快照。
+     *
+     * @param instance 待追加的服务实例。
+     * @param version 新快照的版本号。
+     * @return 新的实例列表快照。
+     */
+    ServiceInstances add(InstanceMeta instance, long version) {
+        InstanceMeta[] copy = Arrays.copyOf(instances, instances.length + 1);
+        copy[instances.length] = instance;
+        Map<String, InstanceMeta[]> next = index;
+        List<String> terms = terms(instance);
+        if (!terms.isEmpty()) {
+            next = new HashMap<>(index);
+            for (String term : terms) {
+                InstanceMeta[] posting = next.get(term);
+                if (posting == null) {
+                    next.put(term, new InstanceMeta[]{instance});
+                } else {
+                    InstanceMeta[] appended = Arrays.copyOf(posting, posting.length + 1);
+                    appended[posting.length] = instance;
+                    next.put(term, appended);
+                }
+            }
+        }
+        return new ServiceInstances(copy, next, version);
+    }
+
+    /**
+     * 移除一个实例，返回新的快照；实例不存在时返回当前快照本身。
+     *
+     * @param instance 待移除的服务实例。
+     * @param version 新快照的版本号。
+     * @return 新的实例列表快照。
+     */
+    ServiceInstances remove(InstanceMeta instance, long version) {
+        int index = indexOf(instance);
+        if (index < 0) {
+            return this;
+        }
+        InstanceMeta[] copy = new InstanceMeta[instances.length - 1];
+        System.arraycopy(instances, 0, copy, 0, index);
+        System.arraycopy(instances, index + 1, copy, index, instances.length - index - 1);
+        // 按快照中保存的实例移除索引，调用方传入的实例可能不带参数
+        Map<String, InstanceMeta[]> next = this.index;
+        List<String> terms = terms(instances[index]);
+        if (!terms.isEmpty()) {
+            next = new HashMap<>(this.index);
+            for (String term : terms) {
+                InstanceMeta[] posting = next.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                if (posting.length == 1) {
+                    next.remove(term);
+                } else {
+                    InstanceMeta[] removed = new InstanceMeta[posting.length - 1];
+                    int j = 0;
+                    for (InstanceMeta meta : posting) {
+                        if (meta != instances[index] && j < removed.length) {
+                            removed[j++] = meta;
+                        }
+                    }
+                    next.put(term, removed);
+                }
+            }
+        }
+        return new ServiceInstances(copy, next, version);
+    }
+
+    /**
+     * 实例参数对应的索引项，每个参数一项。
+     */
+    private static List<String> terms(InstanceMeta instance) {
+        Map<String, String> parameters = instance.getParameters();
+        if (parameters == null || parameters.isEmpty()) {
+            return List.of();
+        }
+        List<String> terms = new ArrayList<>(parameters.size());
+        parameters.forEach((key, value) -> terms.add(term(key, value)));
+        return terms;
+    }
+
+    private static String term(String key, String value) {
+        return key + "=" + value;
+    }
+
+    private int indexOf(InstanceMeta instance) {
+        for (int i = 0; i < instances.length; i++) {
+            if (instances[i].equals(instance)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
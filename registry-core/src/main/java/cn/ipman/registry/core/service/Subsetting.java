@@ -0,0 +1,114 @@
+package cn.ipman.registry.core.service;
+
+import cn.ipman.registry.core.model.InstanceMeta;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * 确定性子集划分。实例数很多的服务，每个消费者只需要连接其中一部分实例，
+ * 按客户端标识与子集大小从实例列表中选出稳定且均衡的子集：
+ * <ul>
+ *     <li>实例列表能切成 实例数/子集大小 个子集，连续的这么多个客户端为一轮；</li>
+ *     <li>每轮使用以轮次为种子的洗牌顺序，同一轮的客户端分到互不重叠的子集，每个实例恰好被一个客户端使用；</li>
+ *     <li>不同轮次的洗牌顺序不同，除不尽时剩下的实例在其它轮次中会被用到。</li>
+ * </ul>
+ * 客户端标识为非负整数(如实例序号)时直接作为客户端编号，连续编号的客户端可以得到严格均衡的负载；
+ * 其它标识按哈希映射为编号，负载在统计意义上均衡。
+ * 同一服务版本、同一客户端标识与子集大小，在任何节点上得到的子集都相同。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 22:05
+ */
+public final class Subsetting {
+
+    private Subsetting() {
+    }
+
+    /**
+     * 选出客户端使用的实例子集。
+     *
+     * @param instances 服务的实例列表。
+     * @param client 客户端标识。
+     * @param size 子集大小。
+     * @return 只读的实例子集；实例数不超过子集大小时返回全部实例。
+     */
+    public static List<InstanceMeta> subset(List<InstanceMeta> instances, String client, int size) {
+        if (size <= 0 || instances.size() <= size) {
+            return instances;
+        }
+        long id = clientId(client);
+        int subsetCount = instances.size() / size;
+        long round = id / subsetCount;
+        int subsetId = (int) (id % subsetCount);
+
+        List<InstanceMeta> ordered = sortByUrl(instances);
+        // java.util.Random 的算法是规范的一部分，不同JVM上的洗牌结果一致
+        Collections.shuffle(ordered, new Random(round));
+        int start = subsetId * size;
+        return Collections.unmodifiableList(new ArrayList<>(ordered.subList(start, start + size)));
+    }
+
+    /**
+     * 洗牌前先按地址排序，子集不受实例注册顺序影响。
+     * 地址由 toHttpUrl 格式化得到，排序前每个实例只计算一次，而不是每次比较都重新格式化。
+     */
+    static List<InstanceMeta> sortByUrl(List<InstanceMeta> instances) {
+        int n = instances.size();
+        String[] urls = new String[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            urls[i] = instances.get(i).toHttpUrl();
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(i -> urls[i]));
+        List<InstanceMeta> ordered = new ArrayList<>(n);
+        for (int i : order) {
+            ordered.add(instances.get(i));
+        }
+        return ordered;
+    }
+
+    /**
+     * 子集的标识，标识相同的客户端得到相同的子集，可用作缓存键。
+     *
+     * @param instances 服务的实例数。
+     * @param client 客户端标识。
+     * @param size 子集大小。
+     * @return 由子集大小、轮次与子集序号组成的标识。
+     */
+    public static String key(int instances, String client, int size) {
+        if (size <= 0 || instances <= size) {
+            return "all";
+        }
+        long id = clientId(client);
+        int subsetCount = instances / size;
+        return size + ":" + id / subsetCount + ":" + id % subsetCount;
+    }
+
+    /**
+     * 客户端标识对应的编号，非负整数直接使用，其余取 CRC32。
+     *
+     * @param client 客户端标识。
+     * @return 非负的客户端编号。
+     */
+    static long clientId(String client) {
+        try {
+            long id = Long.parseLong(client);
+            if (id >= 0) {
+                return id;
+            }
+        } catch (NumberFormatException ignored) {
+            // 非数字标识
+        }
+        CRC32 crc = new CRC32();
+        crc.update(client.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
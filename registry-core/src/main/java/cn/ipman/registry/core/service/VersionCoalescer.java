@@ -0,0 +1,279 @@
+package cn.ipman.registry.core.service;
+
+import cn.ipman.registry.core.cluster.Cluster;
+import cn.ipman.registry.core.model.BatchItem;
+import cn.ipman.registry.core.model.BatchResult;
+import cn.ipman.registry.core.model.InstanceMeta;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leader 的写操作合并器。每次注册、注销都会产生一个新的服务版本，滚动发布几百个实例时，
+ * 消费方会看到同样多次的版本变化，每次都重新拉取实例列表，Follower 也逐条同步。
+ * <p>
+ * 开启合并窗口(registry.coalesce-window)后，会改变服务实例列表的写操作不立即执行，
+ * 按服务暂存：服务的第一个写操作到达时开始计时，窗口结束时该服务暂存的所有写操作在一次
+ * {@link RegistryService#batch} 中完成，只发布一个新版本，之后才返回各自的结果。
+ * 写操作的响应因此最多延迟一个窗口，返回时变更已经发布，可以立即查到。
+ * <p>
+ * 不会改变实例列表的操作(续约、已注册实例的重复注册)不等待窗口，直接执行；
+ * 但服务已有暂存或正在发布的写操作时，该服务之后的所有操作都排在后面，保持同一服务内的执行顺序。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 06:15
+ */
+@Slf4j
+public class VersionCoalescer {
+
+    final RegistryService registryService;
+    final Cluster cluster;
+
+    // 合并窗口(毫秒)，不大于0时不合并，写操作直接执行
+    final long window;
+
+    // 服务 -> 等待窗口结束的写操作，按到达顺序排列
+    final Map<String, List<Pending>> pending = new HashMap<>();
+
+    ScheduledExecutorService executor;
+
+    /**
+     * @param registryService 注册服务，窗口结束时执行暂存的写操作。
+     * @param cluster 注册中心集群，窗口结束时本节点已不是 Leader 的写操作以失败结束。
+     * @param window 合并窗口(毫秒)，不大于0时不合并。
+     */
+    public VersionCoalescer(RegistryService registryService, Cluster cluster, long window) {
+        this.registryService = registryService;
+        this.cluster = cluster;
+        this.window = window;
+    }
+
+    /**
+     * 启动窗口计时线程，未开启合并时不创建。
+     */
+    public void start() {
+        if (window <= 0) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "registry-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info(" ====> coalesce writes of each service within {}ms", window);
+    }
+
+    /**
+     * 停止窗口计时线程，尚未执行的写操作以失败结束。
+     */
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        List<Pending> rest = new ArrayList<>();
+        synchronized (pending) {
+            pending.values().forEach(rest::addAll);
+            pending.clear();
+        }
+        fail(rest, new IllegalStateException("coalescer stopped"));
+    }
+
+    /**
+     * 注册服务实例。
+     *
+     * @param service 服务名称。
+     * @param instance 服务实例元数据。
+     * @param ttl 声明的租约超时时间(毫秒)，不大于0时使用默认值。
+     * @return 注册后的服务实例元数据的Future，变更发布后完成。
+     */
+    public CompletableFuture<InstanceMeta> register(String service, InstanceMeta instance, long ttl) {
+        if (window <= 0) {
+            return CompletableFuture.completedFuture(registryService.register(service, instance, ttl));
+        }
+        return submit(new BatchItem(BatchItem.Op.REGISTER, service, instance, ttl)).thenApply(result -> instance);
+    }
+
+    /**
+     * 注销服务实例。
+     *
+     * @param service 服务名称。
+     * @param instance 服务实例元数据。
+     * @return 注销后的服务实例元数据的Future，实例不存在时结果为null。
+     */
+    public CompletableFuture<InstanceMeta> unregister(String service, InstanceMeta instance) {
+        if (window <= 0) {
+            return CompletableFuture.completedFuture(registryService.unregister(service, instance));
+        }
+        return submit(new BatchItem(BatchItem.Op.UNREGISTER, service, instance))
+                .thenApply(result -> result.getResult() == BatchResult.Result.UNREGISTERED ? instance : null);
+    }
+
+    /**
+     * 批量注册、注销或续约服务实例。不需要等待窗口的操作合并成一次批量操作立即执行；
+     * 请求中某个服务的一个操作需要等待窗口后，该服务之后的操作都排在它后面。
+     *
+     * @param items 批量操作列表。
+     * @return 与操作一一对应的结果列表的Future。
+     */
+    public CompletableFuture<List<BatchResult>> batch(List<BatchItem> items) {
+        if (window <= 0) {
+            return CompletableFuture.completedFuture(registryService.batch(items));
+        }
+        BatchResult[] results = new BatchResult[items.size()];
+        Pending[] deferred = new Pending[items.size()];
+        List<Integer> direct = new ArrayList<>();
+        Set<String> deferring = new HashSet<>();
+        List<String> created = new ArrayList<>();
+        List<CompletableFuture<BatchResult>> futures = new ArrayList<>();
+        synchronized (pending) {
+            for (int i = 0; i < items.size(); i++) {
+                BatchItem item = items.get(i);
+                if (defers(item, deferring)) {
+                    // 在同一个同步块中暂存，之后到达的同一服务的操作都排在后面
+                    deferring.add(item.getService());
+                    deferred[i] = new Pending(item, new CompletableFuture<>());
+                    futures.add(deferred[i].future);
+                    if (enqueue(deferred[i])) {
+                        created.add(item.getService());
+                    }
+                } else {
+                    direct.add(i);
+                }
+            }
+        }
+        // 直接执行的操作不改变实例列表，排在该服务暂存的操作之前：
+        // 请求中有直接执行操作的服务，暂存列表都是本次新建的，直接执行完成后才开始窗口计时
+        try {
+            if (!direct.isEmpty()) {
+                List<BatchResult> executed = registryService.batch(direct.stream().map(items::get).toList());
+                for (int i = 0; i < direct.size(); i++) {
+                    results[direct.get(i)] = executed.get(i);
+                }
+            }
+        } finally {
+            created.forEach(service -> executor.schedule(() -> flush(service), window, TimeUnit.MILLISECONDS));
+        }
+        if (deferring.isEmpty()) {
+            return CompletableFuture.completedFuture(Arrays.asList(results));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> {
+            for (int i = 0; i < deferred.length; i++) {
+                if (deferred[i] != null) {
+                    results[i] = deferred[i].future.join();
+                }
+            }
+            return Arrays.asList(results);
+        });
+    }
+
+    private CompletableFuture<BatchResult> submit(BatchItem item) {
+        return batch(List.of(item)).thenApply(results -> results.get(0));
+    }
+
+    /**
+     * 判断写操作是否需要等待窗口：服务有暂存或正在发布的写操作、请求中该服务之前的操作已经暂存，
+     * 或者操作会改变服务的实例列表。需要持有 pending 锁调用。
+     */
+    private boolean defers(BatchItem item, Set<String> deferring) {
+        if (item == null || item.getOp() == null || item.getService() == null || item.getInstance() == null) {
+            return false; // 由批量操作返回 INVALID
+        }
+        String service = item.getService();
+        return deferring.contains(service) || pending.containsKey(service) || changes(item);
+    }
+
+    /**
+     * 暂存写操作。需要持有 pending 锁调用。
+     *
+     * @return 服务原本没有暂存的写操作、新建了暂存列表时返回true，由调用方开始窗口计时。
+     */
+    private boolean enqueue(Pending p) {
+        List<Pending> list = pending.get(p.item.getService());
+        boolean created = list == null;
+        if (created) {
+            list = new ArrayList<>();
+            pending.put(p.item.getService(), list);
+        }
+        list.add(p);
+        return created;
+    }
+
+    /**
+     * @return 写操作是否会改变服务的实例列表。
+     */
+    private static boolean changes(BatchItem item) {
+        ServiceInstances instances = RegistryManService.instances(item.getService());
+        boolean registered = instances != null && instances.contains(item.getInstance());
+        return switch (item.getOp()) {
+            case REGISTER, UPSERT -> !registered;
+            case UNREGISTER -> registered;
+            default -> false;
+        };
+    }
+
+    /**
+     * 窗口结束，在一次批量操作中执行服务暂存的所有写操作。发布期间服务的条目换成一个空列表留在表中，
+     * 期间到达的操作排在后面，发布完成后开始下一个窗口。
+     */
+    private void flush(String service) {
+        List<Pending> batch;
+        synchronized (pending) {
+            batch = pending.put(service, new ArrayList<>());
+        }
+        try {
+            publish(service, batch);
+        } finally {
+            synchronized (pending) {
+                List<Pending> next = pending.get(service);
+                if (next != null && next.isEmpty()) {
+                    pending.remove(service);
+                } else if (next != null) {
+                    executor.schedule(() -> flush(service), window, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    private void publish(String service, List<Pending> batch) {
+        if (batch == null || batch.isEmpty()) {
+            return;
+        }
+        if (!cluster.isLeader()) {
+            fail(batch, new IllegalStateException("lost leadership before writes of " + service + " were published"));
+            return;
+        }
+        try {
+            List<BatchResult> results = registryService.batch(batch.stream().map(Pending::item).toList());
+            log.debug(" ====> published {} coalesced writes of {}", batch.size(), service);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(results.get(i));
+            }
+        } catch (RuntimeException ex) {
+            fail(batch, ex);
+        }
+    }
+
+    private static void fail(List<Pending> batch, Throwable ex) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        log.warn(" ====> {} coalesced writes failed: {}", batch.size(), ex.toString());
+        batch.forEach(p -> p.future.completeExceptionally(ex));
+    }
+
+    /**
+     * 等待窗口结束的写操作。
+     */
+    private record Pending(BatchItem item, CompletableFuture<BatchResult> future) {
+    }
+}
@@ -0,0 +1,20 @@
+package cn.ipman.registry.core.service;
+
+/**
+ * 服务版本变更监听器。注册中心每次发布新的服务版本(注册、注销、快照恢复)后回调。
+ * 回调发生在写请求线程上，实现类不能阻塞，耗时操作应投递到自己的线程中处理。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 11:02
+ */
+@FunctionalInterface
+public interface VersionListener {
+
+    /**
+     * 服务版本发生变更。
+     *
+     * @param service 服务名称。
+     * @param version 变更后的服务版本号。
+     */
+    void onVersionChanged(String service, long version);
+}
@@ -0,0 +1,459 @@
+package cn.ipman.registry.core.watch;
+
+import cn.ipman.registry.core.service.RegistryManService;
+import cn.ipman.registry.core.service.VersionListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务变更推送器。客户端通过一个SSE长连接订阅多个服务，服务版本变更时推送最新版本号，
+ * 客户端收到后再按需调用 /findall 拉取实例列表，替代对 /version(s) 的轮询。
+ * 连接基于Servlet异步机制({@link #watch})或响应式的事件流({@link #stream})，空闲的订阅不占用任何线程。
+ * <p>
+ * 分发线程只把变更合并进每个订阅者的待发送版本，不做任何写入；写入由推送线程池完成，
+ * 每个订阅者同一时间最多占用一个推送线程，写入期间到达的变更继续合并，写完后一次发出最新版本，
+ * 因此每个订阅者的积压不超过它订阅的服务数。读得慢的客户端只会拖慢自己：
+ * 单次写入超过 writeTimeout 的SSE连接、事件流缓冲已满的响应式连接都会被关闭，客户端重连后重新拿到当前版本。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 11:20
+ */
+@Slf4j
+public class ServiceWatcher implements VersionListener {
+
+    // 服务与其订阅者的映射
+    final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    // 待推送的服务版本，同一服务在一次分发前的多次变更只推送最新版本
+    final Map<String, Long> pending = new ConcurrentHashMap<>();
+
+    // 是否已提交分发任务
+    final AtomicBoolean dispatching = new AtomicBoolean(false);
+
+    // 分发线程，负责把变更事件和心跳交给订阅者，以及检查写入超时，不直接写连接
+    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new WatchThreadFactory("registry-watch-dispatcher-"));
+
+    // 推送线程池，负责写连接，每个订阅者同一时间最多占用一个线程
+    final ExecutorService senders = Executors.newFixedThreadPool(
+            Math.max(4, Runtime.getRuntime().availableProcessors()), new WatchThreadFactory("registry-watch-sender-"));
+
+    // 心跳间隔，定期发送注释行以便及时发现断开的连接
+    long heartbeatInterval = 15_000;
+
+    // 单次写入的超时时间，超过时关闭连接
+    long writeTimeout = 10_000;
+
+    // 响应式事件流最多缓冲的事件数，客户端读得太慢、缓冲已满时关闭连接
+    int streamBuffer = 32;
+
+    /**
+     * 启动推送器，监听注册中心的版本变更并开始定期发送心跳。
+     */
+    public void start() {
+        RegistryManService.addListener(this);
+        executor.scheduleWithFixedDelay(this::heartbeat,
+                heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+        long check = Math.max(100, writeTimeout / 4);
+        executor.scheduleWithFixedDelay(this::expire, check, check, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止推送器，关闭所有订阅连接。
+     */
+    public void stop() {
+        RegistryManService.removeListener(this);
+        executor.shutdown();
+        senders.shutdown();
+        subscribers.values().forEach(subs -> subs.forEach(Subscriber::complete));
+        subscribers.clear();
+    }
+
+    /**
+     * 订阅一组服务的变更。订阅成功后会立即推送一次这些服务的当前版本。
+     *
+     * @param services 服务名称集合。
+     * @return SSE连接。
+     */
+    public SseEmitter watch(String... services) {
+        SseEmitter emitter = new SseEmitter(0L); // 不超时，由客户端或心跳失败关闭
+        Subscriber subscriber = new EmitterSubscriber(emitter, services);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(ex -> unsubscribe(subscriber));
+        subscribe(subscriber);
+        return emitter;
+    }
+
+    /**
+     * 以响应式事件流订阅一组服务的变更，用于非阻塞的 WebFlux 前端，事件与 {@link #watch} 相同。
+     * 客户端断开时事件流被取消，随之取消订阅。
+     *
+     * @param services 服务名称集合。
+     * @return 服务版本变更事件流。
+     */
+    public Flux<ServerSentEvent<Map<String, Long>>> stream(String... services) {
+        Sinks.Many<ServerSentEvent<Map<String, Long>>> sink = Sinks.many().unicast()
+                .onBackpressureBuffer(Queues.<ServerSentEvent<Map<String, Long>>>get(streamBuffer).get());
+        Sinks.Empty<Void> closed = Sinks.empty();
+        Subscriber subscriber = new SinkSubscriber(sink, closed, services);
+        subscribe(subscriber);
+        // 关闭时立即结束事件流，缓冲中还没发出的事件直接丢弃，不必等客户端读完
+        return sink.asFlux().takeUntilOther(closed.asMono()).doFinally(signal -> unsubscribe(subscriber));
+    }
+
+    private void subscribe(Subscriber subscriber) {
+        String[] services = subscriber.services;
+        for (String service : services) {
+            subscribers.computeIfAbsent(service, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+        log.debug(" ====> watch {} subscribed, total services watched: {}", List.of(services), subscribers.size());
+
+        // 推送初始版本，避免订阅前发生的变更被遗漏
+        executor.execute(() -> {
+            Map<String, Long> versions = new LinkedHashMap<>();
+            for (String service : services) {
+                versions.put(service, RegistryManService.VERSIONS.get(service));
+            }
+            subscriber.offer(versions);
+        });
+    }
+
+    @Override
+    public void onVersionChanged(String service, long version) {
+        if (!subscribers.containsKey(service)) {
+            return;
+        }
+        pending.merge(service, version, Math::max);
+        if (dispatching.compareAndSet(false, true)) {
+            executor.execute(this::dispatch);
+        }
+    }
+
+    /**
+     * 推送待发送的变更。每个订阅者在一次分发中只收到一条合并后的事件。
+     */
+    private void dispatch() {
+        dispatching.set(false);
+        Map<Subscriber, Map<String, Long>> events = new HashMap<>();
+        Iterator<Map.Entry<String, Long>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            it.remove();
+            Set<Subscriber> subs = subscribers.get(entry.getKey());
+            if (subs == null) {
+                continue;
+            }
+            for (Subscriber sub : subs) {
+                events.computeIfAbsent(sub, k -> new LinkedHashMap<>()).put(entry.getKey(), entry.getValue());
+            }
+        }
+        events.forEach(Subscriber::offer);
+    }
+
+    private void heartbeat() {
+        all().forEach(Subscriber::heartbeat);
+    }
+
+    /**
+     * 关闭单次写入超时的订阅者，它们占用的推送线程在连接关闭后释放。
+     */
+    private void expire() {
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : all()) {
+            long since = subscriber.sendingSince;
+            if (since > 0 && now - since > writeTimeout) {
+                log.info(" ====> watch subscriber blocked for {}ms, close it", now - since);
+                subscriber.expire(new TimeoutException("write timed out after " + writeTimeout + "ms"));
+            }
+        }
+    }
+
+    private Set<Subscriber> all() {
+        Set<Subscriber> all = new HashSet<>();
+        subscribers.values().forEach(all::addAll);
+        return all;
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        for (String service : subscriber.services) {
+            subscribers.computeIfPresent(service, (k, subs) -> {
+                subs.remove(subscriber);
+                return subs.isEmpty() ? null : subs;
+            });
+        }
+    }
+
+    /**
+     * 一个订阅连接上的订阅者。offer 与 heartbeat 只把待发送的内容放入信箱，
+     * 由推送线程调用 send 与 ping 写入连接，同一订阅者的写入不会并发。
+     */
+    abstract class Subscriber {
+        final String[] services;
+
+        // 待发送的服务版本，写入期间到达的变更合并到这里，只保留最新版本
+        final Map<String, Long> mailbox = new LinkedHashMap<>();
+        boolean ping;       // 是否有待发送的心跳
+        boolean scheduled;  // 是否已提交到推送线程池
+        volatile boolean closed;
+
+        // 正在进行的写入开始的时间，没有写入时为0
+        volatile long sendingSince;
+
+        Subscriber(String[] services) {
+            this.services = services;
+        }
+
+        void offer(Map<String, Long> versions) {
+            synchronized (this) {
+                versions.forEach((service, version) -> {
+                    if (version == null) {
+                        mailbox.putIfAbsent(service, null); // 服务尚未注册
+                    } else {
+                        mailbox.merge(service, version, Math::max);
+                    }
+                });
+                if (!schedule()) {
+                    return;
+                }
+            }
+            submit();
+        }
+
+        void heartbeat() {
+            synchronized (this) {
+                // 还有事件在排队或正在写入时不需要心跳
+                if (!mailbox.isEmpty() || !schedule()) {
+                    return;
+                }
+                ping = true;
+            }
+            submit();
+        }
+
+        /**
+         * 标记为已提交，需要持有本对象的锁调用。
+         *
+         * @return 之前未提交、需要提交到推送线程池时返回true。
+         */
+        private boolean schedule() {
+            if (scheduled || closed) {
+                return false;
+            }
+            scheduled = true;
+            return true;
+        }
+
+        private void submit() {
+            try {
+                senders.execute(this::drain);
+            } catch (RejectedExecutionException ex) {
+                close(ex); // 推送器已停止
+            }
+        }
+
+        /**
+         * 在推送线程中依次写出信箱中的内容，直到信箱为空。
+         */
+        private void drain() {
+            while (true) {
+                Map<String, Long> versions;
+                boolean heartbeat;
+                synchronized (this) {
+                    if (closed || (mailbox.isEmpty() && !ping)) {
+                        mailbox.clear();
+                        scheduled = false;
+                        return;
+                    }
+                    versions = new LinkedHashMap<>(mailbox);
+                    heartbeat = ping && versions.isEmpty();
+                    mailbox.clear();
+                    ping = false;
+                }
+                sendingSince = System.currentTimeMillis();
+                boolean sent;
+                try {
+                    sent = heartbeat ? ping() : send(versions);
+                } finally {
+                    sendingSince = 0;
+                }
+                if (!sent) {
+                    log.debug(" ====> watch subscriber gone");
+                    close(null);
+                }
+            }
+        }
+
+        /**
+         * 关闭订阅连接并取消订阅。
+         *
+         * @param cause 关闭的原因，正常关闭时为null。
+         */
+        void close(Throwable cause) {
+            closed = true;
+            unsubscribe(this);
+            if (cause == null) {
+                complete();
+            } else {
+                fail(cause);
+            }
+        }
+
+        /**
+         * 写入超时，取消订阅后在单独的线程中关闭连接：关闭需要等待阻塞的写入释放连接的锁，不能占用分发线程。
+         *
+         * @param cause 超时原因。
+         */
+        void expire(Throwable cause) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            unsubscribe(this);
+            Thread closer = new Thread(() -> fail(cause), "registry-watch-close");
+            closer.setDaemon(true);
+            closer.start();
+        }
+
+        /**
+         * @return 写入成功时返回true，连接已断开时返回false。
+         */
+        abstract boolean send(Map<String, Long> versions);
+
+        abstract boolean ping();
+
+        abstract void complete();
+
+        abstract void fail(Throwable cause);
+    }
+
+    /**
+     * 基于Servlet异步机制的SSE连接上的订阅者，写入会阻塞推送线程直到数据交给容器。
+     */
+    class EmitterSubscriber extends Subscriber {
+        final SseEmitter emitter;
+
+        EmitterSubscriber(SseEmitter emitter, String[] services) {
+            super(services);
+            this.emitter = emitter;
+        }
+
+        @Override
+        boolean send(Map<String, Long> versions) {
+            try {
+                emitter.send(SseEmitter.event().name("versions").data(versions));
+                return true;
+            } catch (IOException | IllegalStateException ex) {
+                return false;
+            }
+        }
+
+        @Override
+        boolean ping() {
+            try {
+                emitter.send(SseEmitter.event().comment("ping"));
+                return true;
+            } catch (IOException | IllegalStateException ex) {
+                return false;
+            }
+        }
+
+        @Override
+        void complete() {
+            emitter.complete();
+        }
+
+        @Override
+        void fail(Throwable cause) {
+            emitter.completeWithError(cause);
+        }
+    }
+
+    /**
+     * 响应式事件流上的订阅者，事件写入有界的 Sink 后由 WebFlux 在事件循环线程中发送，写入不会阻塞。
+     */
+    class SinkSubscriber extends Subscriber {
+        final Sinks.Many<ServerSentEvent<Map<String, Long>>> sink;
+        final Sinks.Empty<Void> closed;
+
+        SinkSubscriber(Sinks.Many<ServerSentEvent<Map<String, Long>>> sink, Sinks.Empty<Void> closed,
+                       String[] services) {
+            super(services);
+            this.sink = sink;
+            this.closed = closed;
+        }
+
+        @Override
+        boolean send(Map<String, Long> versions) {
+            return emit(ServerSentEvent.<Map<String, Long>>builder().event("versions").data(versions).build());
+        }
+
+        @Override
+        boolean ping() {
+            return emit(ServerSentEvent.<Map<String, Long>>builder().comment("ping").build());
+        }
+
+        @Override
+        void complete() {
+            sink.tryEmitComplete();
+        }
+
+        @Override
+        void fail(Throwable cause) {
+            closed.tryEmitError(cause);
+        }
+
+        private boolean emit(ServerSentEvent<Map<String, Long>> event) {
+            Sinks.EmitResult result = sink.tryEmitNext(event);
+            if (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+                // 客户端读得太慢，缓冲的都是过时的版本，关闭连接让它重连
+                log.info(" ====> watch stream buffer full, close it");
+                close(new IllegalStateException("watch subscriber too slow"));
+                return true;
+            }
+            return result.isSuccess();
+        }
+    }
+
+    /**
+     * 分发与推送线程的工厂，按前缀加序号命名，守护线程，不阻止进程退出。
+     */
+    static class WatchThreadFactory implements ThreadFactory {
+        final String prefix;
+        final AtomicInteger count = new AtomicInteger();
+
+        WatchThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
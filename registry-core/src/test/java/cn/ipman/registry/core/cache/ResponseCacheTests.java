@@ -0,0 +1,68 @@
+package cn.ipman.registry.core.cache;
+
+import cn.ipman.registry.core.model.InstanceMeta;
+import cn.ipman.registry.core.service.RegistryManService;
+import cn.ipman.registry.core.service.Subsetting;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 实例列表响应缓存：版本不变时复用序列化结果，版本变化后重新序列化；每个版本缓存的子集数有上限。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 08:35
+ */
+class ResponseCacheTests {
+
+    final RegistryManService registryService = new RegistryManService();
+    final ObjectMapper objectMapper = new ObjectMapper();
+    final ResponseCache cache = new ResponseCache(objectMapper);
+    final String service = "cn.ipman.cache." + System.nanoTime();
+
+    @AfterEach
+    void cleanup() {
+        RegistryManService.REGISTRY.remove(service);
+    }
+
+    @Test
+    void entryIsReusedUntilVersionChanges() throws Exception {
+        assertNull(cache.instances(service));
+        registryService.register(service, instance(0));
+        ResponseCache.Entry first = cache.instances(service);
+        assertSame(first, cache.instances(service));
+
+        registryService.register(service, instance(1));
+        ResponseCache.Entry second = cache.instances(service);
+        assertTrue(second.version() > first.version());
+        assertArrayEquals(objectMapper.writeValueAsBytes(RegistryManService.instances(service).getInstances()),
+                second.body());
+    }
+
+    @Test
+    void subsetsPerVersionAreBounded() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            registryService.register(service, instance(i));
+        }
+        // 哈希标识的客户端几乎各占一个轮次，子集键与客户端数相当
+        int clients = ResponseCache.MAX_SUBSETS + 500;
+        for (int i = 0; i < clients; i++) {
+            String client = "consumer-" + i;
+            ResponseCache.Entry entry = cache.subset(service, client, 10);
+            byte[] expected = objectMapper.writeValueAsBytes(
+                    Subsetting.subset(RegistryManService.instances(service).getInstances(), client, 10));
+            assertArrayEquals(expected, entry.body());
+        }
+        assertEquals(ResponseCache.MAX_SUBSETS, cache.subsets.get(service).entries().size());
+    }
+
+    static InstanceMeta instance(int i) {
+        return InstanceMeta.http("10.8." + (i >>> 8) + "." + (i & 0xff), 8080);
+    }
+}
@@ -0,0 +1,132 @@
+package cn.ipman.registry.core.cluster;
+
+import cn.ipman.registry.core.model.InstanceMeta;
+import cn.ipman.registry.core.service.RegistryManService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 变更日志：乱序到达的版本号按序追加，跳过的版本号不留空洞，以及容量、重置与持久化回调。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 07:10
+ */
+class ReplicationLogTests {
+
+    final ReplicationLog log = new ReplicationLog(8);
+    final List<Long> journaled = Collections.synchronizedList(new ArrayList<>());
+
+    ReplicationLogTests() {
+        log.setJournal(new ChangeJournal() {
+            @Override
+            public void append(List<Change> changes) {
+                changes.forEach(change -> journaled.add(change.getVersion()));
+            }
+
+            @Override
+            public void reset(long version) {
+                journaled.add(-version);
+            }
+        });
+    }
+
+    @Test
+    void outOfOrderAppendsAreWrittenInVersionOrder() {
+        log.append(2, change("b"));
+        log.append(3, change("c"), change("c"));
+        // 版本1还未追加，之后的版本暂不可见
+        assertEquals(List.of(), log.since(0, 100).getChanges());
+        assertEquals(List.of(), journaled);
+
+        log.append(1, change("a"));
+        ChangeSet set = log.since(0, 100);
+        assertEquals(List.of(1L, 2L, 3L, 3L), versions(set.getChanges()));
+        assertEquals(3, set.getVersion());
+        assertEquals(List.of(1L, 2L, 3L, 3L), journaled);
+    }
+
+    @Test
+    void emptyAppendSkipsVersionWithoutGap() {
+        log.append(1, change("a"));
+        log.append(3, change("c"));
+        log.append(2);
+        assertEquals(List.of(1L, 3L), versions(log.since(0, 100).getChanges()));
+        assertEquals(List.of(1L, 3L), journaled);
+    }
+
+    @Test
+    void sinceKeepsVersionsTogetherAndReportsTruncation() {
+        for (long v = 1; v <= 5; v++) {
+            log.append(v, change("a"), change("b"));
+        }
+        // 容量为8，版本1已被覆盖
+        assertFalse(log.since(0, 100).isComplete());
+        ChangeSet set = log.since(1, 3);
+        assertTrue(set.isComplete());
+        assertEquals(List.of(2L, 2L, 3L, 3L), versions(set.getChanges()));
+        assertEquals(3, set.getVersion());
+    }
+
+    @Test
+    void resetDropsReorderedChanges() {
+        log.append(1, change("a"));
+        log.append(3, change("c"));
+        log.reset(10);
+        log.append(2, change("b"));
+        log.append(11, change("d"));
+        assertEquals(List.of(11L), versions(log.since(10, 100).getChanges()));
+        assertFalse(log.since(9, 100).isComplete());
+        assertEquals(List.of(1L, -10L, 11L), journaled);
+    }
+
+    @Test
+    void concurrentWritesProduceContiguousLog() throws Exception {
+        RegistryManService registry = new RegistryManService();
+        String prefix = "cn.ipman.changes." + System.nanoTime() + ".";
+        long from = RegistryManService.VERSION.get();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            String service = prefix + t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    registry.register(service, InstanceMeta.http("10.3.0." + i, 8080));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        ChangeSet set = RegistryManService.CHANGES.since(from, 10_000);
+        assertEquals(RegistryManService.VERSION.get(), set.getVersion());
+        List<Long> versions = versions(set.getChanges());
+        assertEquals(1_600, versions.size());
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(from + i + 1, versions.get(i));
+        }
+        for (int t = 0; t < 8; t++) {
+            RegistryManService.REGISTRY.remove(prefix + t);
+            RegistryManService.VERSIONS.remove(prefix + t);
+        }
+    }
+
+    static Change change(String service) {
+        return new Change(0, Change.Op.REGISTER, service, InstanceMeta.http("10.3.1.1", 8080), 0, 0);
+    }
+
+    static List<Long> versions(List<Change> changes) {
+        return changes.stream().map(Change::getVersion).toList();
+    }
+}
@@ -0,0 +1,195 @@
+package cn.ipman.registry.core.cluster;
+
+import cn.ipman.registry.core.model.InstanceMeta;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.LinkedMultiValueMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 二进制快照编解码：压缩与不压缩的往返一致，兼容解码版本1的快照，拒绝损坏的数据。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 07:30
+ */
+class SnapshotCodecTests {
+
+    @Test
+    void roundTripPreservesRegistryLeasesAndVersions() {
+        Snapshot snapshot = snapshot();
+        for (boolean compress : new boolean[]{false, true}) {
+            byte[] data = SnapshotCodec.encode(snapshot, compress);
+            assertTrue(SnapshotCodec.isBinary(data));
+            Snapshot decoded = SnapshotCodec.decode(data);
+
+            assertEquals(snapshot.getVersion(), decoded.getVersion());
+            assertEquals(snapshot.getVERSIONS(), decoded.getVERSIONS());
+            assertEquals(snapshot.getTIMESTAMPS(), decoded.getTIMESTAMPS());
+            assertEquals(snapshot.getTTLS(), decoded.getTTLS());
+            assertEquals(snapshot.getREGISTRY().keySet(), decoded.getREGISTRY().keySet());
+            snapshot.getREGISTRY().forEach((service, instances) -> {
+                List<InstanceMeta> restored = decoded.getREGISTRY().get(service);
+                assertEquals(instances, restored);
+                for (int i = 0; i < instances.size(); i++) {
+                    assertEquals(instances.get(i).getParameters(), restored.get(i).getParameters());
+                    assertEquals(instances.get(i).isStatus(), restored.get(i).isStatus());
+                }
+            });
+        }
+    }
+
+    @Test
+    void repeatedStringsAreEncodedOnce() {
+        byte[] data = SnapshotCodec.encode(snapshot(), false);
+        // 1000 个实例共享服务名、协议、上下文和参数，字典编码后原文只出现一次
+        assertEquals(1, occurrences(data, "cn.ipman.a"));
+        assertEquals(1, occurrences(data, "prod"));
+        assertEquals(1, occurrences(data, "zone"));
+    }
+
+    @Test
+    void streamingDecodeHandsOverOneServiceAtATime() throws IOException {
+        byte[] data = SnapshotCodec.encode(snapshot(), true);
+        List<String> services = new ArrayList<>();
+        long version = SnapshotCodec.decode(new ByteArrayInputStream(data), new SnapshotCodec.Sink() {
+            @Override
+            public void begin(long version, Map<String, Long> versions) {
+                assertEquals(3, versions.size());
+                assertTrue(services.isEmpty());
+            }
+
+            @Override
+            public void service(String service, List<InstanceMeta> instances, long[] leases, long[] ttls) {
+                services.add(service);
+                assertEquals(instances.size(), leases.length);
+                assertEquals(instances.size(), ttls.length);
+            }
+        });
+        assertEquals(42, version);
+        assertEquals(List.of("cn.ipman.a", "cn.ipman.b", "cn.ipman.empty"), services);
+    }
+
+    @Test
+    void decodesVersionOneSnapshotWithoutTtls() throws IOException {
+        InstanceMeta a = InstanceMeta.http("10.4.0.1", 8080);
+        InstanceMeta b = InstanceMeta.http("10.4.0.2", 8080);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(SnapshotCodec.MAGIC);
+        header.writeByte(1);
+        header.writeByte(0);
+        // 版本1的实例后面只有租约时间戳，没有超时时间
+        SnapshotCodec.Encoder encoder = new SnapshotCodec.Encoder(header, null, 1);
+        encoder.writeVarLong(7);
+        encoder.writeVarInt(1);
+        encoder.writeString("cn.ipman.v1");
+        encoder.writeVarLong(7);
+        encoder.writeVarInt(1);
+        encoder.writeString("cn.ipman.v1");
+        encoder.writeVarInt(2);
+        encoder.writeInstance(a);
+        encoder.writeVarLong(1_000 + 1);
+        encoder.writeInstance(b);
+        encoder.writeVarLong(0);
+        header.flush();
+
+        long[][] stamps = new long[2][];
+        long version = SnapshotCodec.decode(new ByteArrayInputStream(bytes.toByteArray()), new SnapshotCodec.Sink() {
+            @Override
+            public void begin(long version, Map<String, Long> versions) {
+                assertEquals(Map.of("cn.ipman.v1", 7L), versions);
+            }
+
+            @Override
+            public void service(String service, List<InstanceMeta> instances, long[] leases, long[] ttls) {
+                assertEquals(List.of(a, b), instances);
+                stamps[0] = leases;
+                stamps[1] = ttls;
+            }
+        });
+        assertEquals(7, version);
+        assertArrayEquals(new long[]{1_000, -1}, stamps[0]);
+        // 没有超时时间，恢复时使用默认值
+        assertArrayEquals(new long[]{0, 0}, stamps[1]);
+
+        Snapshot decoded = SnapshotCodec.decode(bytes.toByteArray());
+        assertEquals(Map.of("cn.ipman.v1@" + a.toHttpUrl(), 1_000L), decoded.getTIMESTAMPS());
+        assertNull(decoded.getTTLS().get("cn.ipman.v1@" + b.toHttpUrl()));
+    }
+
+    @Test
+    void rejectsCorruptData() {
+        byte[] data = SnapshotCodec.encode(snapshot(), false);
+        assertFalse(SnapshotCodec.isBinary("{\"REGISTRY\":{}}".getBytes()));
+
+        byte[] magic = data.clone();
+        magic[0] = 0;
+        assertThrows(UncheckedIOException.class, () -> SnapshotCodec.decode(magic));
+
+        byte[] version = data.clone();
+        version[4] = 3;
+        assertThrows(UncheckedIOException.class, () -> SnapshotCodec.decode(version));
+
+        byte[] truncated = Arrays.copyOf(data, data.length / 2);
+        assertThrows(UncheckedIOException.class, () -> SnapshotCodec.decode(truncated));
+    }
+
+    @Test
+    void encoderChecksDeclaredServiceCount() throws IOException {
+        SnapshotCodec.Encoder encoder = SnapshotCodec.encoder(new ByteArrayOutputStream(), false, 1, Map.of(), 1);
+        assertThrows(IllegalStateException.class, encoder::finish);
+        encoder.writeService("cn.ipman.a", List.of(), i -> null, i -> null);
+        assertThrows(IllegalStateException.class,
+                () -> encoder.writeService("cn.ipman.b", List.of(), i -> null, i -> null));
+    }
+
+    static int occurrences(byte[] data, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int count = 0;
+        for (int i = 0; i + bytes.length <= data.length; i++) {
+            if (Arrays.equals(data, i, i + bytes.length, bytes, 0, bytes.length)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static Snapshot snapshot() {
+        LinkedMultiValueMap<String, InstanceMeta> registry = new LinkedMultiValueMap<>();
+        Map<String, Long> timestamps = new HashMap<>();
+        Map<String, Long> ttls = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            String service = i % 2 == 0 ? "cn.ipman.a" : "cn.ipman.b";
+            InstanceMeta instance = InstanceMeta.http("10.4." + (i >>> 8) + "." + (i & 0xff), 8080 + i % 3)
+                    .addParams(Map.of("zone", "z" + i % 4, "env", "prod"));
+            instance.setStatus(i % 5 != 0);
+            registry.add(service, instance);
+            // 部分实例没有租约
+            if (i % 7 != 0) {
+                String key = service + "@" + instance.toHttpUrl();
+                timestamps.put(key, 1_700_000_000_000L + i);
+                ttls.put(key, i % 3 == 0 ? 0L : 30_000L);
+            }
+        }
+        registry.put("cn.ipman.empty", new ArrayList<>());
+        Map<String, Long> versions = Map.of("cn.ipman.a", 40L, "cn.ipman.b", 42L, "cn.ipman.empty", 1L);
+        return new Snapshot(registry, versions, timestamps, ttls, 42);
+    }
+}
@@ -0,0 +1,108 @@
+package cn.ipman.registry.core.health;
+
+import cn.ipman.registry.core.cluster.Cluster;
+import cn.ipman.registry.core.model.InstanceMeta;
+import cn.ipman.registry.core.service.RegistryManService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 健康检查的自我保护：默认关闭，到期的租约全部剔除；开启后剔除额度不低于下限，大量租约同时到期时暂缓剔除。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 08:25
+ */
+class HealthManCheckerTests {
+
+    static final long TIMEOUT = 20_000;
+    static final long TICK = 1_000;
+
+    final RegistryManService registryService = new RegistryManService();
+    final Cluster cluster = mock(Cluster.class);
+    final String service = "cn.ipman.health." + System.nanoTime();
+
+    @BeforeEach
+    void reset() {
+        // 租约表是全局的，接管时会重新安排所有租约，先清掉其它用例留下的租约
+        RegistryManService.LEASES.clear();
+        when(cluster.isLeader()).thenReturn(true);
+    }
+
+    @AfterEach
+    void cleanup() {
+        RegistryManService.LEASES.clear();
+        RegistryManService.REGISTRY.remove(service);
+    }
+
+    @Test
+    void selfPreservationIsOffByDefault() {
+        HealthManChecker checker = new HealthManChecker(registryService, cluster, TIMEOUT, TICK);
+        register(20);
+        long now = System.currentTimeMillis();
+        checker.check(now);
+        checker.check(now + TIMEOUT + 2 * TICK);
+
+        assertFalse(checker.selfPreservation().isEnabled());
+        assertFalse(checker.selfPreservation().isActive());
+        assertEquals(0, RegistryManService.instances(service).size());
+        assertEquals(0, RegistryManService.LEASES.size());
+    }
+
+    @Test
+    void budgetHasFloorOnSmallRegistries() {
+        HealthManChecker checker = new HealthManChecker(registryService, cluster, TIMEOUT, TICK, 0.15, 5);
+        register(20);
+        long now = System.currentTimeMillis();
+        checker.check(now);
+        // 20 个租约按比例只允许剔除 3 个，下限把额度提高到 5
+        assertEquals(5, checker.selfPreservation().getBudget());
+        renewAllBut(4, now + TIMEOUT / 2);
+        checker.check(now + TIMEOUT + 2 * TICK);
+
+        assertFalse(checker.selfPreservation().isActive());
+        assertEquals(16, RegistryManService.instances(service).size());
+    }
+
+    @Test
+    void massExpiryEntersPreservation() {
+        HealthManChecker checker = new HealthManChecker(registryService, cluster, TIMEOUT, TICK, 0.15, 5);
+        register(100);
+        long now = System.currentTimeMillis();
+        checker.check(now);
+        assertEquals(15, checker.selfPreservation().getBudget());
+        renewAllBut(40, now + TIMEOUT / 2);
+        checker.check(now + TIMEOUT + 2 * TICK);
+
+        SelfPreservation status = checker.selfPreservation();
+        assertTrue(status.isEnabled());
+        assertTrue(status.isActive());
+        assertEquals(40, status.getDeferred());
+        assertEquals(100, RegistryManService.instances(service).size());
+    }
+
+    private void register(int count) {
+        for (int i = 0; i < count; i++) {
+            registryService.register(service, instance(i));
+        }
+    }
+
+    /**
+     * 续约除前 expired 个实例之外的所有实例。
+     */
+    private void renewAllBut(int expired, long now) {
+        for (int i = expired; i < RegistryManService.instances(service).size(); i++) {
+            RegistryManService.LEASES.renew(service, instance(i), now);
+        }
+    }
+
+    static InstanceMeta instance(int i) {
+        return InstanceMeta.http("10.9." + (i >>> 8) + "." + (i & 0xff), 8080);
+    }
+}
@@ -0,0 +1,134 @@
+package cn.ipman.registry.core.health;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分层时间轮：任务不提前到期，最多晚一个 tick；跨层的任务逐层下沉后在正确的 tick 到期。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 07:20
+ */
+class TimingWheelTests {
+
+    static final long TICK = 1_000;
+
+    final TimingWheel<Long> wheel = new TimingWheel<>(TICK, 0);
+
+    @Test
+    void firesWithinOneTickAfterDeadline() {
+        wheel.schedule(1_000, 1_000L);
+        wheel.schedule(1_001, 1_001L);
+        wheel.schedule(2_500, 2_500L);
+        assertEquals(List.of(), advance(999));
+        assertEquals(List.of(1_000L), advance(1_000));
+        assertEquals(List.of(), advance(1_999));
+        assertEquals(List.of(1_001L), advance(2_000));
+        assertEquals(List.of(2_500L), advance(3_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlineFiresOnNextTick() {
+        advance(10_000);
+        wheel.schedule(5_000, 5_000L);
+        assertEquals(1, wheel.size());
+        assertEquals(List.of(), advance(10_999));
+        assertEquals(List.of(5_000L), advance(11_000));
+    }
+
+    @Test
+    void cascadesThroughEveryLevel() {
+        // 每层的边界前后各放一个任务：64、64^2、64^3 个 tick
+        long[] deadlines = {
+                63 * TICK, 64 * TICK, 65 * TICK,
+                4_095 * TICK, 4_096 * TICK, 4_097 * TICK,
+                262_143 * TICK, 262_144 * TICK, 262_145 * TICK,
+                1_000_000 * TICK
+        };
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+        for (long deadline : deadlines) {
+            assertEquals(List.of(), advance(deadline - 1));
+            assertEquals(List.of(deadline), advance(deadline));
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void deadlineBeyondRangeIsNotFiredEarly() {
+        long range = 1L << (TimingWheel.BITS * TimingWheel.LEVELS);
+        long deadline = (range + 100) * TICK;
+        wheel.schedule(deadline, deadline);
+        assertEquals(List.of(), advance((range - 1) * TICK));
+        assertEquals(List.of(), advance(deadline - 1));
+        assertEquals(List.of(deadline), advance(deadline));
+    }
+
+    @Test
+    void randomDeadlinesFireBetweenDeadlineAndNextTick() {
+        Random random = new Random(42);
+        Map<Long, Integer> scheduled = new HashMap<>();
+        long now = 0;
+        for (int round = 0; round < 2_000; round++) {
+            // 推进期间不断加入新的任务，到期时间从已过期到约三层的范围
+            for (int i = 0; i < 5; i++) {
+                long deadline = now - 5_000 + (long) (random.nextDouble() * 300_000 * TICK);
+                scheduled.merge(deadline, 1, Integer::sum);
+                wheel.schedule(deadline, deadline);
+            }
+            long previous = now;
+            now += random.nextInt(50 * (int) TICK);
+            for (long deadline : advance(now)) {
+                // 已过期的任务在下一个 tick 到期，其它任务在 deadline 所在的 tick 结束时到期
+                long due = Math.max(ceil(deadline), previous / TICK + 1);
+                assertTrue(now / TICK >= due, "fired early: " + deadline + " at " + now);
+                assertTrue(previous / TICK < due, "fired late: " + deadline + " at " + now);
+                scheduled.merge(deadline, -1, Integer::sum);
+            }
+        }
+        long remaining = scheduled.values().stream().mapToLong(Integer::longValue).sum();
+        assertEquals(remaining, wheel.size());
+    }
+
+    @Test
+    void clearDropsPendingAndIncomingTasks() {
+        wheel.schedule(5_000, 5_000L);
+        advance(1_000);
+        wheel.schedule(6_000, 6_000L);
+        assertEquals(2, wheel.size());
+        wheel.clear(1_000);
+        assertEquals(0, wheel.size());
+        assertEquals(List.of(), advance(10_000));
+    }
+
+    @Test
+    void clearMovesWheelToNow() {
+        // 长时间停用后重新启用，从 now 开始计时，不再回调停用期间的 tick
+        long now = 1_000_000_000L;
+        wheel.clear(now);
+        wheel.schedule(now + 500, 1L);
+        wheel.schedule(now - 500, 2L);
+        assertEquals(List.of(1L, 2L), advance(now + TICK));
+        assertEquals(0, wheel.size());
+    }
+
+    private List<Long> advance(long now) {
+        List<Long> fired = new ArrayList<>();
+        wheel.advance(now, fired::add);
+        return fired;
+    }
+
+    private static long ceil(long deadline) {
+        return (deadline + TICK - 1) / TICK;
+    }
+}
@@ -0,0 +1,149 @@
+package cn.ipman.registry.core.persist;
+
+import cn.ipman.registry.core.cluster.Change;
+import cn.ipman.registry.core.model.InstanceMeta;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 变更日志(WAL)：跨日志段按序回放，不完整或损坏的尾部记录、重置记录都会停止回放。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 07:40
+ */
+class WriteAheadLogTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysChangesAcrossSegmentsInOrder() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(dir);
+        wal.open(1);
+        InstanceMeta instance = InstanceMeta.http("10.5.0.1", 8080).addParams(Map.of("zone", "a"));
+        instance.setStatus(true);
+        wal.append(List.of(change(1, Change.Op.REGISTER, instance, 30_000), change(1, Change.Op.REGISTER, null, 0)));
+        assertEquals(1, wal.rotate());
+        wal.append(List.of(change(2, Change.Op.UNREGISTER, instance, 0)));
+        wal.close();
+
+        List<Change> replayed = new ArrayList<>();
+        assertEquals(2, WriteAheadLog.replay(dir, replayed::add));
+        assertEquals(List.of(1L, 1L, 2L), replayed.stream().map(Change::getVersion).toList());
+
+        Change first = replayed.get(0);
+        assertEquals(Change.Op.REGISTER, first.getOp());
+        assertEquals("cn.ipman.wal", first.getService());
+        assertEquals(instance, first.getInstance());
+        assertEquals(Map.of("zone", "a"), first.getInstance().getParameters());
+        assertTrue(first.getInstance().isStatus());
+        assertEquals(1_000, first.getTimestamp());
+        assertEquals(30_000, first.getTtl());
+        // 端口与上下文为空的实例
+        assertNull(replayed.get(1).getInstance().getPort());
+        assertNull(replayed.get(1).getInstance().getContext());
+        assertEquals(Change.Op.UNREGISTER, replayed.get(2).getOp());
+    }
+
+    @Test
+    void tornTailStopsReplay() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(dir);
+        wal.open(1);
+        for (long v = 1; v <= 3; v++) {
+            wal.append(List.of(change(v, Change.Op.REGISTER, instance(v), 0)));
+        }
+        wal.close();
+        // 进程崩溃时最后一条记录只写了一部分
+        Path segment = WriteAheadLog.segmentPath(dir, 1);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(file.length() - 5);
+        }
+
+        List<Change> replayed = new ArrayList<>();
+        assertEquals(1, WriteAheadLog.replay(dir, replayed::add));
+        assertEquals(List.of(1L, 2L), replayed.stream().map(Change::getVersion).toList());
+    }
+
+    @Test
+    void corruptRecordStopsReplayOfLaterSegments() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(dir);
+        wal.open(1);
+        wal.append(List.of(change(1, Change.Op.REGISTER, instance(1), 0)));
+        wal.append(List.of(change(2, Change.Op.REGISTER, instance(2), 0)));
+        wal.rotate();
+        wal.append(List.of(change(3, Change.Op.REGISTER, instance(3), 0)));
+        wal.close();
+        // 破坏第二条记录的内容，校验和不再匹配
+        Path segment = WriteAheadLog.segmentPath(dir, 1);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 3] ^= 0x7F;
+        Files.write(segment, bytes);
+
+        List<Change> replayed = new ArrayList<>();
+        assertEquals(2, WriteAheadLog.replay(dir, replayed::add));
+        assertEquals(List.of(1L), replayed.stream().map(Change::getVersion).toList());
+    }
+
+    @Test
+    void resetStopsReplay() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(dir);
+        wal.open(1);
+        wal.append(List.of(change(1, Change.Op.REGISTER, instance(1), 0)));
+        wal.append(List.of(change(2, Change.Op.REGISTER, instance(2), 0)));
+        // 恢复了全量快照，之后的变更基于没有落盘的快照
+        wal.reset(10);
+        wal.append(List.of(change(11, Change.Op.REGISTER, instance(3), 0)));
+        wal.rotate();
+        wal.append(List.of(change(12, Change.Op.REGISTER, instance(4), 0)));
+        wal.close();
+
+        List<Change> replayed = new ArrayList<>();
+        assertEquals(2, WriteAheadLog.replay(dir, replayed::add));
+        assertEquals(List.of(1L, 2L), replayed.stream().map(Change::getVersion).toList());
+    }
+
+    @Test
+    void deleteUpToRemovesOlderSegments() throws IOException {
+        assertEquals(-1, WriteAheadLog.replay(dir.resolve("missing"), change -> {
+        }));
+        WriteAheadLog wal = new WriteAheadLog(dir);
+        wal.open(1);
+        wal.append(List.of(change(1, Change.Op.REGISTER, instance(1), 0)));
+        wal.rotate();
+        wal.append(List.of(change(2, Change.Op.REGISTER, instance(2), 0)));
+        wal.rotate();
+        wal.deleteUpTo(2);
+        wal.close();
+
+        assertFalse(Files.exists(WriteAheadLog.segmentPath(dir, 1)));
+        assertFalse(Files.exists(WriteAheadLog.segmentPath(dir, 2)));
+        assertEquals(List.of(WriteAheadLog.segmentPath(dir, 3)), WriteAheadLog.segments(dir));
+        List<Change> replayed = new ArrayList<>();
+        assertEquals(3, WriteAheadLog.replay(dir, replayed::add));
+        assertTrue(replayed.isEmpty());
+    }
+
+    static Change change(long version, Change.Op op, InstanceMeta instance, long ttl) {
+        if (instance == null) {
+            instance = new InstanceMeta("http", "10.5.9.9", null, null);
+        }
+        return new Change(version, op, "cn.ipman.wal", instance, 1_000, ttl);
+    }
+
+    static InstanceMeta instance(long i) {
+        return InstanceMeta.http("10.5.1." + i, 8080);
+    }
+}
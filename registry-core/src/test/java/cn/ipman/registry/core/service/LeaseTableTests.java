@@ -0,0 +1,175 @@
+package cn.ipman.registry.core.service;
+
+import cn.ipman.registry.core.model.InstanceMeta;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 租约表：超时时间的确定、ID的分配与复用，以及无锁续约与释放、清空并发时的正确性。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 06:35
+ */
+class LeaseTableTests {
+
+    static final String SERVICE = "cn.ipman.test";
+
+    final LeaseTable table = new LeaseTable();
+
+    @Test
+    void grantClampsDeclaredTtl() {
+        table.bounds(20_000, 5_000, 60_000);
+        assertEquals(20_000, table.grant(0));
+        assertEquals(20_000, table.grant(-1));
+        assertEquals(5_000, table.grant(1_000));
+        assertEquals(30_000, table.grant(30_000));
+        assertEquals(60_000, table.grant(100_000));
+        assertThrows(IllegalArgumentException.class, () -> table.bounds(20_000, 0, 60_000));
+        assertThrows(IllegalArgumentException.class, () -> table.bounds(20_000, 70_000, 60_000));
+    }
+
+    @Test
+    void createRenewAndRelease() {
+        InstanceMeta a = instance(1);
+        Lease lease = table.create(SERVICE, a, 1_000, 30_000);
+        assertNotNull(lease);
+        assertEquals(30_000, lease.getTtl());
+        assertEquals(1, table.size());
+        assertEquals(1_000L, table.timestamp(SERVICE, a));
+
+        // 已存在时只续约，声明了超时时间时更新
+        assertNull(table.create(SERVICE, a, 2_000, 10_000));
+        assertEquals(2_000L, table.timestamp(SERVICE, a));
+        assertEquals(10_000, lease.getTtl());
+
+        assertSame(lease, table.renew(SERVICE, a, 3_000));
+        assertEquals(3_000, table.timestamp(lease));
+
+        assertSame(lease, table.release(SERVICE, a));
+        assertFalse(table.isActive(lease));
+        assertEquals(0, table.size());
+        assertNull(table.renew(SERVICE, a, 4_000));
+        assertNull(table.timestamp(SERVICE, a));
+        assertNull(table.release(SERVICE, a));
+    }
+
+    @Test
+    void releasedIdIsReusedByNextLease() {
+        Lease first = table.create(SERVICE, instance(1), 1_000);
+        Lease second = table.create(SERVICE, instance(2), 1_000);
+        assertNotEquals(first.getId(), second.getId());
+
+        table.release(SERVICE, instance(1));
+        Lease reused = table.create(SERVICE, instance(3), 5_000);
+        assertEquals(first.getId(), reused.getId());
+        assertNotEquals(first.getGeneration(), reused.getGeneration());
+        assertTrue(table.isActive(reused));
+        assertFalse(table.isActive(first));
+
+        // 持有旧租约的续约不能写入复用了同一ID的新租约
+        table.touch(first, 9_000);
+        assertEquals(5_000, table.timestamp(reused));
+        assertEquals(0, table.timestamp(first));
+    }
+
+    @Test
+    void leasesSpanMultiplePages() {
+        int count = LeaseTable.PAGE_SIZE * 2 + 1;
+        for (int i = 0; i < count; i++) {
+            table.create(SERVICE, instance(i), i + 1);
+        }
+        assertEquals(count, table.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i + 1L, table.timestamp(SERVICE, instance(i)));
+        }
+    }
+
+    @Test
+    void staleLeaseAfterClear() {
+        Lease lease = table.create(SERVICE, instance(1), 1_000);
+        table.clear();
+        assertEquals(0, table.size());
+        assertFalse(table.isActive(lease));
+        // 表已清空，旧租约的续约不越界也不生效
+        table.touch(lease, 2_000);
+        assertEquals(0, table.timestamp(lease));
+
+        Lease recreated = table.create(SERVICE, instance(1), 3_000);
+        assertEquals(lease.getId(), recreated.getId());
+        table.touch(lease, 4_000);
+        assertEquals(3_000, table.timestamp(recreated));
+    }
+
+    @Test
+    void renewRacingReleaseAndReuse() throws InterruptedException {
+        InstanceMeta a = instance(1);
+        InstanceMeta b = instance(2);
+        long stale = 999_999;
+        for (int round = 0; round < 200; round++) {
+            Lease old = table.create(SERVICE, a, 1_000);
+            CountDownLatch started = new CountDownLatch(1);
+            AtomicBoolean running = new AtomicBoolean(true);
+            Thread renewer = new Thread(() -> {
+                started.countDown();
+                while (running.get()) {
+                    table.touch(old, stale);
+                }
+            });
+            renewer.start();
+            started.await();
+            table.release(SERVICE, a);
+            Lease reused = table.create(SERVICE, b, 2_000);
+            assertEquals(old.getId(), reused.getId());
+            for (int i = 0; i < 1_000; i++) {
+                assertEquals(2_000, table.timestamp(reused));
+            }
+            running.set(false);
+            renewer.join();
+            assertEquals(2_000, table.timestamp(reused));
+            table.release(SERVICE, b);
+        }
+    }
+
+    @Test
+    void renewRacingClear() throws InterruptedException {
+        InstanceMeta a = instance(1);
+        table.create(SERVICE, a, 1_000);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread renewer = new Thread(() -> {
+            try {
+                for (long now = 1; running.get(); now++) {
+                    if (table.renew(SERVICE, a, now) == null) {
+                        table.create(SERVICE, a, now);
+                    }
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        renewer.start();
+        for (int i = 0; i < 2_000; i++) {
+            table.clear();
+            table.create(SERVICE, instance(i + 2), 1_000);
+        }
+        running.set(false);
+        renewer.join();
+        assertNull(failure.get());
+    }
+
+    static InstanceMeta instance(int i) {
+        return InstanceMeta.http("10.0." + (i >>> 8) + "." + (i & 0xff), 8080);
+    }
+}
@@ -0,0 +1,164 @@
+package cn.ipman.registry.core.service;
+
+import cn.ipman.registry.core.model.InstanceMeta;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 注册中心的快照恢复：从二进制快照流恢复时，网络读取与解码期间不阻塞写操作；
+ * 每解码出一个服务就替换该服务，快照中不存在的服务在最后移除。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 06:55
+ */
+class RegistryManServiceTests {
+
+    final RegistryManService registry = new RegistryManService();
+
+    @Test
+    void restoreFromStreamDoesNotBlockWritesWhileDecoding() throws Exception {
+        String service = "cn.ipman.restore." + System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            registry.register(service, InstanceMeta.http("10.2.0." + i, 8080), 30_000);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RegistryManService.writeSnapshot(out, false);
+        byte[] snapshot = out.toByteArray();
+        long version = RegistryManService.VERSION.get();
+
+        // 读到一半时停住，模拟 Leader 的响应体还没有传输完
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        InputStream in = new StallingInputStream(snapshot, stalled, resume);
+        CompletableFuture<Long> restoring = CompletableFuture.supplyAsync(() -> {
+            try {
+                return RegistryManService.restore(in);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        assertTrue(stalled.await(5, TimeUnit.SECONDS));
+
+        // 恢复还在等待输入，写操作不应被阻塞
+        String other = "cn.ipman.restore.other." + System.nanoTime();
+        CompletableFuture.runAsync(() -> registry.register(other, InstanceMeta.http("10.2.1.1", 8080)))
+                .get(2, TimeUnit.SECONDS);
+        resume.countDown();
+
+        assertEquals(version, restoring.get(5, TimeUnit.SECONDS));
+        assertEquals(100, RegistryManService.instances(service).size());
+        assertEquals(30_000L, RegistryManService.LEASES.ttl(service, InstanceMeta.http("10.2.0.7", 8080)));
+        // 恢复以快照为准，快照之后的写入被替换
+        assertNull(RegistryManService.instances(other));
+        assertEquals(version, RegistryManService.VERSION.get());
+    }
+
+    @Test
+    void restoreInstallsEachServiceAsSoonAsItIsDecoded() throws Exception {
+        String prefix = "cn.ipman.restore.each." + System.nanoTime() + ".";
+        for (int s = 0; s < 50; s++) {
+            for (int i = 0; i < 20; i++) {
+                registry.register(prefix + s, InstanceMeta.http("10.3." + s + "." + i, 8080));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RegistryManService.writeSnapshot(out, false);
+        byte[] snapshot = out.toByteArray();
+        // 快照之后的写入：每个服务注销一个实例，并新增一个快照中不存在的服务
+        for (int s = 0; s < 50; s++) {
+            registry.unregister(prefix + s, InstanceMeta.http("10.3." + s + ".0", 8080));
+        }
+        String gone = prefix + "gone";
+        InstanceMeta goneInstance = InstanceMeta.http("10.3.99.1", 8080);
+        registry.register(gone, goneInstance);
+        long before = RegistryManService.VERSION.get();
+
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        InputStream in = new StallingInputStream(snapshot, stalled, resume);
+        CompletableFuture<Long> restoring = CompletableFuture.supplyAsync(() -> {
+            try {
+                return RegistryManService.restore(in);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        assertTrue(stalled.await(5, TimeUnit.SECONDS));
+
+        // 读到一半时，前面解码出的服务已经替换，后面的还没有，全局版本号不变
+        long restored = 0;
+        for (int s = 0; s < 50; s++) {
+            if (RegistryManService.instances(prefix + s).size() == 20) {
+                restored++;
+            }
+        }
+        assertTrue(restored > 0 && restored < 50, "restored " + restored);
+        assertEquals(before, RegistryManService.VERSION.get());
+        resume.countDown();
+
+        restoring.get(5, TimeUnit.SECONDS);
+        for (int s = 0; s < 50; s++) {
+            assertEquals(20, RegistryManService.instances(prefix + s).size());
+            assertNotNull(RegistryManService.LEASES.timestamp(prefix + s, InstanceMeta.http("10.3." + s + ".0", 8080)));
+        }
+        assertNull(RegistryManService.instances(gone));
+        assertNull(RegistryManService.LEASES.timestamp(gone, goneInstance));
+    }
+
+    /**
+     * 读到一半时停住，等待放行，模拟 Leader 的响应体还没有传输完。
+     */
+    static class StallingInputStream extends FilterInputStream {
+        final int half;
+        final CountDownLatch stalled;
+        final CountDownLatch resume;
+        int read;
+
+        StallingInputStream(byte[] data, CountDownLatch stalled, CountDownLatch resume) {
+            super(new ByteArrayInputStream(data));
+            this.half = data.length / 2;
+            this.stalled = stalled;
+            this.resume = resume;
+        }
+
+        @Override
+        public int read() throws IOException {
+            pause();
+            int b = super.read();
+            read++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            pause();
+            int n = super.read(b, off, read < half ? Math.min(len, half - read) : len);
+            read += Math.max(n, 0);
+            return n;
+        }
+
+        private void pause() throws IOException {
+            if (read >= half && stalled.getCount() > 0) {
+                stalled.countDown();
+                try {
+                    resume.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package cn.ipman.registry.core.service;
+
+import cn.ipman.registry.core.model.InstanceMeta;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 实例列表快照：按参数过滤的结果与逐个比较一致，注册/注销只影响新快照，旧快照及其索引保持不变。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 07:50
+ */
+class ServiceInstancesTests {
+
+    static final String[] ZONES = {"a", "b", "c"};
+    static final String[] ENVS = {"prod", "gray"};
+
+    @Test
+    void selectWithoutParametersReturnsAll() {
+        ServiceInstances instances = ServiceInstances.of(instances(12), 1);
+        assertSame(instances.getInstances(), instances.select(null));
+        assertSame(instances.getInstances(), instances.select(Map.of()));
+        assertThrows(UnsupportedOperationException.class, () -> instances.getInstances().add(instance(99)));
+    }
+
+    @Test
+    void selectMatchesEveryParameterInRegistrationOrder() {
+        List<InstanceMeta> all = instances(30);
+        ServiceInstances instances = ServiceInstances.of(all, 1);
+        for (Map<String, String> parameters : List.of(
+                Map.of("zone", "a"),
+                Map.of("env", "gray"),
+                Map.of("zone", "b", "env", "prod"),
+                Map.of("zone", "c", "env", "gray", "group", "g1"),
+                Map.of("zone", "x"),
+                Map.of("zone", "a", "env", "none"))) {
+            List<InstanceMeta> selected = instances.select(parameters);
+            assertEquals(filter(all, parameters), selected, parameters.toString());
+            assertThrows(UnsupportedOperationException.class, () -> selected.add(instance(99)));
+        }
+        assertTrue(instances.select(Map.of("zone", "x")).isEmpty());
+    }
+
+    @Test
+    void addAndRemoveLeaveOldSnapshotUntouched() {
+        List<InstanceMeta> all = instances(9);
+        ServiceInstances v1 = ServiceInstances.of(all, 1);
+        InstanceMeta added = instance(9);
+        ServiceInstances v2 = v1.add(added, 2);
+
+        assertEquals(2, v2.getVersion());
+        assertEquals(10, v2.size());
+        assertTrue(v2.contains(added));
+        assertFalse(v1.contains(added));
+        assertEquals(filter(all, Map.of("zone", "a")), v1.select(Map.of("zone", "a")));
+        List<InstanceMeta> withAdded = new ArrayList<>(all);
+        withAdded.add(added);
+        assertEquals(filter(withAdded, Map.of("zone", "a")), v2.select(Map.of("zone", "a")));
+
+        // 调用方注销时传入的实例可能不带参数，按快照中保存的实例更新索引
+        InstanceMeta removed = all.get(3);
+        ServiceInstances v3 = v2.remove(InstanceMeta.http(removed.getHost(), removed.getPort()), 3);
+        assertFalse(v3.contains(removed));
+        assertTrue(v2.contains(removed));
+        withAdded.remove(removed);
+        for (String zone : ZONES) {
+            for (String env : ENVS) {
+                Map<String, String> parameters = Map.of("zone", zone, "env", env);
+                assertEquals(filter(withAdded, parameters), v3.select(parameters));
+            }
+        }
+        assertSame(v3, v3.remove(removed, 4));
+    }
+
+    @Test
+    void removingLastInstanceOfTermDropsIndexEntry() {
+        InstanceMeta only = InstanceMeta.http("10.6.0.1", 8080).addParams(Map.of("zone", "z"));
+        ServiceInstances instances = ServiceInstances.EMPTY.add(only, 1);
+        assertEquals(List.of(only), instances.select(Map.of("zone", "z")));
+        ServiceInstances empty = instances.remove(only, 2);
+        assertEquals(0, empty.size());
+        assertTrue(empty.select(Map.of("zone", "z")).isEmpty());
+    }
+
+    static List<InstanceMeta> instances(int count) {
+        List<InstanceMeta> instances = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            instances.add(instance(i));
+        }
+        return instances;
+    }
+
+    static InstanceMeta instance(int i) {
+        return InstanceMeta.http("10.6.0." + i, 8080)
+                .addParams(Map.of("zone", ZONES[i % 3], "env", ENVS[i % 2], "group", "g" + i % 4));
+    }
+
+    static List<InstanceMeta> filter(List<InstanceMeta> instances, Map<String, String> parameters) {
+        return instances.stream()
+                .filter(instance -> instance.getParameters().entrySet().containsAll(parameters.entrySet()))
+                .toList();
+    }
+}
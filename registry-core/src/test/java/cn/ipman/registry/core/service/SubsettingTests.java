@@ -0,0 +1,128 @@
+package cn.ipman.registry.core.service;
+
+import cn.ipman.registry.core.model.InstanceMeta;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 确定性子集划分：连续编号的客户端负载严格均衡，哈希标识统计均衡，子集不受实例注册顺序影响。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 07:55
+ */
+class SubsettingTests {
+
+    @Test
+    void smallServiceOrNoSizeReturnsAllInstances() {
+        List<InstanceMeta> instances = instances(10);
+        assertSame(instances, Subsetting.subset(instances, "1", 10));
+        assertSame(instances, Subsetting.subset(instances, "1", 0));
+        assertEquals("all", Subsetting.key(10, "1", 10));
+        assertEquals("all", Subsetting.key(10, "1", -1));
+    }
+
+    @Test
+    void consecutiveClientsInOneRoundGetDisjointSubsets() {
+        List<InstanceMeta> instances = instances(100);
+        for (int round = 0; round < 5; round++) {
+            Set<InstanceMeta> used = new HashSet<>();
+            for (int i = 0; i < 10; i++) {
+                List<InstanceMeta> subset = Subsetting.subset(instances, String.valueOf(round * 10 + i), 10);
+                assertEquals(10, subset.size());
+                for (InstanceMeta instance : subset) {
+                    assertTrue(used.add(instance), "overlap in round " + round);
+                }
+            }
+            // 一轮客户端恰好用到每个实例一次
+            assertEquals(new HashSet<>(instances), used);
+        }
+    }
+
+    @Test
+    void leftoverInstancesAreSpreadAcrossRounds() {
+        // 103 个实例切成 10 个子集，每轮剩下 3 个，多轮之后每个实例的负载仍然接近
+        List<InstanceMeta> instances = instances(103);
+        Map<InstanceMeta, Integer> load = load(instances, 2_000, String::valueOf, 10);
+        int min = Collections.min(load.values());
+        int max = Collections.max(load.values());
+        assertEquals(103, load.size());
+        // 期望每个实例约 194 个客户端
+        assertTrue(max - min <= 0.25 * 20_000 / 103, "load " + min + ".." + max);
+    }
+
+    @Test
+    void hashedClientIdsAreBalancedStatistically() {
+        List<InstanceMeta> instances = instances(100);
+        Map<InstanceMeta, Integer> load = load(instances, 5_000, i -> "consumer-" + i, 10);
+        // 期望每个实例 500 个客户端
+        assertEquals(100, load.size());
+        assertTrue(Collections.min(load.values()) > 350, "min " + Collections.min(load.values()));
+        assertTrue(Collections.max(load.values()) < 650, "max " + Collections.max(load.values()));
+    }
+
+    @Test
+    void subsetIsStableAcrossRegistrationOrder() {
+        List<InstanceMeta> instances = instances(50);
+        List<InstanceMeta> shuffled = new ArrayList<>(instances);
+        Collections.shuffle(shuffled, new Random(7));
+        for (String client : List.of("0", "7", "123", "order-service@10.0.0.1")) {
+            List<InstanceMeta> subset = Subsetting.subset(instances, client, 8);
+            assertEquals(subset, Subsetting.subset(shuffled, client, 8));
+        }
+        // 50 个实例切成 6 个子集，不同子集的标识不同
+        assertEquals("8:0:1", Subsetting.key(50, "1", 8));
+        assertEquals("8:1:1", Subsetting.key(50, "7", 8));
+        assertNotEquals(Subsetting.subset(instances, "1", 8), Subsetting.subset(instances, "7", 8));
+    }
+
+    @Test
+    void sortByUrlMatchesComparingFormattedUrls() {
+        List<InstanceMeta> shuffled = instances(300);
+        Collections.shuffle(shuffled, new Random(11));
+        List<InstanceMeta> expected = new ArrayList<>(shuffled);
+        expected.sort(Comparator.comparing(InstanceMeta::toHttpUrl));
+        assertEquals(expected, Subsetting.sortByUrl(shuffled));
+    }
+
+    @Test
+    void negativeOrTextualClientsAreHashed() {
+        assertEquals(42, Subsetting.clientId("42"));
+        assertTrue(Subsetting.clientId("-1") >= 0);
+        assertTrue(Subsetting.clientId("consumer") >= 0);
+        assertEquals(Subsetting.clientId("consumer"), Subsetting.clientId("consumer"));
+    }
+
+    static Map<InstanceMeta, Integer> load(List<InstanceMeta> instances, int clients,
+                                           IntFunction<String> client, int size) {
+        Map<InstanceMeta, Integer> load = new HashMap<>();
+        for (int i = 0; i < clients; i++) {
+            for (InstanceMeta instance : Subsetting.subset(instances, client.apply(i), size)) {
+                load.merge(instance, 1, Integer::sum);
+            }
+        }
+        return load;
+    }
+
+    static List<InstanceMeta> instances(int count) {
+        List<InstanceMeta> instances = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            instances.add(InstanceMeta.http("10.7." + (i >>> 8) + "." + (i & 0xff), 8080));
+        }
+        return instances;
+    }
+}
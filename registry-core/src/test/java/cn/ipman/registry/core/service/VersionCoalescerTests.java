@@ -0,0 +1,198 @@
+package cn.ipman.registry.core.service;
+
+import cn.ipman.registry.core.cluster.Cluster;
+import cn.ipman.registry.core.model.BatchItem;
+import cn.ipman.registry.core.model.BatchResult;
+import cn.ipman.registry.core.model.InstanceMeta;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+/**
+ * 写操作合并器：窗口内同一服务的写操作只发布一个版本，并且同一服务内的操作保持到达顺序。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 06:45
+ */
+class VersionCoalescerTests {
+
+    static final long WINDOW = 200;
+
+    final RegistryService registryService = spy(new RegistryManService());
+    final Cluster cluster = mock(Cluster.class);
+    final VersionCoalescer coalescer = new VersionCoalescer(registryService, cluster, WINDOW);
+
+    // 每次执行 batch 的操作，按执行顺序
+    final List<List<BatchItem>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    VersionCoalescerTests() {
+        when(cluster.isLeader()).thenReturn(true);
+        doAnswer(invocation -> {
+            batches.add(List.copyOf(invocation.getArgument(0)));
+            return invocation.callRealMethod();
+        }).when(registryService).batch(any());
+        coalescer.start();
+    }
+
+    @AfterEach
+    void stop() {
+        coalescer.stop();
+    }
+
+    @Test
+    void registrationsWithinWindowShareOneVersion() throws Exception {
+        String service = service("burst");
+        List<CompletableFuture<InstanceMeta>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(coalescer.register(service, instance(i), 0));
+        }
+        // 窗口结束前不返回
+        assertFalse(futures.get(0).isDone());
+        for (CompletableFuture<InstanceMeta> future : futures) {
+            assertTrue(future.get(5, TimeUnit.SECONDS).isStatus());
+        }
+        ServiceInstances instances = RegistryManService.instances(service);
+        assertEquals(10, instances.size());
+        assertEquals(1, batches.size());
+        // 10 条变更共享同一个版本号
+        assertEquals(10, RegistryManService.CHANGES.since(instances.getVersion() - 1, 100).getChanges().size());
+    }
+
+    @Test
+    void nonChangingWritesRunWithoutWaiting() {
+        String service = service("renew");
+        registryService.register(service, instance(1));
+        batches.clear();
+        CompletableFuture<List<BatchResult>> future = coalescer.batch(List.of(
+                new BatchItem(BatchItem.Op.RENEW, service, instance(1)),
+                new BatchItem(BatchItem.Op.UPSERT, service, instance(1))));
+        assertTrue(future.isDone());
+        assertEquals(BatchResult.Result.RENEWED, future.join().get(0).getResult());
+        assertEquals(BatchResult.Result.RENEWED, future.join().get(1).getResult());
+    }
+
+    @Test
+    void laterItemsOfRequestFollowDeferredItem() throws Exception {
+        String service = service("request");
+        InstanceMeta x = instance(1);
+        registryService.register(service, x);
+        batches.clear();
+        List<BatchResult> results = coalescer.batch(List.of(
+                new BatchItem(BatchItem.Op.UNREGISTER, service, x),
+                new BatchItem(BatchItem.Op.RENEW, service, x))).get(5, TimeUnit.SECONDS);
+        assertEquals(BatchResult.Result.UNREGISTERED, results.get(0).getResult());
+        assertEquals(BatchResult.Result.RENEWED, results.get(1).getResult());
+        // 续约排在注销之后，在同一次批量操作中按请求顺序执行
+        assertEquals(1, batches.size());
+        assertEquals(List.of(BatchItem.Op.UNREGISTER, BatchItem.Op.RENEW),
+                batches.get(0).stream().map(BatchItem::getOp).toList());
+        RegistryManService.LEASES.release(service, x);
+    }
+
+    @Test
+    void writesArrivingDuringPublishQueueBehindIt() throws Exception {
+        String service = service("publishing");
+        InstanceMeta y = instance(1);
+        CountDownLatch publishing = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            List<BatchItem> items = invocation.getArgument(0);
+            if (items.get(0).getOp() == BatchItem.Op.REGISTER) {
+                publishing.countDown();
+                resume.await(5, TimeUnit.SECONDS);
+            }
+            batches.add(List.copyOf(items));
+            return invocation.callRealMethod();
+        }).when(registryService).batch(any());
+
+        CompletableFuture<InstanceMeta> registered = coalescer.register(service, y, 0);
+        assertTrue(publishing.await(5, TimeUnit.SECONDS));
+        // 发布期间实例尚未写入，续约不能抢在注册之前直接执行
+        CompletableFuture<List<BatchResult>> renewed = coalescer.batch(
+                List.of(new BatchItem(BatchItem.Op.RENEW, service, y)));
+        assertFalse(renewed.isDone());
+        resume.countDown();
+
+        assertNotNull(registered.get(5, TimeUnit.SECONDS));
+        assertEquals(BatchResult.Result.RENEWED, renewed.get(5, TimeUnit.SECONDS).get(0).getResult());
+        assertEquals(List.of(BatchItem.Op.REGISTER), batches.get(0).stream().map(BatchItem::getOp).toList());
+        assertEquals(List.of(BatchItem.Op.RENEW), batches.get(1).stream().map(BatchItem::getOp).toList());
+        registryService.unregister(service, y);
+    }
+
+    @Test
+    void writesArrivingWhileRequestRunsDirectItemsQueueBehindItsDeferredItems() throws Exception {
+        String service = service("interleaved");
+        InstanceMeta x = instance(1);
+        registryService.register(service, x);
+        batches.clear();
+        AtomicBoolean stalled = new AtomicBoolean();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            batches.add(List.copyOf(invocation.getArgument(0)));
+            if (stalled.compareAndSet(false, true)) {
+                running.countDown();
+                resume.await(5, TimeUnit.SECONDS);
+            }
+            return invocation.callRealMethod();
+        }).when(registryService).batch(any());
+
+        // 续约直接执行，注销暂存；直接执行期间到达的续约必须排在注销之后
+        CompletableFuture<CompletableFuture<List<BatchResult>>> first = CompletableFuture.supplyAsync(() ->
+                coalescer.batch(List.of(
+                        new BatchItem(BatchItem.Op.RENEW, service, x),
+                        new BatchItem(BatchItem.Op.UNREGISTER, service, x))));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<BatchResult>> second = coalescer.batch(
+                List.of(new BatchItem(BatchItem.Op.RENEW, service, x)));
+        assertFalse(second.isDone());
+        resume.countDown();
+
+        assertEquals(BatchResult.Result.UNREGISTERED,
+                first.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS).get(1).getResult());
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(BatchItem.Op.RENEW), batches.get(0).stream().map(BatchItem::getOp).toList());
+        assertEquals(List.of(BatchItem.Op.UNREGISTER, BatchItem.Op.RENEW),
+                batches.get(1).stream().map(BatchItem::getOp).toList());
+        RegistryManService.LEASES.release(service, x);
+    }
+
+    @Test
+    void writesFailWhenLeadershipIsLost() {
+        String service = service("demoted");
+        CompletableFuture<InstanceMeta> future = coalescer.register(service, instance(1), 0);
+        when(cluster.isLeader()).thenReturn(false);
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(ex.getCause() instanceof IllegalStateException);
+        assertNull(RegistryManService.instances(service));
+    }
+
+    static String service(String name) {
+        return "cn.ipman.coalescer." + name + "." + System.nanoTime();
+    }
+
+    static InstanceMeta instance(int i) {
+        return InstanceMeta.http("10.1.0." + i, 8080);
+    }
+}
@@ -0,0 +1,160 @@
+package cn.ipman.registry.core.watch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 服务变更推送：写入阻塞的订阅者不影响其它订阅者，积压的变更合并为最新版本，写入超时的连接被关闭。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 08:10
+ */
+class ServiceWatcherTests {
+
+    static final String SERVICE = "cn.ipman.watch";
+
+    final ServiceWatcher watcher = new ServiceWatcher();
+
+    ServiceWatcherTests() {
+        watcher.start();
+    }
+
+    @AfterEach
+    void stop() {
+        watcher.stop();
+    }
+
+    @Test
+    void blockedSubscriberDoesNotDelayOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSubscriber slow = new RecordingSubscriber(release);
+        RecordingSubscriber fast = new RecordingSubscriber(null);
+        subscribe(slow);
+        subscribe(fast);
+
+        watcher.onVersionChanged(SERVICE, 1);
+        assertEquals(Map.of(SERVICE, 1L), fast.sent.poll(1, TimeUnit.SECONDS));
+        assertEquals(Map.of(SERVICE, 1L), slow.sent.poll(1, TimeUnit.SECONDS)); // 写入后阻塞
+
+        // 慢订阅者阻塞期间，快订阅者照常收到每次变更
+        for (long v = 2; v <= 5; v++) {
+            watcher.onVersionChanged(SERVICE, v);
+            assertEquals(Map.of(SERVICE, v), fast.sent.poll(1, TimeUnit.SECONDS));
+        }
+        release.countDown();
+        // 阻塞期间的变更合并为一条最新版本
+        assertEquals(Map.of(SERVICE, 5L), slow.sent.poll(1, TimeUnit.SECONDS));
+        assertNull(slow.sent.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void writeTimeoutClosesBlockedSubscriber() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSubscriber slow = new RecordingSubscriber(release);
+        subscribe(slow);
+        watcher.writeTimeout = 300;
+
+        watcher.onVersionChanged(SERVICE, 1);
+        assertNotNull(slow.sent.poll(1, TimeUnit.SECONDS));
+        assertTrue(slow.failed.await(5, TimeUnit.SECONDS));
+        assertTrue(slow.cause.get() instanceof TimeoutException);
+        assertFalse(watcher.subscribers.containsKey(SERVICE));
+        release.countDown();
+    }
+
+    @Test
+    void overflowingStreamIsClosed() {
+        watcher.streamBuffer = 4;
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        // 订阅但不请求数据，事件全部留在缓冲中
+        watcher.stream(SERVICE).subscribe(new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+            }
+
+            @Override
+            protected void hookOnError(Throwable throwable) {
+                error.set(throwable);
+            }
+        });
+        for (long v = 1; v <= 20 && watcher.subscribers.containsKey(SERVICE); v++) {
+            watcher.onVersionChanged(SERVICE, v);
+            sleep(50);
+        }
+        assertFalse(watcher.subscribers.containsKey(SERVICE));
+        assertNotNull(error.get());
+    }
+
+    private void subscribe(ServiceWatcher.Subscriber subscriber) {
+        watcher.subscribers.computeIfAbsent(SERVICE, k -> ConcurrentHashMap.newKeySet())
+                .add(subscriber);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 记录收到的事件，第一次写入后等待放行，模拟读得很慢的客户端。
+     */
+    class RecordingSubscriber extends ServiceWatcher.Subscriber {
+        final BlockingQueue<Map<String, Long>> sent = new LinkedBlockingQueue<>();
+        final CountDownLatch release;
+        final CountDownLatch failed = new CountDownLatch(1);
+        final AtomicReference<Throwable> cause = new AtomicReference<>();
+
+        RecordingSubscriber(CountDownLatch release) {
+            watcher.super(new String[]{SERVICE});
+            this.release = release;
+        }
+
+        @Override
+        boolean send(Map<String, Long> versions) {
+            sent.add(versions);
+            if (release != null) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        boolean ping() {
+            return true;
+        }
+
+        @Override
+        void complete() {
+        }
+
+        @Override
+        void fail(Throwable cause) {
+            this.cause.set(cause);
+            failed.countDown();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package cn.ipman.registry.server;
+
+import cn.ipman.registry.core.cluster.Snapshot;
+import cn.ipman.registry.core.cluster.SnapshotCodec;
+import cn.ipman.registry.core.model.InstanceMeta;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.netty.NettyWebServer;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 以 spring.main.web-application-type=reactive 启动注册中心，检查 Reactor Netty 前端上
+ * 写接口、JSON 与 NDJSON 查询、二进制快照和变更订阅都能正常响应。
+ * 节点按 server.port 识别自身，因此使用固定的空闲端口而不是随机端口，集群中只有这一个节点。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 08:40
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT,
+        properties = "spring.main.web-application-type=reactive")
+class ReactiveServerTests {
+
+    static final int PORT = freePort();
+    static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    final String service = "reactive.test" + System.nanoTime();
+    final InstanceMeta instance = InstanceMeta.http("127.0.0.1", 8081);
+
+    @Autowired
+    ReactiveWebServerApplicationContext context;
+
+    WebTestClient client;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("server.port", () -> PORT);
+        registry.add("registry.serverlist", () -> "http://localhost:" + PORT);
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:" + PORT).responseTimeout(TIMEOUT).build();
+        awaitLeader();
+    }
+
+    @Test
+    void servedByNetty() {
+        assertInstanceOf(NettyWebServer.class, context.getWebServer());
+    }
+
+    @Test
+    void writesAndQueriesAreServed() {
+        InstanceMeta registered = client.post().uri("/reg?service={service}", service).bodyValue(instance)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(InstanceMeta.class).returnResult().getResponseBody();
+        assertNotNull(registered);
+        assertTrue(registered.isStatus());
+
+        Long renewed = client.post().uri("/renew?service={service}", service).bodyValue(instance)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Long.class).returnResult().getResponseBody();
+        assertNotNull(renewed);
+        assertTrue(renewed > 0);
+
+        List<InstanceMeta> json = client.get().uri("/findall?service={service}", service)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .expectBodyList(InstanceMeta.class).returnResult().getResponseBody();
+        assertEquals(List.of(instance.toHttpUrl()), json.stream().map(InstanceMeta::toHttpUrl).toList());
+
+        List<InstanceMeta> ndjson = client.get().uri("/findall?service={service}", service)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(InstanceMeta.class).getResponseBody()
+                .collectList().block(TIMEOUT);
+        assertNotNull(ndjson);
+        assertEquals(List.of(instance.toHttpUrl()), ndjson.stream().map(InstanceMeta::toHttpUrl).toList());
+    }
+
+    @Test
+    void binarySnapshotIsServed() {
+        register();
+        byte[] body = client.get().uri("/snapshot")
+                .accept(MediaType.parseMediaType(SnapshotCodec.MEDIA_TYPE))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(SnapshotCodec.MEDIA_TYPE)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        assertNotNull(body);
+        assertTrue(SnapshotCodec.isBinary(body));
+        Snapshot snapshot = SnapshotCodec.decode(body);
+        assertEquals(1, snapshot.getREGISTRY().get(service).size());
+    }
+
+    @Test
+    void watchPushesCurrentVersions() {
+        long version = register();
+        ServerSentEvent<Map<String, Long>> event = client.get().uri("/watch?services={service}", service)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<Map<String, Long>>>() {
+                })
+                .getResponseBody()
+                .filter(e -> "versions".equals(e.event()))
+                .blockFirst(TIMEOUT);
+        assertNotNull(event);
+        assertEquals(Map.of(service, version), event.data());
+    }
+
+    /**
+     * 注册测试实例。
+     *
+     * @return 注册后的服务版本号。
+     */
+    private long register() {
+        client.post().uri("/reg?service={service}", service).bodyValue(instance)
+                .exchange()
+                .expectStatus().isOk();
+        Long version = client.get().uri("/version?service={service}", service)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Long.class).returnResult().getResponseBody();
+        assertNotNull(version);
+        return version;
+    }
+
+    /**
+     * 等待节点完成首次选举成为 Leader，之后的写请求在本节点执行而不是转发。
+     */
+    private void awaitLeader() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT.toMillis();
+        while (System.currentTimeMillis() < deadline) {
+            String info = client.get().uri("/info")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(String.class).returnResult().getResponseBody();
+            JSONObject server = JSON.parseObject(info);
+            if (server != null && server.getBooleanValue("leader")) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        throw new IllegalStateException("node did not become leader in " + TIMEOUT);
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package cn.ipman.registry.server.simulation;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 多节点集群的负载与故障切换模拟。在当前JVM中启动多个注册中心节点(见 {@link SimulatedNode})，
+ * 模拟大量服务实例通过 /renew 定期续约、消费者轮询 /versions 与 /findall、少量实例上下线，
+ * 统计吞吐量、延迟分位、复制延迟，然后关闭Leader，统计故障切换耗时并检查数据没有丢失。
+ * <p>
+ * 只访问本地回环地址，默认不运行，通过系统属性开启并调整规模:
+ * <pre>
+ * mvn -pl registry-server -am test -Dtest=ClusterSimulationTests -Dsurefire.failIfNoSpecifiedTests=false \
+ *     -Dregistry.simulation=true -Dregistry.simulation.nodes=5 -Dregistry.simulation.instances=50000
+ * </pre>
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 21:20
+ */
+@EnabledIfSystemProperty(named = "registry.simulation", matches = "true")
+class ClusterSimulationTests {
+
+    static final int NODES = Integer.getInteger("registry.simulation.nodes", 3);
+    static final int SERVICES = Integer.getInteger("registry.simulation.services", 100);
+    static final int INSTANCES = Integer.getInteger("registry.simulation.instances", 20_000);
+    static final int CONSUMERS = Integer.getInteger("registry.simulation.consumers", 500);
+    // 预热与负载阶段的时长(毫秒)，预热阶段的统计不计入报告
+    static final long WARMUP = Long.getLong("registry.simulation.warmup", 10_000L);
+    static final long DURATION = Long.getLong("registry.simulation.duration", 30_000L);
+    // 实例的续约间隔与消费者的轮询间隔(毫秒)
+    static final long HEARTBEAT = Long.getLong("registry.simulation.heartbeat", 5_000L);
+    static final long POLL = Long.getLong("registry.simulation.poll", 5_000L);
+
+    // 驱动线程的节拍(毫秒)，每个节拍发出一个间隔内对应比例的请求
+    static final long TICK = 100;
+    // 同时在途的请求数上限
+    static final int MAX_IN_FLIGHT = 512;
+    // 等待选举、同步的超时时间(毫秒)
+    static final long TIMEOUT = 60_000;
+    // 服务端默认的租约时长(毫秒)，对应 registry.lease.timeout
+    static final long LEASE = 20_000;
+
+    static final String CHURN_SERVICE = "sim.churn";
+    static final String PROBE_SERVICE = "sim.probe";
+
+    final List<SimulatedNode> nodes = new ArrayList<>();
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    final HttpClient http = HttpClient.newBuilder()
+            .executor(executor)
+            .connectTimeout(Duration.ofSeconds(2))
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+    final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    final List<Thread> drivers = new ArrayList<>();
+    volatile boolean running;
+
+    final LatencyRecorder renews = new LatencyRecorder("renew");
+    final LatencyRecorder versions = new LatencyRecorder("versions");
+    final LatencyRecorder findall = new LatencyRecorder("findall");
+    final LatencyRecorder writes = new LatencyRecorder("reg/unreg");
+    final LatencyRecorder lag = new LatencyRecorder("replication");
+
+    String[] services;
+    String[] bodies;
+
+    @Test
+    void simulate() throws Exception {
+        startCluster();
+        SimulatedNode leader = awaitLeader();
+        System.out.printf("== cluster started: %s, leader %s%n", nodes, leader);
+
+        registerInstances(leader);
+        // 从所有Follower都有完整数据的稳定状态开始
+        JSONObject info = info(leader);
+        assertNotNull(info);
+        long replicated = awaitReplicated(leader, info.getLongValue("version"));
+        System.out.printf("== followers replicated initial registration in %d ms%n",
+                TimeUnit.NANOSECONDS.toMillis(replicated));
+
+        startDrivers();
+        Thread.sleep(WARMUP);
+        List.of(renews, versions, findall, writes, lag).forEach(LatencyRecorder::reset);
+        long begin = System.nanoTime();
+        Thread.sleep(DURATION);
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        report(String.format("load: %d nodes, %d instances, %d services, %d consumers",
+                NODES, INSTANCES, SERVICES, CONSUMERS), seconds);
+
+        // 负载不停，关闭Leader
+        long failoverStart = System.nanoTime();
+        leader.stop();
+        System.out.printf("== leader %s stopped%n", leader);
+        SimulatedNode next = awaitLeader();
+        awaitForwardedWrite(next);
+        long failover = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - failoverStart);
+        System.out.printf("== failover: new leader %s, writes accepted after %d ms%n", next, failover);
+
+        stopDrivers();
+        report("load including failover", (System.nanoTime() - begin) / 1e9);
+
+        // 故障切换期间实例持续续约，新Leader上不应丢失任何实例。
+        // 机器处理不了设定的负载时续约会超过租约，实例被正常摘除，此时不再检查
+        assumeTrue(renews.percentile(100) < LEASE,
+                "renew latency exceeded the lease, host cannot sustain the configured load");
+        int expected = (int) Arrays.stream(services).filter(services[0]::equals).count();
+        assertEquals(expected, instanceCount(next, services[0]));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        stopDrivers();
+        for (SimulatedNode node : nodes) {
+            node.stop();
+        }
+        executor.shutdownNow();
+    }
+
+    private void startCluster() throws Exception {
+        List<String> serverlist = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            SimulatedNode node = new SimulatedNode(SimulatedNode.freePort());
+            nodes.add(node);
+            serverlist.add(node.url);
+        }
+        for (SimulatedNode node : nodes) {
+            node.start(serverlist);
+        }
+    }
+
+    /**
+     * 等待存活节点中恰好有一个自认为Leader。
+     */
+    private SimulatedNode awaitLeader() throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            List<SimulatedNode> leaders = new ArrayList<>();
+            for (SimulatedNode node : live()) {
+                JSONObject info = info(node);
+                if (info != null && info.getBooleanValue("leader")) {
+                    leaders.add(node);
+                }
+            }
+            if (leaders.size() == 1) {
+                return leaders.get(0);
+            }
+            Thread.sleep(50);
+        }
+        throw new IllegalStateException("no leader elected in " + TIMEOUT + " ms");
+    }
+
+    /**
+     * 等待通过Follower写入成功，说明所有存活节点都已认可新Leader。
+     */
+    private void awaitForwardedWrite(SimulatedNode leader) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        String body = instance("10.255.0.1", 1);
+        while (System.currentTimeMillis() < deadline) {
+            boolean accepted = true;
+            for (SimulatedNode node : live()) {
+                if (node == leader) {
+                    continue;
+                }
+                HttpResponse<String> response = sendSync(post(node, "/reg?service=" + PROBE_SERVICE, body));
+                accepted &= response != null && response.statusCode() == 200 && !response.body().isEmpty();
+            }
+            if (accepted) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        throw new IllegalStateException("followers did not accept writes in " + TIMEOUT + " ms");
+    }
+
+    /**
+     * 通过Leader批量注册所有实例。
+     */
+    private void registerInstances(SimulatedNode leader) throws Exception {
+        services = new String[INSTANCES];
+        bodies = new String[INSTANCES];
+        List<Map<String, Object>> batch = new ArrayList<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            services[i] = "sim.service" + (i % SERVICES);
+            bodies[i] = instance("10." + (i >> 16 & 0xFF) + "." + (i >> 8 & 0xFF) + "." + (i & 0xFF), 8080);
+            Map<String, Object> item = new HashMap<>();
+            item.put("op", "REGISTER");
+            item.put("service", services[i]);
+            item.put("instance", JSON.parseObject(bodies[i]));
+            batch.add(item);
+            if (batch.size() == 1000 || i == INSTANCES - 1) {
+                HttpResponse<String> response = sendSync(post(leader, "/batch", JSON.toJSONString(batch)));
+                assertNotNull(response);
+                assertEquals(200, response.statusCode(), response.body());
+                batch.clear();
+            }
+        }
+        System.out.printf("== registered %d instances%n", INSTANCES);
+    }
+
+    private void startDrivers() {
+        running = true;
+        drivers.add(driver("sim-heartbeat", this::heartbeat));
+        drivers.add(driver("sim-consumer", this::consume));
+        drivers.add(driver("sim-churn", this::churn));
+        drivers.add(driver("sim-lag", this::probeLag));
+        drivers.forEach(Thread::start);
+    }
+
+    private void stopDrivers() throws InterruptedException {
+        running = false;
+        for (Thread driver : drivers) {
+            driver.join(TIMEOUT);
+        }
+        drivers.clear();
+        // 等待在途请求结束
+        inFlight.tryAcquire(MAX_IN_FLIGHT, 10, TimeUnit.SECONDS);
+        inFlight.release(MAX_IN_FLIGHT - inFlight.availablePermits());
+    }
+
+    private Thread driver(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * 每个实例每 HEARTBEAT 毫秒续约一次，请求均匀分布到每个节拍，发往随机节点。
+     */
+    private void heartbeat() {
+        int perTick = (int) Math.max(1, INSTANCES * TICK / HEARTBEAT);
+        int cursor = 0;
+        while (running) {
+            long next = System.currentTimeMillis() + TICK;
+            for (int i = 0; i < perTick && running; i++) {
+                int index = cursor++ % INSTANCES;
+                send(renews, post(anyNode(), "/renew?service=" + services[index], bodies[index]));
+            }
+            pause(next);
+        }
+    }
+
+    /**
+     * 每个消费者每 POLL 毫秒查询一次所订阅服务的版本，版本变化时再带着ETag拉取实例列表。
+     */
+    private void consume() {
+        int perTick = (int) Math.max(1, CONSUMERS * TICK / POLL);
+        Map<Integer, Long> seen = new HashMap<>();
+        Map<Integer, String> etags = new HashMap<>();
+        int cursor = 0;
+        while (running) {
+            long next = System.currentTimeMillis() + TICK;
+            for (int i = 0; i < perTick && running; i++) {
+                int consumer = cursor++ % CONSUMERS;
+                String service = "sim.service" + (consumer % SERVICES);
+                SimulatedNode node = anyNode();
+                send(versions, get(node, "/versions?services=" + service, null)).thenAccept(response -> {
+                    Long version = JSON.parseObject(response.body()).getLong(service);
+                    boolean changed;
+                    synchronized (seen) {
+                        changed = !Objects.equals(seen.put(consumer, version), version);
+                    }
+                    if (changed) {
+                        String etag;
+                        synchronized (etags) {
+                            etag = etags.get(consumer);
+                        }
+                        send(findall, get(node, "/findall?service=" + service, etag)).thenAccept(r ->
+                                r.headers().firstValue("ETag").ifPresent(tag -> {
+                                    synchronized (etags) {
+                                        etags.put(consumer, tag);
+                                    }
+                                }));
+                    }
+                });
+            }
+            pause(next);
+        }
+    }
+
+    /**
+     * 每个节拍上线一个实例并下线最早上线的实例，保持集群中持续有变更需要复制。
+     */
+    private void churn() {
+        List<String> online = new ArrayList<>();
+        int sequence = 0;
+        while (running) {
+            long next = System.currentTimeMillis() + TICK;
+            String body = instance("10.254." + (sequence >> 8 & 0xFF) + "." + (sequence & 0xFF), 9090);
+            sequence++;
+            send(writes, post(anyNode(), "/reg?service=" + CHURN_SERVICE, body));
+            online.add(body);
+            if (online.size() > 100) {
+                send(writes, post(anyNode(), "/unreg?service=" + CHURN_SERVICE, online.remove(0)));
+            }
+            pause(next);
+        }
+    }
+
+    /**
+     * 每秒通过Leader写入一次，记录所有Follower追上该版本的耗时。
+     */
+    private void probeLag() {
+        int sequence = 0;
+        while (running) {
+            long next = System.currentTimeMillis() + 1_000;
+            try {
+                SimulatedNode leader = currentLeader();
+                if (leader != null) {
+                    String body = instance("10.253." + (sequence >> 8 & 0xFF) + "." + (sequence & 0xFF), 7070);
+                    sequence++;
+                    HttpResponse<String> response = sendSync(post(leader, "/reg?service=" + PROBE_SERVICE, body));
+                    JSONObject info = info(leader);
+                    if (response != null && response.statusCode() == 200 && info != null) {
+                        long elapsed = awaitReplicated(leader, info.getLongValue("version"));
+                        if (elapsed >= 0) {
+                            lag.record(elapsed);
+                        } else {
+                            lag.error();
+                        }
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            pause(next);
+        }
+    }
+
+    /**
+     * 等待所有存活的Follower同步到指定版本。
+     *
+     * @return 等待的耗时(纳秒)，超时返回-1。
+     */
+    private long awaitReplicated(SimulatedNode leader, long version) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            boolean replicated = true;
+            for (SimulatedNode node : live()) {
+                if (node != leader) {
+                    JSONObject info = info(node);
+                    replicated &= info != null && info.getLongValue("version") >= version;
+                }
+            }
+            if (replicated) {
+                return System.nanoTime() - start;
+            }
+            Thread.sleep(10);
+        }
+        return -1;
+    }
+
+    private void report(String title, double seconds) {
+        System.out.printf("%n== %s, %.1f s%n", title, seconds);
+        System.out.println(LatencyRecorder.header());
+        for (LatencyRecorder recorder : List.of(renews, versions, findall, writes, lag)) {
+            System.out.println(recorder.report(seconds));
+        }
+        System.out.println();
+    }
+
+    private int instanceCount(SimulatedNode node, String service) {
+        HttpResponse<String> response = sendSync(get(node, "/findall?service=" + service, null));
+        assertNotNull(response);
+        JSONArray instances = JSON.parseArray(response.body());
+        return instances == null ? 0 : instances.size();
+    }
+
+    private SimulatedNode currentLeader() {
+        for (SimulatedNode node : live()) {
+            JSONObject info = info(node);
+            if (info != null && info.getBooleanValue("leader")) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private JSONObject info(SimulatedNode node) {
+        HttpResponse<String> response = sendSync(get(node, "/info", null));
+        return response == null || response.statusCode() != 200 ? null : JSON.parseObject(response.body());
+    }
+
+    private List<SimulatedNode> live() {
+        return nodes.stream().filter(SimulatedNode::isRunning).toList();
+    }
+
+    private SimulatedNode anyNode() {
+        List<SimulatedNode> live = live();
+        return live.get(ThreadLocalRandom.current().nextInt(live.size()));
+    }
+
+    private static String instance(String host, int port) {
+        return "{\"scheme\":\"http\",\"host\":\"" + host + "\",\"port\":" + port + ",\"context\":\"sim\"}";
+    }
+
+    private static HttpRequest post(SimulatedNode node, String path, String body) {
+        return HttpRequest.newBuilder(URI.create(node.url + path))
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static HttpRequest get(SimulatedNode node, String path, String etag) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(node.url + path))
+                .timeout(Duration.ofSeconds(10));
+        if (etag != null) {
+            builder.header("If-None-Match", etag);
+        }
+        return builder.GET().build();
+    }
+
+    /**
+     * 异步发送请求并记录耗时，2xx 与 304 视为成功，返回的Future只在成功时完成。
+     */
+    private CompletableFuture<HttpResponse<String>> send(LatencyRecorder recorder, HttpRequest request) {
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        inFlight.acquireUninterruptibly();
+        long start = System.nanoTime();
+        http.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, ex) -> {
+            inFlight.release();
+            if (ex == null && (response.statusCode() / 100 == 2 || response.statusCode() == 304)) {
+                recorder.record(System.nanoTime() - start);
+                result.complete(response);
+            } else {
+                recorder.error();
+            }
+        });
+        return result;
+    }
+
+    private HttpResponse<String> sendSync(HttpRequest request) {
+        try {
+            return http.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    private static void pause(long until) {
+        long delay = until - System.currentTimeMillis();
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
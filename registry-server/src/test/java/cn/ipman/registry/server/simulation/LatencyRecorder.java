@@ -0,0 +1,73 @@
+package cn.ipman.registry.server.simulation;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 记录一类请求的耗时与失败次数，用于计算吞吐量与分位数。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 21:15
+ */
+final class LatencyRecorder {
+
+    final String name;
+    final LongAdder errors = new LongAdder();
+
+    private long[] values = new long[1 << 16];
+    private int size;
+
+    LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    synchronized void record(long nanos) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = nanos;
+    }
+
+    synchronized void reset() {
+        size = 0;
+        errors.reset();
+    }
+
+    void error() {
+        errors.increment();
+    }
+
+    synchronized int count() {
+        return size;
+    }
+
+    /**
+     * @param percentile 分位，取值 0-100。
+     * @return 对应分位的耗时(毫秒)，没有记录时返回0。
+     */
+    synchronized double percentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 输出一行报告。
+     *
+     * @param seconds 测量的时长(秒)。
+     */
+    String report(double seconds) {
+        return String.format("%-12s %10d %10.1f %10.2f %10.2f %10.2f %8d",
+                name, count(), count() / seconds, percentile(50), percentile(99), percentile(100), errors.sum());
+    }
+
+    static String header() {
+        return String.format("%-12s %10s %10s %10s %10s %10s %8s",
+                "op", "count", "ops/s", "p50(ms)", "p99(ms)", "max(ms)", "errors");
+    }
+}
@@ -0,0 +1,111 @@
+package cn.ipman.registry.server.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 在当前JVM中运行的一个注册中心节点。注册中心的数据保存在静态字段中，
+ * 每个节点使用独立的类加载器加载全部类(包括Spring)，节点之间除了HTTP不共享任何状态。
+ *
+ * @Author IpMan
+ * @Date 2026/10/18 21:10
+ */
+final class SimulatedNode {
+
+    static final String APPLICATION = "cn.ipman.registry.server.RegistryServerApplication";
+    static final String SPRING_APPLICATION = "org.springframework.boot.SpringApplication";
+    static final String TOMCAT_URL_HANDLER = "org.apache.catalina.webresources.TomcatURLStreamHandlerFactory";
+
+    final int port;
+    final String url;
+
+    URLClassLoader loader;
+    Object context;
+
+    SimulatedNode(int port) {
+        this.port = port;
+        this.url = "http://localhost:" + port;
+    }
+
+    /**
+     * @return 一个当前空闲的本地端口。
+     */
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * 启动节点，返回时节点的HTTP端口已可用。
+     *
+     * @param serverlist 集群所有节点的地址。
+     */
+    void start(List<String> serverlist) throws Exception {
+        loader = new URLClassLoader("registry-node-" + port, classpath(), ClassLoader.getPlatformClassLoader());
+        String[] args = {
+                "--server.port=" + port,
+                "--registry.serverlist=" + String.join(",", serverlist),
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=error",
+                "--logging.level.cn.ipman.registry=error",
+        };
+        // Spring 按线程上下文类加载器扫描与加载类，启动期间切换到节点的类加载器
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        thread.setContextClassLoader(loader);
+        try {
+            // Tomcat 默认向JVM注册全局唯一的URLStreamHandlerFactory，同一JVM中的第二个节点会因此启动失败
+            loader.loadClass(TOMCAT_URL_HANDLER).getMethod("disable").invoke(null);
+            Class<?> application = loader.loadClass(APPLICATION);
+            context = loader.loadClass(SPRING_APPLICATION)
+                    .getMethod("run", Class.class, String[].class)
+                    .invoke(null, application, args);
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    /**
+     * 关闭节点，相当于节点宕机后不再响应任何请求。
+     */
+    void stop() throws Exception {
+        if (context != null) {
+            context.getClass().getMethod("close").invoke(context);
+            context = null;
+        }
+        if (loader != null) {
+            loader.close();
+            loader = null;
+        }
+    }
+
+    boolean isRunning() {
+        return context != null;
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+
+    /**
+     * 测试的类路径。surefire 默认通过只含清单的jar启动，真实的类路径在 surefire.test.class.path 中。
+     */
+    private static URL[] classpath() throws MalformedURLException {
+        String classpath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        List<URL> urls = new ArrayList<>();
+        for (String path : classpath.split(File.pathSeparator)) {
+            if (!path.isBlank()) {
+                urls.add(new File(path).toURI().toURL());
+            }
+        }
+        return urls.toArray(new URL[0]);
+    }
+}